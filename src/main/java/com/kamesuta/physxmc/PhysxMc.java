@@ -9,6 +9,8 @@ import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
 import com.comphenix.protocol.wrappers.BlockPosition;
 import com.kamesuta.physxmc.command.PhysxCommand;
+import com.kamesuta.physxmc.core.ActorType;
+import com.kamesuta.physxmc.core.ContactEventType;
 import com.kamesuta.physxmc.core.Physx;
 import com.kamesuta.physxmc.core.PhysxTerrain;
 import com.kamesuta.physxmc.utils.BoundingBoxUtil;
@@ -21,17 +23,19 @@ import com.kamesuta.physxmc.widget.MedalPayoutSystem;
 import com.kamesuta.physxmc.widget.PhysicsObjectManager;
 import com.kamesuta.physxmc.widget.PusherManager;
 import com.kamesuta.physxmc.widget.RampManager;
+import com.kamesuta.physxmc.wrapper.DisplayLod;
 import com.kamesuta.physxmc.wrapper.DisplayedBoxHolder;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxBox;
+import com.kamesuta.physxmc.wrapper.DisplayedPhysxSphere;
 import com.kamesuta.physxmc.wrapper.DisplayedSphereHolder;
 import com.kamesuta.physxmc.wrapper.IntegratedPhysxWorld;
+import com.kamesuta.physxmc.wrapper.VirtualDisplayTracker;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
-import physx.physics.PxActor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -50,6 +54,8 @@ public final class PhysxMc extends JavaPlugin {
     public static MedalPayoutSystem medalPayoutSystem;
 
     public static GrabTool grabTool;
+    public static VirtualDisplayTracker virtualDisplayTracker;
+    public static DisplayLod displayLod;
     public ProtocolManager protocolManager;
 
     // 衝突した鉄ブロックに対するレッドストーン信号パルスを管理
@@ -76,6 +82,8 @@ public final class PhysxMc extends JavaPlugin {
             physxWorld.setUpScene();
             
             getLogger().info("マネージャーを初期化中...");
+            virtualDisplayTracker = new VirtualDisplayTracker();
+            displayLod = new DisplayLod();
             displayedBoxHolder = new DisplayedBoxHolder();
             displayedSphereHolder = new DisplayedSphereHolder();
             playerTriggerHolder = new PlayerTriggerHolder();
@@ -175,21 +183,30 @@ public final class PhysxMc extends JavaPlugin {
         }.runTaskLater(this, 60L); // 3秒後に実行（より安全な待機時間）
 
         // コインの黒曜石接触検出を追加
-        physxWorld.getSimCallback().contactReceivers.add(this::onCoinContact);
+        physxWorld.addContactListener(ContactEventType.TOUCH_FOUND.bit(), ActorType.COIN.bit(), this::onCoinContact);
 
         // 球体と鉄ブロックの接触検出を追加
-        physxWorld.getSimCallback().contactReceivers.add(this::onSphereContact);
+        physxWorld.addContactListener(ContactEventType.TOUCH_FOUND.bit(), ActorType.SPHERE.bit(), this::onSphereContact);
+
+        // 専用スレッドモードでは演算をメインスレッドから切り離す
+        if (PhysxSetting.isDedicatedPhysicsThread()) {
+            physxWorld.startSimulationThread();
+            getLogger().info("物理演算を専用スレッドで開始しました");
+        }
 
         new BukkitRunnable() {
             @Override
             public void run() {
                 physxWorld.tick();
+                displayLod.update();
                 displayedBoxHolder.update();
                 displayedSphereHolder.update();
                 playerTriggerHolder.update();
                 pusherManager.update();
                 rampManager.update();
                 grabTool.update();
+                virtualDisplayTracker.update();
+                physxWorld.postTick();
             }
         }.runTaskTimer(this, 1, 1);
 
@@ -213,7 +230,7 @@ public final class PhysxMc extends JavaPlugin {
             public void onPacketSending(PacketEvent event) {
                 PacketContainer packet = event.getPacket();
                 BlockPosition pos = packet.getBlockPositionModifier().read(0);
-                physxWorld.registerChunksToReloadNextSecond(event.getPlayer().getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ()).getChunk());
+                physxWorld.registerBlockToReloadNextSecond(event.getPlayer().getWorld(), pos.getX(), pos.getY(), pos.getZ());
             }
         });
         protocolManager.addPacketListener(new PacketAdapter(this, ListenerPriority.NORMAL, PacketType.Play.Server.MULTI_BLOCK_CHANGE) {
@@ -231,7 +248,7 @@ public final class PhysxMc extends JavaPlugin {
                 }
 
                 for (Location location : locations) {
-                    physxWorld.registerChunksToReloadNextSecond(location.getChunk());
+                    physxWorld.registerBlockToReloadNextSecond(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
                 }
             }
         });
@@ -250,6 +267,15 @@ public final class PhysxMc extends JavaPlugin {
         } catch (Exception e) {
             getLogger().warning("メダル払い出しシステム停止中にエラー: " + e.getMessage());
         }
+
+        // 専用スレッドモードの演算を止め、以降の保存・破棄はメインスレッドで直接行う
+        try {
+            if (physxWorld != null) {
+                physxWorld.stopSimulationThread();
+            }
+        } catch (Exception e) {
+            getLogger().warning("物理演算スレッド停止中にエラー: " + e.getMessage());
+        }
         
         // スフィア保持機能のため保存処理を再度有効化
         // 保存順序を最適化してPhysXクラッシュを防止
@@ -288,6 +314,11 @@ public final class PhysxMc extends JavaPlugin {
         // 安全にPhysXオブジェクトを破棄
         try {
             getLogger().info("PhysXオブジェクトの破棄を開始...");
+
+            // 0. 進行中の演算を完了させてから破棄する
+            if (physxWorld != null) {
+                physxWorld.fetchResults();
+            }
             
             // 1. 最初にマネージャーのオブジェクトを破棄（PhysXシーンが有効な状態で）
             if (pusherManager != null) {
@@ -316,6 +347,11 @@ public final class PhysxMc extends JavaPlugin {
                 getLogger().info("プレイヤートリガー破棄完了");
             }
 
+            // パケットだけの表示は、溜まっている削除をここで送らないとクライアントに残る
+            if (virtualDisplayTracker != null) {
+                virtualDisplayTracker.flush();
+            }
+
             // 3. PhysXシーンを破棄
             if (physxWorld != null) {
                 physxWorld.destroyScene();
@@ -339,19 +375,8 @@ public final class PhysxMc extends JavaPlugin {
     /**
      * コインと地形の接触を検出する
      */
-    private void onCoinContact(PxActor actor1, PxActor actor2, String event) {
-        if (!"TOUCH_FOUND".equals(event)) {
-            return;
-        }
-
-        // 動的オブジェクト（コイン）を特定
-        DisplayedPhysxBox coin = displayedBoxHolder.getBox(actor1);
-        if (coin == null) {
-            coin = displayedBoxHolder.getBox(actor2);
-        }
-
-        // コインかどうかチェック
-        if (coin == null || !coin.isCoin()) {
+    private void onCoinContact(ContactEventType event, int coinHandle, int otherHandle, float impulse) {
+        if (!(physxWorld.getRegistry().getOwner(coinHandle) instanceof DisplayedPhysxBox coin)) {
             return;
         }
 
@@ -386,20 +411,11 @@ public final class PhysxMc extends JavaPlugin {
     /**
      * 球体が鉄ブロックに接触した時の処理
      */
-    private void onSphereContact(PxActor actor1, PxActor actor2, String event) {
-        if (!"TOUCH_FOUND".equals(event)) {
+    private void onSphereContact(ContactEventType event, int sphereHandle, int otherHandle, float impulse) {
+        if (!(physxWorld.getRegistry().getOwner(sphereHandle) instanceof DisplayedPhysxSphere sphere)) {
             return;
         }
 
-        // 衝突したオブジェクトのどちらかが球体か確認
-        var sphere = displayedSphereHolder.getSphere(actor1);
-        if (sphere == null) {
-            sphere = displayedSphereHolder.getSphere(actor2);
-        }
-        if (sphere == null) {
-            return; // 球体と無関係
-        }
-
         // 球体の位置と半径を取得
         Location center = sphere.getLocation();
         double radius = sphere.getRadius();
@@ -63,4 +63,106 @@ public class PhysxSetting {
     @Getter
     @Setter
     private static double pusherSpeed = 0.02;
+
+    /**
+     * 物理演算をサーバーの処理と並行させるパイプラインモードの有効/無効フラグ
+     * 有効にするとtickの最後に演算を開始し、次のtickの最初に結果を受け取る(物理の反映が1tick遅れる)
+     */
+    @Getter
+    @Setter
+    private static boolean pipelinedSimulation = Boolean.getBoolean("physx.pipelinedSimulation");
+
+    /**
+     * 物理演算を専用スレッドで行う専用スレッドモードの有効/無効フラグ(起動時のみ反映)
+     * 有効にするとサーバーのtickとは独立して演算が進み、メインスレッドは毎tick姿勢のスナップショットを読むだけになる
+     */
+    @Getter
+    @Setter
+    private static boolean dedicatedPhysicsThread = Boolean.getBoolean("physx.dedicatedThread");
+
+    /**
+     * 地形をワーカースレッドで組み立てる時のスレッド数(起動時のみ反映)
+     */
+    @Getter
+    @Setter
+    private static int terrainBuildThreads = Integer.getInteger("physx.terrainBuildThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+
+    /**
+     * シーンから外した地形を取っておくキャッシュのメモリの上限(MB)
+     */
+    @Getter
+    @Setter
+    private static int terrainCacheBudgetMb = Integer.getInteger("physx.terrainCacheBudgetMb", 32);
+
+    /**
+     * クッキング済みの地形のメッシュをディスクに保存しておく上限(MB)。超えたら長く使っていないものから消す
+     */
+    @Getter
+    @Setter
+    private static int terrainMeshCacheMaxMb = Integer.getInteger("physx.terrainMeshCacheMaxMb", 256);
+
+    /**
+     * 物体がいなくなったチャンクの地形をシーンから外すまでのtick数
+     */
+    @Getter
+    @Setter
+    private static int terrainUnloadDelayTicks = Integer.getInteger("physx.terrainUnloadDelayTicks", 100);
+
+    /**
+     * 地形を箱ではなく、外に出ている面だけの三角形メッシュで作るかどうか(起動時のみ反映)
+     * クッキングしたメッシュはプラグインのフォルダに保存され、同じ内容のセクションは次からクッキングせずに読み込まれる
+     */
+    @Getter
+    @Setter
+    private static boolean terrainTriangleMesh = Boolean.getBoolean("physx.terrainMesh");
+
+    /**
+     * 回収したコインを使い回すために取っておく最大の数(0で使い回さない)
+     */
+    @Getter
+    @Setter
+    private static int coinPoolSize = Integer.getInteger("physx.coinPoolSize", 256);
+
+    /**
+     * 物理オブジェクトの表示を、エンティティを作らずパケットだけで行うかどうか(以降に作る表示に反映)
+     */
+    @Getter
+    @Setter
+    private static boolean packetDisplays = Boolean.getBoolean("physx.packetDisplays");
+
+    /**
+     * 物体の表示をプレイヤーに見せる距離(ブロック)。どのプレイヤーからもこれより遠い物体は表示を更新せず、パケットだけの表示では見せない
+     */
+    @Getter
+    @Setter
+    private static int displayViewDistance = Integer.getInteger("physx.displayViewDistance", 96);
+
+    /**
+     * パケットだけの表示で、見せるプレイヤーを選び直す間隔(tick)。表示ごとにずらして選び直す
+     */
+    @Getter
+    @Setter
+    private static int displayViewerUpdateInterval = Integer.getInteger("physx.displayViewerUpdateInterval", 10);
+
+    /**
+     * 表示を同期し直すのに必要な姿勢の変化(位置はブロック、回転はクォータニオンの成分)。これより小さな変化しかない物体は表示の更新を送らない
+     */
+    @Getter
+    @Setter
+    private static float displaySyncEpsilon = Float.parseFloat(System.getProperty("physx.displaySyncEpsilon", "0.001"));
+
+    /**
+     * 物体の表示を毎tick更新する、一番近いプレイヤーからの距離(ブロック)。距離が2倍・4倍・8倍を超えるごとに更新の間隔を2・4・8tickに延ばす
+     */
+    @Getter
+    @Setter
+    private static double displayLodDistance = Double.parseDouble(System.getProperty("physx.displayLodDistance", "16"));
+
+    /**
+     * 表示を2つのBlockDisplayを入れ替える古い方式で行うかどうか(以降に作る表示に反映)
+     * 無効なら1つのBlockDisplayを、離れすぎたら物体の位置にテレポートし直して使う
+     */
+    @Getter
+    @Setter
+    private static boolean swapDisplays = Boolean.getBoolean("physx.swapDisplays");
 }
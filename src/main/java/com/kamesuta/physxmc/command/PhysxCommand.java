@@ -3,11 +3,20 @@ package com.kamesuta.physxmc.command;
 import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
 import com.kamesuta.physxmc.PhysxMc;
 import com.kamesuta.physxmc.PhysxSetting;
+import com.kamesuta.physxmc.core.Physx;
 import com.kamesuta.physxmc.widget.MedalPusher;
+import com.kamesuta.physxmc.wrapper.BlockCollisionTemplate;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxBox;
+import com.kamesuta.physxmc.wrapper.IntegratedPhysxTerrain;
+import com.kamesuta.physxmc.wrapper.TerrainBenchmark;
+import com.kamesuta.physxmc.wrapper.TerrainCache;
+import com.kamesuta.physxmc.wrapper.TerrainSnapshot;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.command.BlockCommandSender;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -18,7 +27,9 @@ import org.bukkit.util.Vector;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * ライブラリのコマンドを仮実装するクラス。CommandLib(<a href="https://github.com/TeamKun/CommandLib">...</a>)が1.20に対応し次第移行する
@@ -38,11 +49,14 @@ public class PhysxCommand extends CommandBase implements Listener {
     private static final String ballArgument = "ball";
     private static final String rampArgument = "ramp";
     private static final String saveArgument = "save";
+    private static final String pipelineArgument = "pipeline";
+    private static final String terrainStatsArgument = "terrainstats";
+    private static final String terrainBenchArgument = "terrainbench";
 
     /**
      * 引数のリスト
      */
-    private static final List<String> arguments = List.of(resetArgument, debugArgument, densityArgument, updateArgument, summonArgument, gravityArgument, coinArgument, pusherArgument, ballArgument, rampArgument, saveArgument);
+    private static final List<String> arguments = List.of(resetArgument, debugArgument, densityArgument, updateArgument, summonArgument, gravityArgument, coinArgument, pusherArgument, ballArgument, rampArgument, saveArgument, pipelineArgument, terrainStatsArgument, terrainBenchArgument);
 
     public PhysxCommand() {
         super(commandName, 1, 8, false);
@@ -121,6 +135,70 @@ public class PhysxCommand extends CommandBase implements Listener {
             PhysxMc.physxWorld.setGravity(new Vector(x, y, z));
             sender.sendMessage("重力を変更しました");
             return true;
+        } else if (arguments[0].equals(pipelineArgument)) {
+            PhysxSetting.setPipelinedSimulation(!PhysxSetting.isPipelinedSimulation());
+            sender.sendMessage("パイプライン演算モードを" + (PhysxSetting.isPipelinedSimulation() ? "有効" : "無効") + "にしました");
+            return true;
+        } else if (arguments[0].equals(terrainStatsArgument)) {
+            if (sender instanceof Player player) {
+                IntegratedPhysxTerrain terrain = PhysxMc.physxWorld.getTerrain(player.getChunk());
+                if (terrain != null)
+                    sender.sendMessage("今いるチャンクの地形: " + terrain.getActiveSectionCount() + "セクション, 形状数: " + terrain.getShapeCount() + " (ブロックごと: " + terrain.getPerBlockShapeCount() + ")");
+                else
+                    sender.sendMessage("今いるチャンクの地形は読み込まれていません");
+            }
+            int[] stats = PhysxMc.physxWorld.getTerrainShapeStats();
+            sender.sendMessage("読み込み中の地形: " + stats[0] + "チャンク, " + stats[3] + "セクション, 形状数: " + stats[1] + " (ブロックごと: " + stats[2] + ")");
+            TerrainCache cache = PhysxMc.physxWorld.getTerrainCache();
+            sender.sendMessage("キャッシュ中の地形: " + cache.size() + "チャンク, 約" + cache.getUsedBytes() / 1024 + "KB / " + PhysxSetting.getTerrainCacheBudgetMb() + "MB");
+            sender.sendMessage("ブロックの形のテンプレート: " + BlockCollisionTemplate.size() + "状態");
+            return true;
+        } else if (arguments[0].equals(terrainBenchArgument)) {
+            if (!(sender instanceof Player player)) {
+                sender.sendMessage("プレイヤーしか実行できません");
+                return true;
+            }
+            int radius = 1;
+            if (arguments[1] != null) {
+                try {
+                    radius = Math.max(0, Math.min(4, Integer.parseInt(arguments[1])));
+                } catch (NumberFormatException e) {
+                    sendUsage(sender);
+                    return true;
+                }
+            }
+
+            // スナップショットはメインスレッドで取り、地形の作成は非同期で行う
+            List<TerrainSnapshot> snapshots = new ArrayList<>();
+            Map<Chunk, ChunkSnapshot> snapshotCache = new HashMap<>();
+            World world = player.getWorld();
+            Chunk center = player.getChunk();
+            for (int x = -radius; x <= radius; x++) {
+                for (int z = -radius; z <= radius; z++) {
+                    if (world.isChunkLoaded(center.getX() + x, center.getZ() + z))
+                        snapshots.add(TerrainSnapshot.capture(world.getChunkAt(center.getX() + x, center.getZ() + z), snapshotCache));
+                }
+            }
+            sender.sendMessage(snapshots.size() + "チャンクで地形のベンチマークを開始します...");
+
+            org.bukkit.scheduler.BukkitRunnable benchTask = new org.bukkit.scheduler.BukkitRunnable() {
+                @Override
+                public void run() {
+                    TerrainBenchmark result = TerrainBenchmark.run(Physx.physics, Physx.defaultMaterial, snapshots);
+                    org.bukkit.scheduler.BukkitRunnable resultTask = new org.bukkit.scheduler.BukkitRunnable() {
+                        @Override
+                        public void run() {
+                            sender.sendMessage("地形のベンチマーク結果 (" + snapshots.size() + "チャンク, " + result.getSections() + "セクション):");
+                            sender.sendMessage("- ブロックごとの箱: " + result.getPerBlockShapes() + "形状, " + result.getPerBlockNanos() / 1_000_000.0 + "ms");
+                            sender.sendMessage("- 貪欲法でまとめた箱(現在): " + result.getGreedyShapes() + "形状, " + result.getGreedyNanos() / 1_000_000.0 + "ms");
+                            sender.sendMessage("- うちボクセルの読み取り(地形の作り方ではない): " + result.getCaptureBytes() / 1024 + "KB, " + result.getCaptureNanos() / 1_000_000.0 + "ms");
+                        }
+                    };
+                    resultTask.runTask(com.kamesuta.physxmc.PhysxMc.getPlugin(com.kamesuta.physxmc.PhysxMc.class));
+                }
+            };
+            benchTask.runTaskAsynchronously(com.kamesuta.physxmc.PhysxMc.getPlugin(com.kamesuta.physxmc.PhysxMc.class));
+            return true;
         } else if (arguments[0].equals(coinArgument) && arguments[1] != null) {
             if (arguments[1].equals("enable")) {
                 PhysxSetting.setCoinSystemEnabled(!PhysxSetting.isCoinSystemEnabled());
@@ -532,6 +610,9 @@ public class PhysxCommand extends CommandBase implements Listener {
                 "/physxmc updateCurrentChunk: プレイヤーが今いるチャンクの地形をリロードする\n" +
                 "/physxmc summon {縦}　{高さ}　{横} [ブロック名]: 物理演算ブロックを召喚する\n" +
                 "/physxmc gravity {x}　{y}　{z}: 重力の大きさを設定する\n" +
+                "/physxmc pipeline: 物理演算をサーバーの処理と並行させるパイプラインモードを有効/無効にする\n" +
+                "/physxmc terrainstats: 読み込み中の地形の形状数を表示する\n" +
+                "/physxmc terrainbench [半径]: 周囲のチャンクで地形の作り方ごとの作成時間と形状数を比べる\n" +
                 "/physxmc coin enable: 鉄製のトラップドアを使ったコイン投擲システムを有効/無効にする\n" +
                 "/physxmc pusher create {高さ} {幅} {長さ} {移動範囲} [ブロック名] [速度]: 指定サイズのプッシャーを作成する\n" +
                 "/physxmc pusher remove: 近くのプッシャーを削除する\n" +
@@ -0,0 +1,171 @@
+package com.kamesuta.physxmc.core;
+
+import com.kamesuta.physxmc.utils.LongIntHashMap;
+import physx.physics.PxActor;
+
+import java.util.Arrays;
+
+/**
+ * シーン内のアクターと、それを持つオブジェクト(箱・球体・プレイヤーなど)を対応付けるレジストリ
+ * アクターには登録時に整数のハンドルを割り当て、ネイティブのアドレスからハンドルを定数時間で引けるようにする
+ * メインスレッドからのみ使うこと
+ */
+public class ActorRegistry {
+
+    /**
+     * 登録されていないことを表すハンドル
+     */
+    public static final int NO_HANDLE = -1;
+
+    /**
+     * アクターのアドレス→ハンドル
+     */
+    private final LongIntHashMap handleByAddress = new LongIntHashMap(1024);
+
+    private long[] addresses = new long[256];
+    private ActorType[] types = new ActorType[256];
+    private Object[] owners = new Object[256];
+
+    /**
+     * 解放されて再利用を待っているハンドル
+     */
+    private int[] freeHandles = new int[64];
+    private int freeCount = 0;
+
+    /**
+     * 一度でも割り当てたハンドルの数
+     */
+    private int handleCount = 0;
+
+    /**
+     * アクターを登録する
+     *
+     * @param actor アクター
+     * @param type  アクターの種類
+     * @param owner アクターを持つオブジェクト
+     * @return 割り当てたハンドル
+     */
+    public int register(PxActor actor, ActorType type, Object owner) {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            handle = handleCount++;
+            if (handle >= addresses.length) {
+                int capacity = addresses.length << 1;
+                addresses = Arrays.copyOf(addresses, capacity);
+                types = Arrays.copyOf(types, capacity);
+                owners = Arrays.copyOf(owners, capacity);
+            }
+        }
+
+        long address = actor.getAddress();
+        addresses[handle] = address;
+        types[handle] = type;
+        owners[handle] = owner;
+        handleByAddress.put(address, handle);
+        return handle;
+    }
+
+    /**
+     * アクターの登録を解除する
+     *
+     * @param handle ハンドル
+     */
+    public void unregister(int handle) {
+        if (handle < 0 || handle >= handleCount || owners[handle] == null)
+            return;
+
+        handleByAddress.remove(addresses[handle]);
+        addresses[handle] = 0;
+        types[handle] = null;
+        owners[handle] = null;
+
+        if (freeCount == freeHandles.length)
+            freeHandles = Arrays.copyOf(freeHandles, freeCount << 1);
+        freeHandles[freeCount++] = handle;
+    }
+
+    /**
+     * 登録済みのアクターの種類と持ち主を変更する
+     *
+     * @param handle ハンドル
+     * @param type   新しい種類
+     * @param owner  新しい持ち主
+     */
+    public void retag(int handle, ActorType type, Object owner) {
+        if (handle < 0 || handle >= handleCount || owners[handle] == null)
+            return;
+
+        types[handle] = type;
+        owners[handle] = owner;
+    }
+
+    /**
+     * アクターのハンドルを取得する
+     *
+     * @param actor アクター
+     * @return ハンドル、登録されていなければ{@link #NO_HANDLE}
+     */
+    public int getHandle(PxActor actor) {
+        if (actor == null)
+            return NO_HANDLE;
+        return getHandle(actor.getAddress());
+    }
+
+    /**
+     * アクターのアドレスからハンドルを取得する
+     *
+     * @param address アクターのアドレス
+     * @return ハンドル、登録されていなければ{@link #NO_HANDLE}
+     */
+    public int getHandle(long address) {
+        if (address == 0)
+            return NO_HANDLE;
+        int handle = handleByAddress.get(address);
+        return handle == LongIntHashMap.MISSING ? NO_HANDLE : handle;
+    }
+
+    /**
+     * ハンドルからアクターの種類を取得する
+     *
+     * @param handle ハンドル
+     * @return 種類、登録されていなければnull
+     */
+    public ActorType getType(int handle) {
+        if (handle < 0 || handle >= handleCount)
+            return null;
+        return types[handle];
+    }
+
+    /**
+     * ハンドルからアクターの持ち主を取得する
+     *
+     * @param handle ハンドル
+     * @return 持ち主、登録されていなければnull
+     */
+    public Object getOwner(int handle) {
+        if (handle < 0 || handle >= handleCount)
+            return null;
+        return owners[handle];
+    }
+
+    /**
+     * アクターの持ち主を指定した型で取得する
+     *
+     * @param actor アクター
+     * @param clazz 持ち主の型
+     * @return 持ち主、登録されていないか型が違えばnull
+     */
+    public <T> T getOwner(PxActor actor, Class<T> clazz) {
+        Object owner = getOwner(getHandle(actor));
+        return clazz.isInstance(owner) ? clazz.cast(owner) : null;
+    }
+
+    /**
+     * 登録されているアクターの数
+     */
+    public int size() {
+        return handleByAddress.size();
+    }
+}
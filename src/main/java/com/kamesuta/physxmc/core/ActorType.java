@@ -0,0 +1,44 @@
+package com.kamesuta.physxmc.core;
+
+/**
+ * シーン内のアクターの種類
+ */
+public enum ActorType {
+    /**
+     * 普通の箱
+     */
+    BOX,
+    /**
+     * コイン
+     */
+    COIN,
+    /**
+     * 球体
+     */
+    SPHERE,
+    /**
+     * プレイヤーの当たり判定
+     */
+    PLAYER_TRIGGER,
+    /**
+     * プッシャー
+     */
+    PUSHER,
+    /**
+     * ランプ
+     */
+    RAMP,
+    /**
+     * 地形
+     */
+    TERRAIN;
+
+    /**
+     * 種類ごとに割り当てられたビット
+     *
+     * @return 1 << ordinal
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,93 @@
+package com.kamesuta.physxmc.core;
+
+import physx.physics.PxFilterData;
+import physx.physics.PxPairFlagEnum;
+
+/**
+ * 衝突レイヤーの設定
+ * {@link ActorType}をそのままレイヤーとして使い、どのレイヤー同士がぶつかるか(衝突マトリクス)と、どのレイヤーが接触を報告するかを管理する
+ * <p>
+ * シーンのフィルターシェーダー(DefaultFilterShader)は形状のフィルターデータを次のように解釈する
+ * <ul>
+ *     <li>word0: 自分のレイヤーのビット</li>
+ *     <li>word1: ぶつかる相手のレイヤーのビットマスク。お互いのマスクに相手のレイヤーが含まれるペアだけが接触する</li>
+ *     <li>word2: 接触した時に立てるペアフラグ。ペアのどちらかが立てたフラグが報告される</li>
+ * </ul>
+ * 接触の報告はシミュレーションコールバックのコストになるため、ゲームの処理が実際に使う組み合わせ(コイン・球体と地形)だけに絞る
+ * <p>
+ * ただしDefaultFilterShaderはペアのどちらかがトリガーならword0/word1を見る前にトリガーとして通すので、トリガー形状のペアにはこのマスクは効かない。
+ * プレイヤーの当たり判定(トリガー)と地形・プッシャー・ランプ・他のトリガーとのペアは、当たり判定をキネマティックにして
+ * PhysXのキネマティックと静的/キネマティックのペアを作らない既定のフィルタリングで省いている(PlayerTriggerHolderを参照)
+ */
+public class CollisionLayers {
+
+    private static final ActorType[] LAYERS = ActorType.values();
+
+    /**
+     * レイヤーごとのぶつかる相手のビットマスク
+     */
+    private static final int[] collisionMasks = new int[LAYERS.length];
+
+    /**
+     * レイヤーごとの接触時に報告するペアフラグ
+     */
+    private static final int[] reportFlags = new int[LAYERS.length];
+
+    static {
+        for (ActorType a : LAYERS) {
+            for (ActorType b : LAYERS) {
+                setCollides(a, b, true);
+            }
+        }
+        // 地形との接触だけを報告する(コインの落とし口や球体と鉄ブロックの判定用)。コイン同士の接触は報告しない
+        setReportFlags(ActorType.TERRAIN, PxPairFlagEnum.eNOTIFY_TOUCH_FOUND.value);
+    }
+
+    /**
+     * 2つのレイヤーがぶつかるかどうかを設定する。既にシーンにある形状には反映されない
+     *
+     * @param a       レイヤー
+     * @param b       レイヤー
+     * @param collide ぶつかるかどうか
+     */
+    public static void setCollides(ActorType a, ActorType b, boolean collide) {
+        if (collide) {
+            collisionMasks[a.ordinal()] |= b.bit();
+            collisionMasks[b.ordinal()] |= a.bit();
+        } else {
+            collisionMasks[a.ordinal()] &= ~b.bit();
+            collisionMasks[b.ordinal()] &= ~a.bit();
+        }
+    }
+
+    /**
+     * 2つのレイヤーがぶつかるかどうか
+     *
+     * @param a レイヤー
+     * @param b レイヤー
+     * @return ぶつかるかどうか
+     */
+    public static boolean collides(ActorType a, ActorType b) {
+        return (collisionMasks[a.ordinal()] & b.bit()) != 0;
+    }
+
+    /**
+     * レイヤーが接触した時に報告するペアフラグを設定する。既にシーンにある形状には反映されない
+     *
+     * @param layer レイヤー
+     * @param flags {@link PxPairFlagEnum}の論理和
+     */
+    public static void setReportFlags(ActorType layer, int flags) {
+        reportFlags[layer.ordinal()] = flags;
+    }
+
+    /**
+     * レイヤーに対応するフィルターデータを作る。使い終わったらdestroyすること
+     *
+     * @param layer レイヤー
+     * @return フィルターデータ
+     */
+    public static PxFilterData createFilterData(ActorType layer) {
+        return new PxFilterData(layer.bit(), collisionMasks[layer.ordinal()], reportFlags[layer.ordinal()], 0);
+    }
+}
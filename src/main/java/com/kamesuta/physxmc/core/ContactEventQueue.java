@@ -0,0 +1,141 @@
+package com.kamesuta.physxmc.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * 衝突・重なりイベントを溜めておくリングバッファと、その購読者
+ * 演算結果を受け取るスレッドがイベントを書き込み({@link #offer})、メインスレッドが{@link #dispatch}でまとめて購読者に配信する
+ * 書き込み側と読み込み側がそれぞれ1スレッドであればロックなしで動く。バッファは事前に確保し、イベントごとのアロケーションはしない
+ */
+public class ContactEventQueue {
+
+    /**
+     * 1度に溜めておけるイベントの数(2のべき乗)
+     */
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+
+    private final long[] actors0 = new long[CAPACITY];
+    private final long[] actors1 = new long[CAPACITY];
+    private final byte[] events = new byte[CAPACITY];
+    private final float[] impulses = new float[CAPACITY];
+
+    /**
+     * 次に書き込む位置(書き込み側だけが更新する)
+     */
+    private volatile long head = 0;
+
+    /**
+     * 次に読み込む位置(読み込み側だけが更新する)
+     */
+    private volatile long tail = 0;
+
+    /**
+     * バッファが溢れて捨てたイベントの数
+     */
+    @Getter
+    private volatile long droppedCount = 0;
+    private long reportedDroppedCount = 0;
+
+    /**
+     * どれかの購読者が受け取るイベントの種類のビットマスク。誰も購読していないイベントはバッファに書き込まない
+     */
+    private volatile int subscribedEvents = 0;
+
+    private Subscription[] subscriptions = new Subscription[0];
+
+    /**
+     * イベントを購読する
+     *
+     * @param eventMask     受け取りたいイベントの種類({@link ContactEventType#bit()}の論理和)
+     * @param actorTypeMask 受け取りたいアクターの種類({@link ActorType#bit()}の論理和)。どちらかのアクターが当てはまれば配信する
+     * @param listener      リスナー
+     */
+    public void subscribe(int eventMask, int actorTypeMask, ContactListener listener) {
+        subscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        subscriptions[subscriptions.length - 1] = new Subscription(eventMask, actorTypeMask, listener);
+        subscribedEvents |= eventMask;
+    }
+
+    /**
+     * イベントをバッファに書き込む。演算結果を受け取るスレッドから呼ぶ
+     *
+     * @param actor0  アクターのアドレス
+     * @param actor1  アクターのアドレス
+     * @param event   イベントの種類
+     * @param impulse 接触点の力積の合計(報告されていなければ0)
+     */
+    public void offer(long actor0, long actor1, ContactEventType event, float impulse) {
+        if ((subscribedEvents & event.bit()) == 0)
+            return;
+
+        long h = head;
+        if (h - tail >= CAPACITY) {
+            droppedCount++;
+            return;
+        }
+
+        int index = (int) (h & MASK);
+        actors0[index] = actor0;
+        actors1[index] = actor1;
+        events[index] = (byte) event.ordinal();
+        impulses[index] = impulse;
+        head = h + 1;
+    }
+
+    /**
+     * 溜まっているイベントを購読者に配信する。メインスレッドから呼ぶ
+     * 配信中に書き込まれたイベントは次の配信に回す
+     *
+     * @param registry アクターの持ち主を引くレジストリ
+     */
+    public void dispatch(ActorRegistry registry) {
+        long t = tail;
+        long h = head;
+        Subscription[] subs = subscriptions;
+        for (; t < h; t++) {
+            int index = (int) (t & MASK);
+            long actor0 = actors0[index];
+            long actor1 = actors1[index];
+            ContactEventType event = ContactEventType.of(events[index]);
+            float impulse = impulses[index];
+            int eventBit = event.bit();
+
+            for (Subscription sub : subs) {
+                if ((sub.eventMask & eventBit) == 0)
+                    continue;
+
+                // 前のリスナーがアクターを消しているかもしれないので購読者ごとに引き直す
+                int handle0 = registry.getHandle(actor0);
+                int handle1 = registry.getHandle(actor1);
+                if (matches(registry, handle0, sub.actorTypeMask))
+                    sub.listener.onContact(event, handle0, handle1, impulse);
+                else if (matches(registry, handle1, sub.actorTypeMask))
+                    sub.listener.onContact(event, handle1, handle0, impulse);
+            }
+        }
+        tail = t;
+
+        long dropped = droppedCount;
+        if (dropped != reportedDroppedCount) {
+            Logger.getLogger("PhysxMc").warning("衝突イベントのバッファが溢れたため" + (dropped - reportedDroppedCount) + "件のイベントを捨てました");
+            reportedDroppedCount = dropped;
+        }
+    }
+
+    private static boolean matches(ActorRegistry registry, int handle, int actorTypeMask) {
+        ActorType type = registry.getType(handle);
+        return type != null && (actorTypeMask & type.bit()) != 0;
+    }
+
+    @AllArgsConstructor
+    private static class Subscription {
+        private final int eventMask;
+        private final int actorTypeMask;
+        private final ContactListener listener;
+    }
+}
@@ -0,0 +1,44 @@
+package com.kamesuta.physxmc.core;
+
+/**
+ * 衝突・重なりイベントの種類
+ */
+public enum ContactEventType {
+    /**
+     * 接触が始まった
+     */
+    TOUCH_FOUND,
+    /**
+     * 接触が終わった
+     */
+    TOUCH_LOST,
+    /**
+     * トリガーに入った
+     */
+    TRIGGER_ENTER,
+    /**
+     * トリガーから出た
+     */
+    TRIGGER_EXIT;
+
+    private static final ContactEventType[] VALUES = values();
+
+    /**
+     * 種類ごとに割り当てられたビット
+     *
+     * @return 1 << ordinal
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * 番号から種類を取得する
+     *
+     * @param ordinal 番号
+     * @return 種類
+     */
+    public static ContactEventType of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
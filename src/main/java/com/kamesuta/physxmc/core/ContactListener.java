@@ -0,0 +1,19 @@
+package com.kamesuta.physxmc.core;
+
+/**
+ * 衝突・重なりイベントを受け取るリスナー
+ * イベントは演算結果を受け取った後にメインスレッドでまとめて配信される
+ */
+@FunctionalInterface
+public interface ContactListener {
+
+    /**
+     * イベントを受け取る
+     *
+     * @param event   イベントの種類
+     * @param handle  購読したアクターの種類に当てはまる側のハンドル
+     * @param other   相手のハンドル(レジストリに登録されていなければ{@link ActorRegistry#NO_HANDLE})
+     * @param impulse 接触点の力積の合計。接触点を報告するペアフラグ(eNOTIFY_CONTACT_POINTS)を立てた接触の始まりのみで、それ以外は0
+     */
+    void onContact(ContactEventType event, int handle, int other, float impulse);
+}
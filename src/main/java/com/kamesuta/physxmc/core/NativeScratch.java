@@ -0,0 +1,155 @@
+package com.kamesuta.physxmc.core;
+
+import physx.common.PxIDENTITYEnum;
+import physx.common.PxQuat;
+import physx.common.PxTransform;
+import physx.common.PxVec3;
+import physx.physics.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 毎tick使い捨てるPhysXの一時オブジェクト(PxVec3・PxQuat・PxTransformなど)を、スレッドごとに使い回すためのアリーナ
+ * try-with-resourcesで範囲を区切り、範囲を抜けるとその中で借りたオブジェクトはまとめて返される。
+ * ネイティブのメモリはスレッドごとに初めて必要になった時にだけ確保し、その後は確保も解放もしないので、解放し忘れることもない
+ * <pre>{@code
+ * try (NativeScratch scratch = NativeScratch.push()) {
+ *     actor.setKinematicTarget(scratch.transform(x, y, z, qx, qy, qz, qw));
+ * }
+ * }</pre>
+ * 借りたオブジェクトを範囲の外に持ち出したり、destroy()したりしないこと
+ */
+public class NativeScratch implements AutoCloseable {
+
+    private static final ThreadLocal<NativeScratch> LOCAL = ThreadLocal.withInitial(NativeScratch::new);
+
+    private final List<PxVec3> vec3s = new ArrayList<>();
+    private final List<PxQuat> quats = new ArrayList<>();
+    private final List<PxTransform> transforms = new ArrayList<>();
+    private int vec3Top, quatTop, transformTop;
+
+    /**
+     * 範囲ごとの使用位置(vec3, quat, transformの順)
+     */
+    private int[] marks = new int[3 * 8];
+    private int depth;
+
+    /**
+     * レイキャストの結果とフラグ。レイキャストは入れ子にならないので1つずつでよい
+     */
+    private PxRaycastBuffer10 raycastBuffer;
+    private PxHitFlags hitFlags;
+    private PxQueryFilterData dynamicFilterData;
+
+    private NativeScratch() {
+    }
+
+    /**
+     * このスレッドのアリーナで新しい範囲を始める
+     *
+     * @return アリーナ(範囲を抜ける時にcloseすること)
+     */
+    public static NativeScratch push() {
+        NativeScratch scratch = LOCAL.get();
+        if (scratch.depth * 3 == scratch.marks.length)
+            scratch.marks = Arrays.copyOf(scratch.marks, scratch.marks.length << 1);
+        int i = scratch.depth++ * 3;
+        scratch.marks[i] = scratch.vec3Top;
+        scratch.marks[i + 1] = scratch.quatTop;
+        scratch.marks[i + 2] = scratch.transformTop;
+        return scratch;
+    }
+
+    /**
+     * 範囲を終え、その中で借りたオブジェクトを返す
+     */
+    @Override
+    public void close() {
+        int i = --depth * 3;
+        vec3Top = marks[i];
+        quatTop = marks[i + 1];
+        transformTop = marks[i + 2];
+    }
+
+    /**
+     * 一時的なPxVec3を借りる
+     */
+    public PxVec3 vec3(float x, float y, float z) {
+        if (vec3Top == vec3s.size())
+            vec3s.add(new PxVec3());
+        PxVec3 vec = vec3s.get(vec3Top++);
+        vec.setX(x);
+        vec.setY(y);
+        vec.setZ(z);
+        return vec;
+    }
+
+    /**
+     * 一時的なPxQuatを借りる
+     */
+    public PxQuat quat(float x, float y, float z, float w) {
+        if (quatTop == quats.size())
+            quats.add(new PxQuat(PxIDENTITYEnum.PxIdentity));
+        PxQuat quat = quats.get(quatTop++);
+        quat.setX(x);
+        quat.setY(y);
+        quat.setZ(z);
+        quat.setW(w);
+        return quat;
+    }
+
+    /**
+     * 回転のない一時的なPxTransformを借りる
+     */
+    public PxTransform transform(float x, float y, float z) {
+        return transform(x, y, z, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * 一時的なPxTransformを借りる
+     */
+    public PxTransform transform(float x, float y, float z, float qx, float qy, float qz, float qw) {
+        if (transformTop == transforms.size())
+            transforms.add(new PxTransform(PxIDENTITYEnum.PxIdentity));
+        PxTransform transform = transforms.get(transformTop++);
+        int vec3Mark = vec3Top, quatMark = quatTop;
+        transform.setP(vec3(x, y, z));
+        transform.setQ(quat(qx, qy, qz, qw));
+        // setP/setQはコピーするので、使った分はすぐ返す
+        vec3Top = vec3Mark;
+        quatTop = quatMark;
+        return transform;
+    }
+
+    /**
+     * レイキャストの結果を受け取るバッファを借りる
+     */
+    public PxRaycastBuffer10 raycastBuffer() {
+        if (raycastBuffer == null)
+            raycastBuffer = new PxRaycastBuffer10();
+        return raycastBuffer;
+    }
+
+    /**
+     * 既定のレイキャストのフラグ
+     */
+    public PxHitFlags defaultHitFlags() {
+        if (hitFlags == null)
+            hitFlags = new PxHitFlags((short) PxHitFlagEnum.eDEFAULT.value);
+        return hitFlags;
+    }
+
+    /**
+     * 動く物体だけを対象にするクエリのフィルター
+     */
+    public PxQueryFilterData dynamicFilterData() {
+        if (dynamicFilterData == null) {
+            PxQueryFlags queryFlags = new PxQueryFlags((short) PxQueryFlagEnum.eDYNAMIC.value);
+            dynamicFilterData = new PxQueryFilterData(queryFlags);
+            queryFlags.destroy();
+        }
+        return dynamicFilterData;
+    }
+}
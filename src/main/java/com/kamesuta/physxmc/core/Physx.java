@@ -2,6 +2,7 @@ package com.kamesuta.physxmc.core;
 
 import physx.PxTopLevelFunctions;
 import physx.common.*;
+import physx.cooking.PxCookingParams;
 import physx.physics.PxMaterial;
 import physx.physics.PxPhysics;
 
@@ -22,6 +23,9 @@ public class Physx {
     public static final PxTolerancesScale tolerances;
     public static final PxPhysics physics;
 
+    //cooking parameters used to create triangle meshes for terrain
+    public static final PxCookingParams cookingParams;
+
     //the CPU dispatcher, can be shared among multiple scenes
     public static final PxDefaultCpuDispatcher cpuDispatcher;
 
@@ -31,6 +35,12 @@ public class Physx {
     //create coin material with appropriate friction and restitution
     public static final PxMaterial coinMaterial;
 
+    //shapes shared among bodies of the same shape (e.g. coins)
+    public static final ShapeCache shapeCache;
+
+    //per-tick pose snapshot of every rigid body
+    public static final PoseSnapshot poseSnapshot = new PoseSnapshot(1024);
+
     /**
      * コアコンポーネントを初期化する
      */
@@ -40,10 +50,12 @@ public class Physx {
         foundation = PxTopLevelFunctions.CreateFoundation(version, allocator, errorCb);
         tolerances = new PxTolerancesScale();
         physics = PxTopLevelFunctions.CreatePhysics(version, foundation, tolerances);
+        cookingParams = new PxCookingParams(tolerances);
         cpuDispatcher = PxTopLevelFunctions.DefaultCpuDispatcherCreate(4);
         defaultMaterial = physics.createMaterial(0.5f, 0.5f, 0.5f);
         // コイン用マテリアル: 高摩擦、低弾性（適度に止まりやすく、跳ねにくい）
         coinMaterial = physics.createMaterial(0.8f, 0.7f, 0.2f);
+        shapeCache = new ShapeCache(physics);
     }
 
     /**
@@ -51,8 +63,10 @@ public class Physx {
      */
     public void terminate() {
         if (defaultMaterial != null) {
+            shapeCache.clear();
             defaultMaterial.release();
             coinMaterial.release();
+            cookingParams.destroy();
             tolerances.destroy();
 
             physics.release();
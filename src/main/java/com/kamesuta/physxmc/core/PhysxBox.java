@@ -1,6 +1,7 @@
 package com.kamesuta.physxmc.core;
 
 import lombok.Getter;
+import lombok.Setter;
 import physx.common.PxIDENTITYEnum;
 import physx.common.PxTransform;
 import physx.common.PxVec3;
@@ -24,48 +25,65 @@ public class PhysxBox {
     private final PxRigidDynamic actor;
 
     /**
-     * 箱にアタッチされた形状(接触判定)達
+     * 箱にアタッチされた形状(接触判定)達。{@link ShapeCache}で同じ形の箱と共有している
      */
     private final List<PxShape> boxShapes = new ArrayList<>();
 
+    /**
+     * 形状ごとのキャッシュのキー
+     */
+    private final List<ShapeCache.Key> shapeKeys = new ArrayList<>();
+
+    /**
+     * 箱の姿勢を書き写すスナップショットの番号
+     */
+    @Getter
+    private final PoseBuffer poseBuffer;
+
+    /**
+     * {@link ActorRegistry}で割り当てられたハンドル
+     */
+    @Getter
+    @Setter
+    private int handle = ActorRegistry.NO_HANDLE;
+
     /**
      * 物理演算される箱を作る
      *
      */
     public PhysxBox(PxPhysics physics, PxMaterial material, BoxData data) {
         // create default simulation shape flags
-        PxShapeFlags defaultShapeFlags;
+        byte defaultShapeFlags;
         if (!data.isTrigger())
-            defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value));
+            defaultShapeFlags = (byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value);
         else
-            defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eTRIGGER_SHAPE.value));//triggerはraycastに引っかからないようにする
+            defaultShapeFlags = (byte) (PxShapeFlagEnum.eTRIGGER_SHAPE.value);//triggerはraycastに引っかからないようにする
         // create a few temporary objects used during setup
         PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        // create a box with contact reporting enabled
-        int reportContactFlags = PxPairFlagEnum.eNOTIFY_TOUCH_FOUND.value | PxPairFlagEnum.eNOTIFY_TOUCH_LOST.value | PxPairFlagEnum.eNOTIFY_CONTACT_POINTS.value;
-        PxFilterData tmpFilterData = new PxFilterData(1, -1, reportContactFlags, 0);
+        // 衝突レイヤーに応じたフィルターデータ(接触の報告は地形側が行う)
+        PxFilterData tmpFilterData = CollisionLayers.createFilterData(data.isTrigger() ? ActorType.PLAYER_TRIGGER : ActorType.BOX);
 
         // create a small dynamic actor with size 1x1x1, which will fall on the ground
         tmpPose.setP(data.getPos());
         tmpPose.setQ(data.getQuat());
         PxRigidDynamic box = physics.createRigidDynamic(tmpPose);
 
+        // 同じ形の形状は共有し、箱を作るたびに形状を作らないようにする
         for (Map.Entry<PxBoxGeometry, PxVec3> entry : data.getBoxGeometries().entrySet()) {
-            PxShape tmpShape = physics.createShape(entry.getKey(), material, true, defaultShapeFlags);
-            tmpShape.setSimulationFilterData(tmpFilterData);
-            PxTransform tmpPose2 = new PxTransform(PxIDENTITYEnum.PxIdentity);
-            tmpPose2.setP(entry.getValue());
-            tmpShape.setLocalPose(tmpPose2);
-            box.attachShape(tmpShape);
-            boxShapes.add(tmpShape);
-            tmpPose2.destroy();
+            ShapeCache.Key key = Physx.shapeCache.key(entry.getKey(), entry.getValue(), material, defaultShapeFlags, tmpFilterData);
+            PxShape shape = Physx.shapeCache.get(key);
+            box.attachShape(shape);
+            boxShapes.add(shape);
+            shapeKeys.add(key);
             entry.getValue().destroy();
             entry.getKey().destroy();
         }
 
         PxRigidBodyExt.updateMassAndInertia(box, data.getDensity());
 
-        defaultShapeFlags.destroy();
+        poseBuffer = new PoseBuffer(box);
+        poseBuffer.seed(data.getPos(), data.getQuat());
+
         tmpFilterData.destroy();
         tmpPose.destroy();
         data.getPos().destroy();
@@ -92,16 +110,46 @@ public class PhysxBox {
         transform.destroy();
     }
 
+    /**
+     * 箱の位置と回転をセットする。一時オブジェクトは{@link NativeScratch}から借りる
+     */
+    public void setPos(float x, float y, float z, float qx, float qy, float qz, float qw) {
+        try (NativeScratch scratch = NativeScratch.push()) {
+            actor.setGlobalPose(scratch.transform(x, y, z, qx, qy, qz, qw));
+        }
+    }
+
+    /**
+     * 箱の衝突レイヤーを変更する。シーンに入っている場合は演算中に呼ばないこと
+     *
+     * @param layer 新しいレイヤー
+     */
+    public void setCollisionLayer(ActorType layer) {
+        PxFilterData filterData = CollisionLayers.createFilterData(layer);
+        // 形状は他の箱と共有しているので書き換えずに、新しいレイヤーの形状に付け替える
+        for (int i = 0; i < boxShapes.size(); i++) {
+            ShapeCache.Key key = shapeKeys.get(i).withFilter(filterData);
+            if (key.equals(shapeKeys.get(i)))
+                continue;
+            PxShape shape = Physx.shapeCache.get(key);
+            actor.detachShape(boxShapes.get(i));
+            actor.attachShape(shape);
+            boxShapes.set(i, shape);
+            shapeKeys.set(i, key);
+        }
+        filterData.destroy();
+    }
+
     /**
      * 箱を破壊する。このクラスを消す際に必ず呼ぶこと
      */
     public void release() {
+        // 共有の形状はキャッシュが持っているので、アクターを解放して参照を外すだけにする
         if (actor.isReleasable())
             actor.release();
-        for (int i = 0; i < boxShapes.size(); ) {
-            boxShapes.get(i).release();
-            boxShapes.remove(i);
-        }
+        poseBuffer.release();
+        boxShapes.clear();
+        shapeKeys.clear();
     }
 
     /**
@@ -117,6 +165,18 @@ public class PhysxBox {
         vec3.destroy();
     }
 
+    /**
+     * 箱に力を加える。一時オブジェクトは{@link NativeScratch}から借りる
+     */
+    public void addForce(float x, float y, float z, PxForceModeEnum mode) {
+        if (actor.getRigidBodyFlags().isSet(PxRigidBodyFlagEnum.eKINEMATIC))
+            return;
+
+        try (NativeScratch scratch = NativeScratch.push()) {
+            actor.addForce(scratch.vec3(x, y, z), mode);
+        }
+    }
+
     /**
      * Boxがスリープ中(更新停止中)か取得する
      */
@@ -0,0 +1,100 @@
+package com.kamesuta.physxmc.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * PhysxWorldを専用スレッドで演算するためのスレッド
+ * メインスレッドからのシーン操作はロックフリーのキューで受け取り、演算の合間に受け取った順に実行する
+ */
+public class PhysxSimulationThread extends Thread {
+
+    /**
+     * 1回の演算の間隔(1tick = 50ms)
+     */
+    private static final long STEP_INTERVAL_NANOS = 50_000_000L;
+
+    /**
+     * これ以上演算が遅れた場合は遅れを取り戻そうとせずに間隔をリセットする
+     */
+    private static final long MAX_LAG_NANOS = STEP_INTERVAL_NANOS * 5;
+
+    private final PhysxWorld world;
+
+    /**
+     * メインスレッドから送られたシーン操作
+     */
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    public PhysxSimulationThread(PhysxWorld world) {
+        super("PhysxMc-Simulation");
+        setDaemon(true);
+        this.world = world;
+    }
+
+    /**
+     * シーン操作を演算スレッドに送る
+     *
+     * @param command シーン操作
+     */
+    public void submit(Runnable command) {
+        commands.add(command);
+    }
+
+    @Override
+    public void run() {
+        long nextStep = System.nanoTime();
+        while (running) {
+            runCommands();
+
+            long now = System.nanoTime();
+            if (now - nextStep < 0) {
+                LockSupport.parkNanos(nextStep - now);
+                continue;
+            }
+
+            try {
+                world.stepOnSimulationThread();
+            } catch (Throwable e) {
+                Logger.getLogger("PhysxMc").log(Level.SEVERE, "物理演算スレッドでエラーが発生しました", e);
+            }
+
+            nextStep += STEP_INTERVAL_NANOS;
+            if (System.nanoTime() - nextStep > MAX_LAG_NANOS)
+                nextStep = System.nanoTime();
+        }
+        runCommands();
+    }
+
+    /**
+     * 溜まっているシーン操作を全て実行する
+     */
+    private void runCommands() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            try {
+                command.run();
+            } catch (Throwable e) {
+                Logger.getLogger("PhysxMc").log(Level.SEVERE, "物理演算スレッドでのシーン操作に失敗しました", e);
+            }
+        }
+    }
+
+    /**
+     * スレッドを止めて、残っているシーン操作を実行し終わるまで待つ
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(this);
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
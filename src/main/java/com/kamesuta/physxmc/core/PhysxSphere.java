@@ -1,6 +1,7 @@
 package com.kamesuta.physxmc.core;
 
 import lombok.Getter;
+import lombok.Setter;
 import physx.common.PxIDENTITYEnum;
 import physx.common.PxTransform;
 import physx.common.PxVec3;
@@ -28,6 +29,19 @@ public class PhysxSphere {
      */
     private final List<PxShape> sphereShapes = new ArrayList<>();
 
+    /**
+     * 球体の姿勢を書き写すスナップショットの番号
+     */
+    @Getter
+    private final PoseBuffer poseBuffer;
+
+    /**
+     * {@link ActorRegistry}で割り当てられたハンドル
+     */
+    @Getter
+    @Setter
+    private int handle = ActorRegistry.NO_HANDLE;
+
     /**
      * 物理演算される球体を作る
      */
@@ -40,9 +54,8 @@ public class PhysxSphere {
             defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eTRIGGER_SHAPE.value));//triggerはraycastに引っかからないようにする
         // create a few temporary objects used during setup
         PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        // create a sphere with contact reporting enabled
-        int reportContactFlags = PxPairFlagEnum.eNOTIFY_TOUCH_FOUND.value | PxPairFlagEnum.eNOTIFY_TOUCH_LOST.value | PxPairFlagEnum.eNOTIFY_CONTACT_POINTS.value;
-        PxFilterData tmpFilterData = new PxFilterData(1, -1, reportContactFlags, 0);
+        // 衝突レイヤーに応じたフィルターデータ(接触の報告は地形側が行う)
+        PxFilterData tmpFilterData = CollisionLayers.createFilterData(ActorType.SPHERE);
 
         // create a small dynamic actor with sphere geometry, which will fall on the ground
         tmpPose.setP(data.getPos());
@@ -64,6 +77,9 @@ public class PhysxSphere {
 
         PxRigidBodyExt.updateMassAndInertia(sphere, data.getDensity());
 
+        poseBuffer = new PoseBuffer(sphere);
+        poseBuffer.seed(data.getPos(), data.getQuat());
+
         defaultShapeFlags.destroy();
         tmpFilterData.destroy();
         tmpPose.destroy();
@@ -91,12 +107,35 @@ public class PhysxSphere {
         transform.destroy();
     }
 
+    /**
+     * 球体の位置と回転をセットする。一時オブジェクトは{@link NativeScratch}から借りる
+     */
+    public void setPos(float x, float y, float z, float qx, float qy, float qz, float qw) {
+        try (NativeScratch scratch = NativeScratch.push()) {
+            actor.setGlobalPose(scratch.transform(x, y, z, qx, qy, qz, qw));
+        }
+    }
+
+    /**
+     * 球体の衝突レイヤーを変更する。シーンに入っている場合は演算中に呼ばないこと
+     *
+     * @param layer 新しいレイヤー
+     */
+    public void setCollisionLayer(ActorType layer) {
+        PxFilterData filterData = CollisionLayers.createFilterData(layer);
+        for (PxShape shape : sphereShapes) {
+            shape.setSimulationFilterData(filterData);
+        }
+        filterData.destroy();
+    }
+
     /**
      * 球体を破壊する。このクラスを消す際に必ず呼ぶこと
      */
     public void release() {
         if (actor.isReleasable())
             actor.release();
+        poseBuffer.release();
         for (int i = 0; i < sphereShapes.size(); ) {
             sphereShapes.get(i).release();
             sphereShapes.remove(i);
@@ -116,6 +155,18 @@ public class PhysxSphere {
         vec3.destroy();
     }
 
+    /**
+     * 球体に力を加える。一時オブジェクトは{@link NativeScratch}から借りる
+     */
+    public void addForce(float x, float y, float z, PxForceModeEnum mode) {
+        if (actor.getRigidBodyFlags().isSet(PxRigidBodyFlagEnum.eKINEMATIC))
+            return;
+
+        try (NativeScratch scratch = NativeScratch.push()) {
+            actor.addForce(scratch.vec3(x, y, z), mode);
+        }
+    }
+
     /**
      * 球体がスリープ中(更新停止中)か取得する
      */
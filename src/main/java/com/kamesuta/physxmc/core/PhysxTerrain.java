@@ -43,7 +43,7 @@ public class PhysxTerrain {
         PxShapeFlags defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value));
         // create a few temporary objects used during setup
         PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        PxFilterData tmpFilterData = new PxFilterData(1, 1, 0, 0);
+        PxFilterData tmpFilterData = CollisionLayers.createFilterData(ActorType.TERRAIN);
 
         // create a large static box with size 20x1x20 as ground
         PxVec3 tmpVec = new PxVec3(0f, -61f, 0f);
@@ -1,7 +1,8 @@
 package com.kamesuta.physxmc.core;
 
+import com.kamesuta.physxmc.PhysxSetting;
+import com.kamesuta.physxmc.utils.NativeMemory;
 import lombok.Getter;
-import org.apache.logging.log4j.util.TriConsumer;
 import org.bukkit.util.Vector;
 import physx.PxTopLevelFunctions;
 import physx.common.PxQuat;
@@ -9,14 +10,32 @@ import physx.common.PxVec3;
 import physx.geometry.PxBoxGeometry;
 import physx.physics.*;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
 import static com.kamesuta.physxmc.core.Physx.*;
 
 /**
  * Physxのシーン管理クラス
+ * <p>
+ * パイプラインモード({@link PhysxSetting#isPipelinedSimulation()})では、tickの最後に{@link #postTick()}で演算を開始し、
+ * 次のtickの最初に{@link #tick()}で結果を受け取る。演算中({@link #isSimulating()})のAPIの扱いは以下の通り
+ * <ul>
+ *     <li>raycast・姿勢や速度の読み取り: 可能。直前のfetchResults時点の状態が返る</li>
+ *     <li>addBox・removeBox・setPos・addForce・キネマティックの切り替えや移動・重力の変更: {@link #runOrDefer(Runnable)}で
+ *     次のfetchResultsまで呼び出し順に遅延される(まだシーンに追加されていないアクターへの書き込みを防ぐため、アクターへの書き込みもまとめて遅延する)</li>
+ * </ul>
+ * <p>
+ * 専用スレッドモード({@link #startSimulationThread()})では、演算は{@link PhysxSimulationThread}がサーバーのtickとは独立して進める。
+ * メインスレッドからの書き込みは{@link #runOrDefer(Runnable)}で演算スレッドのキューに送られ、姿勢は{@link #readPose(PoseBuffer, int)}で
+ * tickの最初に取得したスナップショットから読む。衝突や重なりイベントはメインスレッドの{@link #tick()}で購読者に届けられる。
+ * raycastなどの問い合わせはメインスレッドを待たせないよう{@link #query(Supplier, Consumer)}で演算スレッドに送り、結果は後の{@link #tick()}でコールバックに届く
  */
 public class PhysxWorld {
 
@@ -28,6 +47,49 @@ public class PhysxWorld {
     @Getter
     protected SimulationCallback simCallback;
 
+    /**
+     * アクターから箱や球体などの持ち主を引くためのレジストリ
+     */
+    @Getter
+    protected final ActorRegistry registry = new ActorRegistry();
+
+    /**
+     * 演算中に呼ばれたため、次のfetchResultsまで遅延させているシーン操作
+     */
+    private final Queue<Runnable> deferredOperations = new ArrayDeque<>();
+
+    /**
+     * 専用スレッドモードで演算スレッドが答えた問い合わせの結果。メインスレッドの{@link #tick()}でコールバックに渡す
+     */
+    private final Queue<Runnable> queryResults = new ConcurrentLinkedQueue<>();
+
+    /**
+     * simulateを呼んでからfetchResultsするまでの間かどうか
+     */
+    @Getter
+    private boolean simulating = false;
+
+    /**
+     * 専用スレッドモードで演算しているスレッド(専用スレッドモードでなければnull)
+     */
+    protected volatile PhysxSimulationThread simulationThread;
+
+    /**
+     * 姿勢をスナップショットに書き写す剛体(シーン操作と同じスレッドからのみ触る)
+     */
+    private PoseBuffer[] poseBuffers = new PoseBuffer[256];
+    private int poseBufferCount = 0;
+
+    /**
+     * 演算スレッドが最後に書き込みを終えたスロット
+     */
+    private volatile int publishedPoseSlot = 0;
+
+    /**
+     * メインスレッドがこのtickに読んでいるスロット
+     */
+    private volatile int acquiredPoseSlot = 0;
+
     /**
      * チャンクごとに地形を作ってシーンに挿入する
      */
@@ -62,6 +124,8 @@ public class PhysxWorld {
      */
     public void destroyScene() {
         if (scene != null) {
+            stopSimulationThread();
+            fetchResults();
             scene.release();
         }
     }
@@ -72,7 +136,11 @@ public class PhysxWorld {
      */
     public PhysxBox addBox(BoxData data) {
         PhysxBox box = new PhysxBox(physics, defaultMaterial, data);
-        scene.addActor(box.getActor());
+        box.setHandle(registry.register(box.getActor(), ActorType.BOX, box));
+        runOrDefer(() -> {
+            scene.addActor(box.getActor());
+            trackPose(box.getPoseBuffer());
+        });
         return box;
     }
 
@@ -82,16 +150,245 @@ public class PhysxWorld {
      * @param box 　箱オフジェクト
      */
     public void removeBox(PhysxBox box) {
-        scene.removeActor(box.getActor());
-        box.release();
+        registry.unregister(box.getHandle());
+        box.setHandle(ActorRegistry.NO_HANDLE);
+        runOrDefer(() -> {
+            untrackPose(box.getPoseBuffer());
+            scene.removeActor(box.getActor());
+            box.release();
+        });
+    }
+
+    /**
+     * 箱の種類と持ち主を変更し、衝突レイヤーも種類に合わせる
+     *
+     * @param box   箱
+     * @param type  新しい種類
+     * @param owner 新しい持ち主
+     */
+    public void retag(PhysxBox box, ActorType type, Object owner) {
+        registry.retag(box.getHandle(), type, owner);
+        runOrDefer(() -> box.setCollisionLayer(type));
+    }
+
+    /**
+     * 剛体の姿勢をスナップショットの対象に加える。シーン操作の中から呼ぶ
+     *
+     * @param buffer 姿勢バッファ
+     */
+    protected void trackPose(PoseBuffer buffer) {
+        if (poseBufferCount == poseBuffers.length)
+            poseBuffers = Arrays.copyOf(poseBuffers, poseBufferCount << 1);
+        buffer.listIndex = poseBufferCount;
+        poseBuffers[poseBufferCount++] = buffer;
+    }
+
+    /**
+     * 剛体の姿勢をスナップショットの対象から外す。シーン操作の中から呼ぶ
+     *
+     * @param buffer 姿勢バッファ
+     */
+    protected void untrackPose(PoseBuffer buffer) {
+        int index = buffer.listIndex;
+        if (index < 0)
+            return;
+
+        PoseBuffer last = poseBuffers[--poseBufferCount];
+        poseBuffers[poseBufferCount] = null;
+        if (last != buffer) {
+            poseBuffers[index] = last;
+            last.listIndex = index;
+        }
+        buffer.listIndex = -1;
     }
 
     /**
-     * シーンの時間を経過させる
+     * 剛体の姿勢や速度をスナップショットから読む。JNIは呼ばない
+     * 専用スレッドモードではこのtickの最初に取得したスロットを、それ以外では{@link #tick()}でfetchResultsの後に書き写したスロットを読む
+     *
+     * @param buffer 剛体のスナップショットの番号
+     * @param field  項目({@link PoseSnapshot#PX}など)
+     * @return 値
+     */
+    public float readPose(PoseBuffer buffer, int field) {
+        return Physx.poseSnapshot.get(acquiredPoseSlot, buffer.getIndex(), field);
+    }
+
+    /**
+     * 剛体がスナップショットの時点で眠っていたか
+     *
+     * @param buffer 剛体のスナップショットの番号
+     * @return 眠っていたか
+     */
+    public boolean isSleeping(PoseBuffer buffer) {
+        return readPose(buffer, PoseSnapshot.SLEEPING) != 0f;
+    }
+
+    /**
+     * シーンの時間を経過させる。パイプラインモードでは前のtickで開始した演算の結果を受け取るだけで、次の演算は{@link #postTick()}で開始する
+     * 専用スレッドモードでは演算はせず、最新の姿勢のスナップショットを取得する
+     * どのモードでも最後に、溜まっている衝突・重なりイベントを購読者に配信する
      */
     public void tick() {
+        if (simulationThread != null) {
+            acquiredPoseSlot = publishedPoseSlot;
+        } else {
+            fetchResults();
+            if (!PhysxSetting.isPipelinedSimulation()) {
+                simulate();
+                fetchResults();
+            }
+            Physx.poseSnapshot.captureAll(0, poseBuffers, poseBufferCount);
+        }
+        simCallback.getEvents().dispatch(registry);
+
+        Runnable result;
+        while ((result = queryResults.poll()) != null) {
+            result.run();
+        }
+    }
+
+    /**
+     * 衝突・重なりイベントを購読する。イベントは{@link #tick()}の中でメインスレッドからまとめて配信される
+     *
+     * @param eventMask     受け取りたいイベントの種類({@link ContactEventType#bit()}の論理和)
+     * @param actorTypeMask 受け取りたいアクターの種類({@link ActorType#bit()}の論理和)
+     * @param listener      リスナー
+     */
+    public void addContactListener(int eventMask, int actorTypeMask, ContactListener listener) {
+        simCallback.getEvents().subscribe(eventMask, actorTypeMask, listener);
+    }
+
+    /**
+     * そのtickの物理オブジェクトの更新が全て終わった後に呼ぶ。パイプラインモードでは次のtickまでサーバーの処理と並行して演算を進める
+     */
+    public void postTick() {
+        if (simulationThread == null && PhysxSetting.isPipelinedSimulation())
+            simulate();
+    }
+
+    /**
+     * 演算を開始する
+     */
+    protected void simulate() {
+        if (simulating)
+            return;
+
         scene.simulate(3f / 60f); // 1 second = 60 frame = 20tick
+        simulating = true;
+    }
+
+    /**
+     * 進行中の演算があれば完了を待って結果を反映し、演算中に遅延させていたシーン操作を実行する
+     */
+    public void fetchResults() {
+        if (!simulating)
+            return;
+
         scene.fetchResults(true);
+        simulating = false;
+
+        Runnable operation;
+        while ((operation = deferredOperations.poll()) != null) {
+            operation.run();
+        }
+    }
+
+    /**
+     * シーンやアクターへの書き込み操作を実行する。演算中であれば次のfetchResultsまで遅延させる
+     * 専用スレッドモードでは演算スレッドのキューに送り、演算の合間に呼び出し順に実行させる
+     *
+     * @param operation シーン操作
+     */
+    public void runOrDefer(Runnable operation) {
+        PhysxSimulationThread thread = simulationThread;
+        if (thread != null && Thread.currentThread() != thread)
+            thread.submit(operation);
+        else if (simulating)
+            deferredOperations.add(operation);
+        else
+            operation.run();
+    }
+
+    /**
+     * シーンに対する問い合わせを実行し、結果をメインスレッドでコールバックに渡す
+     * 専用スレッドモードでは演算スレッドの演算の合間に実行し、結果は後の{@link #tick()}で渡す(メインスレッドは待たない)。
+     * それ以外のモードではその場で実行してすぐに渡す
+     *
+     * @param query    問い合わせ
+     * @param callback 結果を受け取るコールバック
+     */
+    protected <T> void query(Supplier<T> query, Consumer<T> callback) {
+        PhysxSimulationThread thread = simulationThread;
+        if (thread != null && Thread.currentThread() != thread) {
+            thread.submit(() -> {
+                T result = query.get();
+                queryResults.add(() -> callback.accept(result));
+            });
+            return;
+        }
+        callback.accept(query.get());
+    }
+
+    /**
+     * 専用スレッドモードを開始する。以降の演算はサーバーのtickとは独立して演算スレッドで行われる
+     */
+    public void startSimulationThread() {
+        if (simulationThread != null)
+            return;
+
+        fetchResults();
+        Physx.poseSnapshot.captureAll(0, poseBuffers, poseBufferCount);
+        Physx.poseSnapshot.captureAll(1, poseBuffers, poseBufferCount);
+        publishedPoseSlot = 0;
+        acquiredPoseSlot = 0;
+
+        simulationThread = new PhysxSimulationThread(this);
+        simulationThread.start();
+    }
+
+    /**
+     * 専用スレッドモードを終了する。演算スレッドに残っているシーン操作を全て実行し終わるまで待つ
+     */
+    public void stopSimulationThread() {
+        PhysxSimulationThread thread = simulationThread;
+        if (thread == null)
+            return;
+
+        thread.shutdown();
+        simulationThread = null;
+
+        // 以降はtickごとにスロット0へ書き写して読む
+        Physx.poseSnapshot.captureAll(0, poseBuffers, poseBufferCount);
+        publishedPoseSlot = 0;
+        acquiredPoseSlot = 0;
+    }
+
+    /**
+     * 専用スレッドモードかどうか
+     *
+     * @return 演算スレッドが動いているか
+     */
+    public boolean isSimulationThreadRunning() {
+        return simulationThread != null;
+    }
+
+    /**
+     * 演算スレッドから呼ばれる1ステップ分の処理
+     * 演算した後、メインスレッドが読んでいない側のスロットに姿勢を書き込んで公開する
+     */
+    void stepOnSimulationThread() {
+        simulate();
+        fetchResults();
+
+        // メインスレッドがまだ前回公開したスロットを取得していなければ、読んでいる最中のスロットを上書きしないよう書き込みを見送る
+        int published = publishedPoseSlot;
+        if (acquiredPoseSlot != published)
+            return;
+
+        int back = published ^ 1;
+        Physx.poseSnapshot.captureAll(back, poseBuffers, poseBufferCount);
+        publishedPoseSlot = back;
     }
 
     /**
@@ -100,67 +397,204 @@ public class PhysxWorld {
      * @param gravity
      */
     public void setGravity(Vector gravity) {
-        PxVec3 pxGravity = new PxVec3((float) gravity.getX(), (float) gravity.getY(), (float) gravity.getZ());
-        scene.setGravity(pxGravity);
-        pxGravity.destroy();
+        float x = (float) gravity.getX();
+        float y = (float) gravity.getY();
+        float z = (float) gravity.getZ();
+        runOrDefer(() -> {
+            try (NativeScratch scratch = NativeScratch.push()) {
+                scene.setGravity(scratch.vec3(x, y, z));
+            }
+        });
     }
 
     /**
      * 衝突や重なりイベントを検知するためのクラス
+     * コールバックの中ではイベントを{@link ContactEventQueue}に書き込むだけで、購読者の呼び出しは演算の外で行う。
+     * ペアの配列はラッパーを作らずにアドレスとオフセットで直接読む。オフセットは最初のコールバックでラッパーの値と照らし合わせ、
+     * 合わなければ(PhysXの構造体が変わっていれば)ラッパーで読む
      */
     public static class SimulationCallback extends PxSimulationEventCallbackImpl {
 
         /**
-         * 衝突イベントを受信したいメソッドをここに登録する
+         * PxContactPairHeaderのメンバーのオフセット
+         */
+        private static final long HEADER_ACTOR0 = 0;
+        private static final long HEADER_ACTOR1 = 8;
+
+        /**
+         * PxContactPairのメンバーのオフセット
+         */
+        private static final long PAIR_CONTACT_IMPULSES = 32;
+        private static final long PAIR_CONTACT_COUNT = 44;
+        private static final long PAIR_FLAGS = 48;
+        private static final long PAIR_EVENTS = 50;
+
+        /**
+         * PxTriggerPairのメンバーのオフセット
+         */
+        private static final long TRIGGER_TRIGGER_ACTOR = 8;
+        private static final long TRIGGER_OTHER_ACTOR = 24;
+        private static final long TRIGGER_STATUS = 32;
+
+        /**
+         * PxContactPairFlag::eINTERNAL_HAS_IMPULSES
+         */
+        private static final int CONTACT_PAIR_HAS_IMPULSES = 1 << 4;
+
+        private static final int TOUCH_FOUND = PxPairFlagEnum.eNOTIFY_TOUCH_FOUND.value;
+        private static final int TOUCH_LOST = PxPairFlagEnum.eNOTIFY_TOUCH_LOST.value;
+
+        /**
+         * 配列の要素の大きさ
+         */
+        private static final long CONTACT_PAIR_STRIDE = PxContactPair.arrayGet(0L, 1).getAddress();
+        private static final long TRIGGER_PAIR_STRIDE = PxTriggerPair.arrayGet(0L, 1).getAddress();
+
+        /**
+         * オフセットを確かめたか(0: まだ, 1: 合っていた, -1: 合わなかった)
          */
-        public List<TriConsumer<PxActor, PxActor, String>> contactReceivers = new ArrayList<>();
+        private int contactLayout = 0;
+        private int triggerLayout = 0;
 
         /**
-         * 重なりイベントを受信したいメソッドをここに登録する
+         * 受け取ったイベントを溜めておくバッファ
          */
-        public List<TriConsumer<PxActor, PxActor, String>> triggerReceivers = new ArrayList<>();
+        @Getter
+        private final ContactEventQueue events = new ContactEventQueue();
 
         @Override
         public void onContact(PxContactPairHeader pairHeader, PxContactPair pairs, int nbPairs) {
-            PxActor actor0 = pairHeader.getActors(0);
-            PxActor actor1 = pairHeader.getActors(1);
+            if (nbPairs <= 0)
+                return;
+            long header = pairHeader.getAddress();
+            long base = pairs.getAddress();
+            if (contactLayout == 0)
+                contactLayout = checkContactLayout(pairHeader, base) ? 1 : -1;
+            if (contactLayout < 0) {
+                onContactWrapped(pairHeader, base, nbPairs);
+                return;
+            }
+
+            long actor0 = NativeMemory.getAddress(header + HEADER_ACTOR0);
+            long actor1 = NativeMemory.getAddress(header + HEADER_ACTOR1);
 
             //入れるとなぜかクラッシュする
 //            if(actor0.getType().equals(PxActorTypeEnum.eRIGID_STATIC) || actor1.getType().equals(PxActorTypeEnum.eRIGID_STATIC)) 
 //                return;
 
             for (int i = 0; i < nbPairs; i++) {
-                PxContactPair pair = PxContactPair.arrayGet(pairs.getAddress(), i);
-                PxPairFlags events = pair.getEvents();
-                String event;
-                if (events.isSet(PxPairFlagEnum.eNOTIFY_TOUCH_FOUND)) {
-                    event = "TOUCH_FOUND";
-                } else if (events.isSet(PxPairFlagEnum.eNOTIFY_TOUCH_LOST)) {
-                    event = "TOUCH_LOST";
-                } else {
-                    event = "OTHER";
+                long pair = base + CONTACT_PAIR_STRIDE * i;
+                int events = NativeMemory.getU16(pair + PAIR_EVENTS);
+                if ((events & TOUCH_FOUND) != 0) {
+                    this.events.offer(actor0, actor1, ContactEventType.TOUCH_FOUND, impulse(pair));
+                } else if ((events & TOUCH_LOST) != 0) {
+                    this.events.offer(actor0, actor1, ContactEventType.TOUCH_LOST, 0f);
                 }
-                contactReceivers.forEach(pxActorPxActorStringTriConsumer -> pxActorPxActorStringTriConsumer.accept(actor0, actor1, event));
             }
         }
 
+        /**
+         * ペアの接触点の力積の合計を求める。接触点を報告するペアフラグ(eNOTIFY_CONTACT_POINTS)を立てていないペアは0
+         */
+        private static float impulse(long pair) {
+            if ((NativeMemory.getU16(pair + PAIR_FLAGS) & CONTACT_PAIR_HAS_IMPULSES) == 0)
+                return 0f;
+            long impulses = NativeMemory.getAddress(pair + PAIR_CONTACT_IMPULSES);
+            if (impulses == 0)
+                return 0f;
+            int count = NativeMemory.getU8(pair + PAIR_CONTACT_COUNT);
+            float sum = 0f;
+            for (int i = 0; i < count; i++) {
+                sum += NativeMemory.getFloat(impulses + (long) Float.BYTES * i);
+            }
+            return sum;
+        }
+
         @Override
         public void onTrigger(PxTriggerPair pairs, int count) {
+            if (count <= 0)
+                return;
+            long base = pairs.getAddress();
+            if (triggerLayout == 0)
+                triggerLayout = checkTriggerLayout(base) ? 1 : -1;
+            if (triggerLayout < 0) {
+                onTriggerWrapped(base, count);
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                long pair = base + TRIGGER_PAIR_STRIDE * i;
+                long actor0 = NativeMemory.getAddress(pair + TRIGGER_TRIGGER_ACTOR);
+                long actor1 = NativeMemory.getAddress(pair + TRIGGER_OTHER_ACTOR);
+
+                int status = NativeMemory.getInt(pair + TRIGGER_STATUS);
+                if (status == TOUCH_FOUND) {
+                    events.offer(actor0, actor1, ContactEventType.TRIGGER_ENTER, 0f);
+                } else if (status == TOUCH_LOST) {
+                    events.offer(actor0, actor1, ContactEventType.TRIGGER_EXIT, 0f);
+                }
+            }
+        }
+
+        /**
+         * 最初のペアについて、直接読んだ値とラッパーで読んだ値が同じか確かめる
+         */
+        private static boolean checkContactLayout(PxContactPairHeader pairHeader, long base) {
+            long header = pairHeader.getAddress();
+            PxContactPair pair = PxContactPair.arrayGet(base, 0);
+            PxPairFlags events = pair.getEvents();
+            int raw = NativeMemory.getU16(base + PAIR_EVENTS);
+            boolean ok = NativeMemory.getAddress(header + HEADER_ACTOR0) == pairHeader.getActors(0).getAddress()
+                    && NativeMemory.getAddress(header + HEADER_ACTOR1) == pairHeader.getActors(1).getAddress()
+                    && NativeMemory.getU8(base + PAIR_CONTACT_COUNT) == (pair.getContactCount() & 0xff)
+                    && ((raw & TOUCH_FOUND) != 0) == events.isSet(PxPairFlagEnum.eNOTIFY_TOUCH_FOUND)
+                    && ((raw & TOUCH_LOST) != 0) == events.isSet(PxPairFlagEnum.eNOTIFY_TOUCH_LOST);
+            if (!ok)
+                Logger.getLogger("PhysxMc").warning("PxContactPairの配置が想定と違うため、接触イベントはラッパーで読みます");
+            return ok;
+        }
+
+        private static boolean checkTriggerLayout(long base) {
+            PxTriggerPair pair = PxTriggerPair.arrayGet(base, 0);
+            boolean ok = NativeMemory.getAddress(base + TRIGGER_TRIGGER_ACTOR) == pair.getTriggerActor().getAddress()
+                    && NativeMemory.getAddress(base + TRIGGER_OTHER_ACTOR) == pair.getOtherActor().getAddress()
+                    && NativeMemory.getInt(base + TRIGGER_STATUS) == pair.getStatus().value;
+            if (!ok)
+                Logger.getLogger("PhysxMc").warning("PxTriggerPairの配置が想定と違うため、重なりイベントはラッパーで読みます");
+            return ok;
+        }
+
+        /**
+         * ラッパーで接触イベントを読む(オフセットが合わなかった時の代わり)
+         */
+        private void onContactWrapped(PxContactPairHeader pairHeader, long base, int nbPairs) {
+            long actor0 = pairHeader.getActors(0).getAddress();
+            long actor1 = pairHeader.getActors(1).getAddress();
+            for (int i = 0; i < nbPairs; i++) {
+                PxPairFlags events = PxContactPair.arrayGet(base, i).getEvents();
+                if (events.isSet(PxPairFlagEnum.eNOTIFY_TOUCH_FOUND)) {
+                    this.events.offer(actor0, actor1, ContactEventType.TOUCH_FOUND, 0f);
+                } else if (events.isSet(PxPairFlagEnum.eNOTIFY_TOUCH_LOST)) {
+                    this.events.offer(actor0, actor1, ContactEventType.TOUCH_LOST, 0f);
+                }
+            }
+        }
+
+        /**
+         * ラッパーで重なりイベントを読む(オフセットが合わなかった時の代わり)
+         */
+        private void onTriggerWrapped(long base, int count) {
             for (int i = 0; i < count; i++) {
-                PxTriggerPair pair = PxTriggerPair.arrayGet(pairs.getAddress(), i);
-                PxActor actor0 = pair.getTriggerActor();
-                PxActor actor1 = pair.getOtherActor();
+                PxTriggerPair pair = PxTriggerPair.arrayGet(base, i);
+                long actor0 = pair.getTriggerActor().getAddress();
+                long actor1 = pair.getOtherActor().getAddress();
 
                 PxPairFlagEnum status = pair.getStatus();
-                String event;
                 if (status == PxPairFlagEnum.eNOTIFY_TOUCH_FOUND) {
-                    event = "TRIGGER_ENTER";
+                    events.offer(actor0, actor1, ContactEventType.TRIGGER_ENTER, 0f);
                 } else if (status == PxPairFlagEnum.eNOTIFY_TOUCH_LOST) {
-                    event = "TRIGGER_EXIT";
-                } else {
-                    event = "OTHER";
+                    events.offer(actor0, actor1, ContactEventType.TRIGGER_EXIT, 0f);
                 }
-                triggerReceivers.forEach(pxActorPxActorStringTriConsumer -> pxActorPxActorStringTriConsumer.accept(actor0, actor1, event));
             }
         }
     }
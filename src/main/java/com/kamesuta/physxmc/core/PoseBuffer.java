@@ -0,0 +1,56 @@
+package com.kamesuta.physxmc.core;
+
+import lombok.Getter;
+import physx.common.PxQuat;
+import physx.common.PxVec3;
+import physx.physics.PxRigidDynamic;
+
+/**
+ * 剛体の{@link PoseSnapshot}の中での番号を持つクラス
+ * 姿勢はスナップショットにまとめて書き写されるので、メインスレッドは{@link PhysxWorld#readPose}でそこから読む
+ */
+public class PoseBuffer {
+
+    /**
+     * 姿勢を読み取る剛体
+     */
+    @Getter
+    private final PxRigidDynamic actor;
+
+    /**
+     * スナップショットの中での番号(解放後は-1)
+     */
+    @Getter
+    private int index;
+
+    /**
+     * PhysxWorldの演算側リストの中での位置(未登録なら-1)
+     */
+    int listIndex = -1;
+
+    public PoseBuffer(PxRigidDynamic actor) {
+        this.actor = actor;
+        this.index = Physx.poseSnapshot.allocate();
+    }
+
+    /**
+     * まだ一度も演算されていない剛体の初期姿勢をスナップショットの両方のスロットに書き込む
+     * 速度は0、眠っていない状態として書くので、プールから戻した剛体も最初のフレームから表示を同期する
+     *
+     * @param pos  初期位置
+     * @param quat 初期回転
+     */
+    public void seed(PxVec3 pos, PxQuat quat) {
+        Physx.poseSnapshot.seed(index, pos, quat);
+    }
+
+    /**
+     * スナップショットの番号を返す。剛体を解放する時に呼ぶ
+     */
+    public void release() {
+        if (index < 0)
+            return;
+        Physx.poseSnapshot.free(index);
+        index = -1;
+    }
+}
@@ -0,0 +1,204 @@
+package com.kamesuta.physxmc.core;
+
+import physx.common.PxQuat;
+import physx.common.PxTransform;
+import physx.common.PxVec3;
+import physx.physics.PxRigidDynamic;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * シーン内の全ての剛体の姿勢・速度・角速度・スリープ状態を、fetchResultsの後に一度にまとめて書き写しておくスナップショット
+ * 表示や地形の読み込み、保存などはJNIを呼ばずにここから読む
+ * <p>
+ * 値はヒープ外の{@link FloatBuffer}に項目ごとに並べて持つ(項目 * 容量 + 剛体の番号)。専用スレッドモードのために2つのスロットを持ち、
+ * 演算側は{@link PhysxWorld}が公開していない側のスロットにだけ書き込み、メインスレッドは取得済みのスロットだけを読む
+ * <p>
+ * 剛体の番号は{@link #allocate()}で剛体ごとに割り当て、剛体を解放するまで使い続ける。
+ * {@link ActorRegistry}のハンドルと違ってシーンから外しても手放さないので、演算側がまだ古い剛体を書き写している番号を別の剛体が使うことはない
+ */
+public class PoseSnapshot {
+
+    public static final int PX = 0;
+    public static final int PY = 1;
+    public static final int PZ = 2;
+    public static final int QX = 3;
+    public static final int QY = 4;
+    public static final int QZ = 5;
+    public static final int QW = 6;
+    public static final int VX = 7;
+    public static final int VY = 8;
+    public static final int VZ = 9;
+    public static final int SLEEPING = 10;
+    public static final int AX = 11;
+    public static final int AY = 12;
+    public static final int AZ = 13;
+
+    /**
+     * 剛体1つあたりの項目の数
+     */
+    public static final int FIELDS = 14;
+
+    /**
+     * スロットごとのバッファ。容量を増やす時は丸ごと差し替える
+     */
+    private volatile FloatBuffer[] slots;
+
+    private volatile int capacity;
+
+    /**
+     * 解放されて再利用を待っている番号
+     */
+    private int[] freeIndices = new int[64];
+    private int freeCount = 0;
+
+    /**
+     * 一度でも割り当てた番号の数
+     */
+    private int indexCount = 0;
+
+    public PoseSnapshot(int initialCapacity) {
+        this.capacity = initialCapacity;
+        this.slots = new FloatBuffer[]{allocateBuffer(initialCapacity), allocateBuffer(initialCapacity)};
+    }
+
+    private static FloatBuffer allocateBuffer(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * FIELDS * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * 剛体の番号を割り当てる。容量を増やすことがあるのでメインスレッドから呼ぶ
+     *
+     * @return 番号
+     */
+    public synchronized int allocate() {
+        if (freeCount > 0)
+            return freeIndices[--freeCount];
+
+        int index = indexCount++;
+        if (index >= capacity)
+            grow(capacity << 1);
+        return index;
+    }
+
+    /**
+     * 剛体の番号を返す。剛体を解放する時に、シーン操作の中から呼ぶ
+     *
+     * @param index 番号
+     */
+    public synchronized void free(int index) {
+        if (freeCount == freeIndices.length)
+            freeIndices = Arrays.copyOf(freeIndices, freeCount << 1);
+        freeIndices[freeCount++] = index;
+    }
+
+    /**
+     * 容量を増やす。書き写しの途中でバッファを差し替えないよう、{@link #captureAll}と同じロックの中で行う
+     */
+    private void grow(int newCapacity) {
+        FloatBuffer[] newSlots = new FloatBuffer[slots.length];
+        for (int s = 0; s < slots.length; s++) {
+            FloatBuffer from = slots[s];
+            FloatBuffer to = allocateBuffer(newCapacity);
+            for (int field = 0; field < FIELDS; field++) {
+                to.put(field * newCapacity, from, field * capacity, capacity);
+            }
+            newSlots[s] = to;
+        }
+        capacity = newCapacity;
+        slots = newSlots;
+    }
+
+    /**
+     * まだ一度も演算されていない剛体の初期姿勢を両方のスロットに書き込む。メインスレッドから呼ぶ
+     *
+     * @param index 番号
+     * @param pos   初期位置
+     * @param quat  初期回転
+     */
+    public void seed(int index, PxVec3 pos, PxQuat quat) {
+        int cap = capacity;
+        for (FloatBuffer slot : slots) {
+            slot.put(PX * cap + index, pos.getX());
+            slot.put(PY * cap + index, pos.getY());
+            slot.put(PZ * cap + index, pos.getZ());
+            slot.put(QX * cap + index, quat.getX());
+            slot.put(QY * cap + index, quat.getY());
+            slot.put(QZ * cap + index, quat.getZ());
+            slot.put(QW * cap + index, quat.getW());
+            slot.put(VX * cap + index, 0f);
+            slot.put(VY * cap + index, 0f);
+            slot.put(VZ * cap + index, 0f);
+            slot.put(SLEEPING * cap + index, 0f);
+            slot.put(AX * cap + index, 0f);
+            slot.put(AY * cap + index, 0f);
+            slot.put(AZ * cap + index, 0f);
+        }
+    }
+
+    /**
+     * 剛体達の現在の状態を指定したスロットにまとめて書き写す。シーン操作と同じスレッドから、演算していない間に呼ぶ
+     * このスロットに書き写した時に既に眠っていて、今も眠っている剛体は動いていないので読み飛ばす
+     *
+     * @param slot    スロット番号(0か1)
+     * @param buffers 書き写す剛体
+     * @param count   剛体の数
+     */
+    public synchronized void captureAll(int slot, PoseBuffer[] buffers, int count) {
+        FloatBuffer pose = slots[slot];
+        int cap = capacity;
+        for (int i = 0; i < count; i++) {
+            PoseBuffer buffer = buffers[i];
+            PxRigidDynamic actor = buffer.getActor();
+            int index = buffer.getIndex();
+
+            boolean sleeping = actor.isSleeping();
+            if (sleeping && pose.get(SLEEPING * cap + index) != 0f)
+                continue;
+
+            PxTransform transform = actor.getGlobalPose();
+            PxVec3 p = transform.getP();
+            PxQuat q = transform.getQ();
+            pose.put(PX * cap + index, p.getX());
+            pose.put(PY * cap + index, p.getY());
+            pose.put(PZ * cap + index, p.getZ());
+            pose.put(QX * cap + index, q.getX());
+            pose.put(QY * cap + index, q.getY());
+            pose.put(QZ * cap + index, q.getZ());
+            pose.put(QW * cap + index, q.getW());
+            if (sleeping) {
+                pose.put(VX * cap + index, 0f);
+                pose.put(VY * cap + index, 0f);
+                pose.put(VZ * cap + index, 0f);
+                pose.put(AX * cap + index, 0f);
+                pose.put(AY * cap + index, 0f);
+                pose.put(AZ * cap + index, 0f);
+            } else {
+                PxVec3 v = actor.getLinearVelocity();
+                pose.put(VX * cap + index, v.getX());
+                pose.put(VY * cap + index, v.getY());
+                pose.put(VZ * cap + index, v.getZ());
+                PxVec3 w = actor.getAngularVelocity();
+                pose.put(AX * cap + index, w.getX());
+                pose.put(AY * cap + index, w.getY());
+                pose.put(AZ * cap + index, w.getZ());
+            }
+            pose.put(SLEEPING * cap + index, sleeping ? 1f : 0f);
+        }
+    }
+
+    /**
+     * 指定したスロットの値を読む
+     *
+     * @param slot  スロット番号(0か1)
+     * @param index 剛体の番号
+     * @param field 項目({@link #PX}など)
+     * @return 値
+     */
+    public float get(int slot, int index, int field) {
+        return slots[slot].get(field * capacity + index);
+    }
+}
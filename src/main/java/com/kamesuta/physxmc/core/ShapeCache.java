@@ -0,0 +1,142 @@
+package com.kamesuta.physxmc.core;
+
+import lombok.Data;
+import physx.common.PxIDENTITYEnum;
+import physx.common.PxTransform;
+import physx.common.PxVec3;
+import physx.geometry.PxBoxGeometry;
+import physx.physics.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 同じ形の物体(コインなど)で形状を共有するためのキャッシュ
+ * (大きさ、オフセット、マテリアル、フラグ、フィルター)が同じ形状は、共有(非排他)の{@link PxShape}を1つだけ作って使い回す。
+ * 形状はアクターにアタッチされている間PhysX側で参照カウントされるので、アクターを解放しても形状は残る
+ * <p>
+ * 共有している形状の設定を変えると全ての物体に反映されてしまうので、変える時は別のキーの形状に付け替えること
+ */
+public class ShapeCache {
+
+    /**
+     * 形状のキー
+     */
+    @Data
+    public static class Key {
+        /**
+         * 箱の大きさの半分
+         */
+        private final float halfX, halfY, halfZ;
+        /**
+         * 物体に対するオフセット
+         */
+        private final float offsetX, offsetY, offsetZ;
+        /**
+         * マテリアルのアドレス
+         */
+        private final long material;
+        /**
+         * 形状のフラグ
+         */
+        private final byte flags;
+        /**
+         * 衝突のフィルターデータ
+         */
+        private final int word0, word1, word2, word3;
+
+        /**
+         * フィルターデータだけを変えたキーを作る
+         */
+        public Key withFilter(PxFilterData filterData) {
+            return new Key(halfX, halfY, halfZ, offsetX, offsetY, offsetZ, material, flags,
+                    filterData.getWord0(), filterData.getWord1(), filterData.getWord2(), filterData.getWord3());
+        }
+    }
+
+    private final PxPhysics physics;
+
+    /**
+     * キー→共有の形状
+     */
+    private final Map<Key, PxShape> shapes = new HashMap<>();
+
+    /**
+     * キーを作った時のマテリアル(アドレス→マテリアル)
+     */
+    private final Map<Long, PxMaterial> materials = new HashMap<>();
+
+    public ShapeCache(PxPhysics physics) {
+        this.physics = physics;
+    }
+
+    /**
+     * 形状のキーを作る
+     *
+     * @param geometry   箱の大きさ(半分)
+     * @param offset     物体に対するオフセット
+     * @param material   マテリアル
+     * @param flags      形状のフラグ({@link PxShapeFlagEnum}の値の論理和)
+     * @param filterData 衝突のフィルターデータ
+     * @return キー
+     */
+    public synchronized Key key(PxBoxGeometry geometry, PxVec3 offset, PxMaterial material, byte flags, PxFilterData filterData) {
+        PxVec3 halfExtents = geometry.getHalfExtents();
+        materials.putIfAbsent(material.getAddress(), material);
+        return new Key(halfExtents.getX(), halfExtents.getY(), halfExtents.getZ(),
+                offset.getX(), offset.getY(), offset.getZ(),
+                material.getAddress(), flags,
+                filterData.getWord0(), filterData.getWord1(), filterData.getWord2(), filterData.getWord3());
+    }
+
+    /**
+     * キーに対応する共有の形状を取得する。なければ作る
+     * 返した形状はキャッシュが持っているので、使う側では解放しないこと
+     *
+     * @param key キー
+     * @return 共有の形状
+     */
+    public synchronized PxShape get(Key key) {
+        PxShape shape = shapes.get(key);
+        if (shape != null)
+            return shape;
+
+        PxBoxGeometry geometry = new PxBoxGeometry(key.getHalfX(), key.getHalfY(), key.getHalfZ());
+        PxShapeFlags flags = new PxShapeFlags(key.getFlags());
+        shape = physics.createShape(geometry, materials.get(key.getMaterial()), false, flags);
+        geometry.destroy();
+        flags.destroy();
+
+        PxFilterData filterData = new PxFilterData(key.getWord0(), key.getWord1(), key.getWord2(), key.getWord3());
+        shape.setSimulationFilterData(filterData);
+        filterData.destroy();
+
+        PxTransform pose = new PxTransform(PxIDENTITYEnum.PxIdentity);
+        PxVec3 offset = new PxVec3(key.getOffsetX(), key.getOffsetY(), key.getOffsetZ());
+        pose.setP(offset);
+        shape.setLocalPose(pose);
+        offset.destroy();
+        pose.destroy();
+
+        shapes.put(key, shape);
+        return shape;
+    }
+
+    /**
+     * キャッシュしている形状の数
+     */
+    public synchronized int size() {
+        return shapes.size();
+    }
+
+    /**
+     * キャッシュの参照を全て手放す。アタッチされたままの形状はアクターが解放された時に消える
+     */
+    public synchronized void clear() {
+        for (PxShape shape : shapes.values()) {
+            shape.release();
+        }
+        shapes.clear();
+        materials.clear();
+    }
+}
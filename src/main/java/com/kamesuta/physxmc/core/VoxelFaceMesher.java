@@ -0,0 +1,119 @@
+package com.kamesuta.physxmc.core;
+
+/**
+ * セクション(16x16x16ボクセル)の表面を、外に出ている面だけの四角形にまとめるクラス
+ * 固体のボクセルの面のうち隣が開いている面だけを取り出し、同じ平面上で隣り合う面は貪欲法で1つの四角形にまとめる
+ */
+public class VoxelFaceMesher {
+
+    private static final int SIZE = VoxelOccupancy.SIZE;
+
+    /**
+     * 隣のボクセルが開いているか(その方向の面が外に出ているか)を判定する
+     */
+    @FunctionalInterface
+    public interface OpenTest {
+        /**
+         * @param x x(-1~16)
+         * @param y y(-1~16)
+         * @param z z(-1~16)
+         * @return 開いていればtrue
+         */
+        boolean isOpen(int x, int y, int z);
+    }
+
+    /**
+     * まとめた四角形を受け取るコールバック
+     */
+    @FunctionalInterface
+    public interface QuadConsumer {
+        /**
+         * @param axis     面の向きの軸(0:x, 1:y, 2:z)
+         * @param positive 軸の正の向きを向いた面か
+         * @param plane    面がある平面の軸方向の座標
+         * @param u0       軸の次の軸((axis + 1) % 3)方向の最小座標
+         * @param v0       軸の次の次の軸((axis + 2) % 3)方向の最小座標
+         * @param u1       軸の次の軸方向の最大座標
+         * @param v1       軸の次の次の軸方向の最大座標
+         */
+        void accept(int axis, boolean positive, int plane, int u0, int v0, int u1, int v1);
+    }
+
+    /**
+     * 外に出ている面を四角形にまとめる
+     *
+     * @param solid    固体のボクセル
+     * @param forced   隣に関係なく全ての面を作るボクセル
+     * @param open     隣のボクセルが開いているか
+     * @param consumer まとめた四角形を受け取るコールバック
+     * @return 作った四角形の数
+     */
+    public static int mesh(VoxelOccupancy solid, VoxelOccupancy forced, OpenTest open, QuadConsumer consumer) {
+        boolean[] mask = new boolean[SIZE * SIZE];
+        int[] pos = new int[3];
+        int count = 0;
+
+        for (int axis = 0; axis < 3; axis++) {
+            int uAxis = (axis + 1) % 3;
+            int vAxis = (axis + 2) % 3;
+            for (int side = 0; side < 2; side++) {
+                boolean positive = side == 1;
+                int step = positive ? 1 : -1;
+                for (int c = 0; c < SIZE; c++) {
+                    // この平面で外に出ている面を調べる
+                    boolean any = false;
+                    for (int v = 0; v < SIZE; v++) {
+                        for (int u = 0; u < SIZE; u++) {
+                            pos[axis] = c;
+                            pos[uAxis] = u;
+                            pos[vAxis] = v;
+                            boolean face = solid.get(pos[0], pos[1], pos[2]);
+                            if (face && !forced.get(pos[0], pos[1], pos[2])) {
+                                pos[axis] = c + step;
+                                face = open.isOpen(pos[0], pos[1], pos[2]);
+                            }
+                            mask[v * SIZE + u] = face;
+                            any |= face;
+                        }
+                    }
+                    if (!any)
+                        continue;
+
+                    // u方向、v方向の順に広げて四角形にまとめる
+                    for (int v = 0; v < SIZE; v++) {
+                        for (int u = 0; u < SIZE; u++) {
+                            if (!mask[v * SIZE + u])
+                                continue;
+
+                            int u1 = u + 1;
+                            while (u1 < SIZE && mask[v * SIZE + u1])
+                                u1++;
+
+                            int v1 = v + 1;
+                            while (v1 < SIZE && isRowSet(mask, u, u1, v1))
+                                v1++;
+
+                            for (int vv = v; vv < v1; vv++) {
+                                for (int uu = u; uu < u1; uu++) {
+                                    mask[vv * SIZE + uu] = false;
+                                }
+                            }
+
+                            consumer.accept(axis, positive, positive ? c + 1 : c, u, v, u1, v1);
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isRowSet(boolean[] mask, int u0, int u1, int v) {
+        for (int u = u0; u < u1; u++) {
+            if (!mask[v * SIZE + u])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package com.kamesuta.physxmc.core;
+
+/**
+ * ボクセルの集まりを、なるべく少ない軸並行の箱にまとめるクラス
+ * 表面に出ているボクセルを起点に、x→z→yの順に固体のボクセルが続く限り箱を広げる。
+ * 箱は内部の(表面に出ていない)固体ボクセルを通って広がってもよいので、固体の表面の形は元のボクセルごとの箱と変わらない
+ * <p>
+ * ボクセルの番号は (y * sizeZ + z) * sizeX + x
+ */
+public class VoxelGreedyMesher {
+
+    /**
+     * まとめた箱を受け取るコールバック
+     */
+    @FunctionalInterface
+    public interface BoxConsumer {
+        /**
+         * @param x0 最小x(含む)
+         * @param y0 最小y(含む)
+         * @param z0 最小z(含む)
+         * @param x1 最大x(含まない)
+         * @param y1 最大y(含まない)
+         * @param z1 最大z(含まない)
+         */
+        void accept(int x0, int y0, int z0, int x1, int y1, int z1);
+    }
+
+    /**
+     * 表面に出ているボクセルを全て覆う箱を作る
+     *
+     * @param sizeX    x方向の大きさ
+     * @param sizeY    y方向の大きさ
+     * @param sizeZ    z方向の大きさ
+     * @param solid    固体かどうか(箱はこのボクセルだけを通って広がる)
+     * @param exposed  表面に出ているかどうか(このボクセルは必ずどれかの箱に覆われる)。固体でないボクセルは無視する
+     * @param consumer まとめた箱を受け取るコールバック
+     * @return 作った箱の数
+     */
+    public static int mesh(int sizeX, int sizeY, int sizeZ, boolean[] solid, boolean[] exposed, BoxConsumer consumer) {
+        boolean[] covered = new boolean[sizeX * sizeY * sizeZ];
+        int count = 0;
+
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    int index = (y * sizeZ + z) * sizeX + x;
+                    if (!solid[index] || !exposed[index] || covered[index])
+                        continue;
+
+                    // x方向に広げる
+                    int x1 = x + 1;
+                    while (x1 < sizeX && solid[index + (x1 - x)])
+                        x1++;
+
+                    // z方向に広げる
+                    int z1 = z + 1;
+                    while (z1 < sizeZ && isSolidRow(solid, sizeX, sizeZ, x, x1, y, z1))
+                        z1++;
+
+                    // y方向に広げる
+                    int y1 = y + 1;
+                    while (y1 < sizeY && isSolidSlab(solid, sizeX, sizeZ, x, x1, z, z1, y1))
+                        y1++;
+
+                    for (int yy = y; yy < y1; yy++) {
+                        for (int zz = z; zz < z1; zz++) {
+                            int row = (yy * sizeZ + zz) * sizeX;
+                            for (int xx = x; xx < x1; xx++) {
+                                covered[row + xx] = true;
+                            }
+                        }
+                    }
+
+                    consumer.accept(x, y, z, x1, y1, z1);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isSolidRow(boolean[] solid, int sizeX, int sizeZ, int x0, int x1, int y, int z) {
+        int row = (y * sizeZ + z) * sizeX;
+        for (int x = x0; x < x1; x++) {
+            if (!solid[row + x])
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isSolidSlab(boolean[] solid, int sizeX, int sizeZ, int x0, int x1, int z0, int z1, int y) {
+        for (int z = z0; z < z1; z++) {
+            if (!isSolidRow(solid, sizeX, sizeZ, x0, x1, y, z))
+                return false;
+        }
+        return true;
+    }
+}
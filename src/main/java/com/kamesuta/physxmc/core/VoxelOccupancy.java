@@ -0,0 +1,183 @@
+package com.kamesuta.physxmc.core;
+
+import java.util.Arrays;
+
+/**
+ * セクション(16x16x16ボクセル)の占有状態を持つビットセット
+ * 4096ボクセルを64個のlongに詰める。ワードの番号は y * 4 + (z >> 2)、ワード内のビットは (z & 3) * 16 + x
+ * (1つのワードがy一定のz方向4列分になるので、x方向の隣はビットシフト、z方向の隣は16ビットのシフトで調べられる)
+ */
+public class VoxelOccupancy {
+
+    /**
+     * 一辺のボクセル数
+     */
+    public static final int SIZE = 16;
+
+    /**
+     * ワードの数
+     */
+    public static final int WORDS = SIZE * SIZE * SIZE / Long.SIZE;
+
+    /**
+     * ワード内の x=0 のビット
+     */
+    private static final long COLUMN_X0 = 0x0001_0001_0001_0001L;
+
+    /**
+     * ワード内の x=15 のビット
+     */
+    private static final long COLUMN_X15 = 0x8000_8000_8000_8000L;
+
+    private final long[] words = new long[WORDS];
+
+    /**
+     * ボクセルが占有されているか
+     */
+    public boolean get(int x, int y, int z) {
+        return (words[wordIndex(y, z)] & (1L << bitIndex(x, z))) != 0;
+    }
+
+    /**
+     * ボクセルの占有状態を設定する
+     */
+    public void set(int x, int y, int z, boolean value) {
+        long bit = 1L << bitIndex(x, z);
+        if (value)
+            words[wordIndex(y, z)] |= bit;
+        else
+            words[wordIndex(y, z)] &= ~bit;
+    }
+
+    /**
+     * ワードを取得する
+     *
+     * @param index ワードの番号(y * 4 + (z >> 2))
+     */
+    public long getWord(int index) {
+        return words[index];
+    }
+
+    /**
+     * ワードを設定する
+     *
+     * @param index ワードの番号(y * 4 + (z >> 2))
+     * @param word  ワード
+     */
+    public void setWord(int index, long word) {
+        words[index] = word;
+    }
+
+    /**
+     * 全てのボクセルを占有状態にする
+     */
+    public void fill() {
+        Arrays.fill(words, -1L);
+    }
+
+    /**
+     * 1つも占有されていないか
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 占有されているボクセルの数
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * 占有状態のハッシュを計算する
+     *
+     * @param seed 初期値
+     */
+    public long hash(long seed) {
+        long hash = seed;
+        for (long word : words) {
+            hash = (hash ^ word) * 0x100000001b3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * 占有状態をboolean配列に展開する。番号は (y * 16 + z) * 16 + x
+     */
+    public boolean[] toArray() {
+        boolean[] array = new boolean[SIZE * SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                long word = words[wordIndex(y, z)] >>> ((z & 3) * SIZE);
+                for (int x = 0; x < SIZE; x++) {
+                    array[(y * SIZE + z) * SIZE + x] = (word & (1L << x)) != 0;
+                }
+            }
+        }
+        return array;
+    }
+
+    /**
+     * 占有されているボクセルのうち、上下四方のどれかが空いているもの(表面に出ているもの)をワード単位のビット演算で求める
+     * <p>
+     * セクションの外側の隣は面ごとの配列で渡す。どれも空いている位置のビットだけを立てておく
+     *
+     * @param open  セクション内の空いているボクセル
+     * @param below 下(y=-1)の面。番号は z >> 2、ビットは {@link #bitIndex(int, int)}
+     * @param above 上(y=16)の面。番号とビットは below と同じ
+     * @param north 北(z=-1)の面。番号は y、ビットは x
+     * @param south 南(z=16)の面。番号は y、ビットは 48 + x
+     * @param west  西(x=-1)の面。番号は {@link #wordIndex(int, int)}、ビットは {@link #bitIndex(int, int)} の x=0 の位置
+     * @param east  東(x=16)の面。番号は {@link #wordIndex(int, int)}、ビットは {@link #bitIndex(int, int)} の x=15 の位置
+     * @return 表面に出ているボクセル
+     */
+    public VoxelOccupancy exposed(VoxelOccupancy open, long[] below, long[] above, long[] north, long[] south, long[] west, long[] east) {
+        VoxelOccupancy exposed = new VoxelOccupancy();
+        long[] air = open.words;
+        for (int index = 0; index < WORDS; index++) {
+            long word = words[index];
+            if (word == 0)
+                continue;
+
+            int y = index >> 2;
+            int row = index & 3;
+
+            // 上下は同じ位置のワード
+            long up = y < SIZE - 1 ? air[index + 4] : above[row];
+            long down = y > 0 ? air[index - 4] : below[row];
+            // z方向は16ビットずらし、ワードからはみ出た列は隣のワードか面から持ってくる
+            long n = (air[index] << SIZE) | (row > 0 ? air[index - 1] >>> 48 : north[y]);
+            long s = (air[index] >>> SIZE) | (row < 3 ? air[index + 1] << 48 : south[y]);
+            // x方向は1ビットずらし、列をまたいだビットは捨てて面から持ってくる
+            long w = ((air[index] << 1) & ~COLUMN_X0) | west[index];
+            long e = ((air[index] >>> 1) & ~COLUMN_X15) | east[index];
+
+            exposed.words[index] = word & (up | down | n | s | w | e);
+        }
+        return exposed;
+    }
+
+    /**
+     * ワードの番号
+     */
+    public static int wordIndex(int y, int z) {
+        return y * 4 + (z >> 2);
+    }
+
+    /**
+     * ワード内のビットの番号
+     */
+    public static int bitIndex(int x, int z) {
+        return (z & 3) * SIZE + x;
+    }
+}
@@ -1,18 +1,29 @@
 package com.kamesuta.physxmc.utils;
 
 import com.comphenix.protocol.utility.MinecraftReflection;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Entity;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ブロックの当たり判定を取るためのクラス
+ * NMSのメソッドは初期化時に引数の型をObjectにそろえたMethodHandleにしておき、毎回のリフレクションの検査を省く
  */
 public class BoundingBoxUtil {
     /**
@@ -23,98 +34,186 @@ public class BoundingBoxUtil {
     /**
      * NMS: CraftBlockData.getState
      */
-    private static Method craftBlockDataGetStateMethod;
+    private static MethodHandle craftBlockDataGetStateMethod;
 
     /**
      * NMS: CraftWorld.getHandle
      */
-    private static Method craftWorldGetHandleMethod;
+    private static MethodHandle craftWorldGetHandleMethod;
 
     /**
      * NMS: CraftEntity.getHandle
      */
-    private static Method craftEntityGetHandleMethod;
+    private static MethodHandle craftEntityGetHandleMethod;
 
     /**
      * NMS: CraftRayTraceResult.fromNMS
      */
-    private static Method craftRayTraceResultFromNMSMethod;
+    private static MethodHandle craftRayTraceResultFromNMSMethod;
 
     /**
      * NMS: BlockPosition::new
      */
-    private static Constructor<?> blockPositionConstructor;
+    private static MethodHandle blockPositionConstructor;
 
     /**
      * NMS: VoxelShapeCollision.of
      */
-    private static Method voxelShapeCollisionOfMethod;
+    private static MethodHandle voxelShapeCollisionOfMethod;
 
     /**
      * NMS: BlockBase.BlockData.a(IBlockAccess world, BlockPosition pos, VoxelShapeCollision context)
      */
-    private static Method blockDataGetOutlineShapeMethod;
+    private static MethodHandle blockDataGetOutlineShapeMethod;
+
+    /**
+     * NMS: BlockBase.BlockData.a(BlockAccessAir.INSTANCE, BlockPosition(0, 0, 0), VoxelShapeCollision.a())
+     * ワールドやエンティティに依存しないアウトラインを取るため、引数を埋めておいたもの
+     */
+    private static MethodHandle blockDataGetEmptyOutlineShapeMethod;
+
+    /**
+     * NMS: BlockBase.BlockData.getCollisionShape(BlockAccessAir.INSTANCE, BlockPosition(0, 0, 0), VoxelShapeCollision.a())
+     * アウトラインと違い、フェンスや塀は1.5ブロックの高さになり、開いたフェンスゲートには当たり判定がない
+     */
+    private static MethodHandle blockDataGetEmptyCollisionShapeMethod;
 
     /**
      * NMS: Vec3D::new
      */
-    private static Constructor<?> vec3dConstructor;
+    private static MethodHandle vec3dConstructor;
 
     /**
      * NMS: VoxelShape.a(Vec3D start, Vec3D end, BlockPosition pos)
      */
-    private static Method voxelShapeRaycastMethod;
+    private static MethodHandle voxelShapeRaycastMethod;
 
     /**
      * NMS: CraftVoxelShape::new
      */
-    private static Constructor<?> craftVoxelShapeConstructor;
+    private static MethodHandle craftVoxelShapeConstructor;
 
     /**
      * NMS: CraftVoxelShape.getBoundingBoxes
      */
-    private static Method craftVoxelShapeGetBoundingBoxes;
+    private static MethodHandle craftVoxelShapeGetBoundingBoxes;
+
+    /**
+     * ブロックの状態ごとのアウトラインのバウンディングボックス
+     */
+    private static final Map<BlockData, List<BoundingBox>> outlineBoxCache = new ConcurrentHashMap<>();
+
+    /**
+     * ブロックの状態ごとの当たり判定のバウンディングボックス
+     */
+    private static final Map<BlockData, List<BoundingBox>> collisionBoxCache = new ConcurrentHashMap<>();
 
     /**
      * 必要なリフレクションフィールドを取得
      */
     public static void init() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
         Class<?> craftBlockDataClass = MinecraftReflection.getCraftBukkitClass("block.data.CraftBlockData");
-        craftBlockDataGetStateMethod = craftBlockDataClass.getMethod("getState");
+        craftBlockDataGetStateMethod = generic(lookup.unreflect(craftBlockDataClass.getMethod("getState")));
 
         Class<?> craftWorldClass = MinecraftReflection.getCraftBukkitClass("CraftWorld");
-        craftWorldGetHandleMethod = craftWorldClass.getMethod("getHandle");
+        craftWorldGetHandleMethod = generic(lookup.unreflect(craftWorldClass.getMethod("getHandle")));
 
         Class<?> craftEntityClass = MinecraftReflection.getCraftBukkitClass("entity.CraftEntity");
-        craftEntityGetHandleMethod = craftEntityClass.getMethod("getHandle");
+        craftEntityGetHandleMethod = generic(lookup.unreflect(craftEntityClass.getMethod("getHandle")));
 
         Class<?> movingObjectPosition = MinecraftReflection.getMinecraftClass("world.phys.MovingObjectPosition");
         Class<?> craftRayTraceResultClass = MinecraftReflection.getCraftBukkitClass("util.CraftRayTraceResult");
-        craftRayTraceResultFromNMSMethod = craftRayTraceResultClass.getMethod("fromNMS", World.class, movingObjectPosition);
+        craftRayTraceResultFromNMSMethod = generic(lookup.unreflect(craftRayTraceResultClass.getMethod("fromNMS", World.class, movingObjectPosition)));
 
         Class<?> blockPositionClass = MinecraftReflection.getMinecraftClass("core.BlockPosition");
-        blockPositionConstructor = blockPositionClass.getConstructor(int.class, int.class, int.class);
+        blockPositionConstructor = lookup.unreflectConstructor(blockPositionClass.getConstructor(int.class, int.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
 
         Class<?> entityClass = MinecraftReflection.getMinecraftClass("world.entity.Entity");
         Class<?> voxelShapeCollisionClass = MinecraftReflection.getMinecraftClass("world.phys.shapes.VoxelShapeCollision");
-        voxelShapeCollisionOfMethod = voxelShapeCollisionClass.getMethod("a", entityClass);
+        voxelShapeCollisionOfMethod = generic(lookup.unreflect(voxelShapeCollisionClass.getMethod("a", entityClass)));
 
         Class<?> blockAccessClass = MinecraftReflection.getMinecraftClass("world.level.IBlockAccess");
         Class<?> blockDataClass = MinecraftReflection.getMinecraftClass("world.level.block.state.BlockBase$BlockData");
-        blockDataGetOutlineShapeMethod = blockDataClass.getMethod("a", blockAccessClass, blockPositionClass, voxelShapeCollisionClass);
+        Method outlineShapeMethod = blockDataClass.getMethod("a", blockAccessClass, blockPositionClass, voxelShapeCollisionClass);
+        blockDataGetOutlineShapeMethod = generic(lookup.unreflect(outlineShapeMethod));
+
+        // 空のワールド・原点・空のコンテキストは変わらないので、先に作って引数に埋めておく
+        Class<?> blockAccessAirClass = MinecraftReflection.getMinecraftClass("world.level.BlockAccessAir");
+        Object emptyBlockAccess = blockAccessAirClass.getEnumConstants()[0];
+        Object emptyVoxelShapeCollision = voxelShapeCollisionClass.getMethod("a").invoke(null);
+        Object origin = invoke(() -> blockPositionConstructor.invokeExact(0, 0, 0));
+        blockDataGetEmptyOutlineShapeMethod = MethodHandles.insertArguments(blockDataGetOutlineShapeMethod, 1, emptyBlockAccess, origin, emptyVoxelShapeCollision);
 
         Class<?> vec3dClass = MinecraftReflection.getMinecraftClass("world.phys.Vec3D");
-        vec3dConstructor = vec3dClass.getConstructor(double.class, double.class, double.class);
+        vec3dConstructor = lookup.unreflectConstructor(vec3dClass.getConstructor(double.class, double.class, double.class))
+                .asType(MethodType.methodType(Object.class, double.class, double.class, double.class));
 
         Class<?> voxelShapeClass = MinecraftReflection.getMinecraftClass("world.phys.shapes.VoxelShape");
-        voxelShapeRaycastMethod = voxelShapeClass.getMethod("a", vec3dClass, vec3dClass, blockPositionClass);
+        voxelShapeRaycastMethod = generic(lookup.unreflect(voxelShapeClass.getMethod("a", vec3dClass, vec3dClass, blockPositionClass)));
 
         Class<?> craftVoxelShapeClass = MinecraftReflection.getCraftBukkitClass("util.CraftVoxelShape");
-        craftVoxelShapeConstructor = craftVoxelShapeClass.getConstructor(voxelShapeClass);
-        craftVoxelShapeGetBoundingBoxes = craftVoxelShapeClass.getMethod("getBoundingBoxes");
+        craftVoxelShapeConstructor = generic(lookup.unreflectConstructor(craftVoxelShapeClass.getConstructor(voxelShapeClass)));
+        craftVoxelShapeGetBoundingBoxes = generic(lookup.unreflect(craftVoxelShapeClass.getMethod("getBoundingBoxes")));
+
+        blockDataGetEmptyCollisionShapeMethod = findCollisionShapeMethod(lookup, outlineShapeMethod, emptyBlockAccess, origin, emptyVoxelShapeCollision);
 
         // 初期化完了
         initialized = true;
+
+        verify();
+    }
+
+    /**
+     * 当たり判定の形を返すメソッドを探す
+     * 難読化された名前はバージョンで変わり、アウトラインと引数の型も同じなので、フェンス(当たり判定だけ1.5ブロックの高さ)で見分ける
+     */
+    private static MethodHandle findCollisionShapeMethod(MethodHandles.Lookup lookup, Method outlineShapeMethod, Object... emptyArguments) throws ReflectiveOperationException {
+        Object fence = invoke(() -> craftBlockDataGetStateMethod.invokeExact((Object) Material.OAK_FENCE.createBlockData()));
+        Object stone = invoke(() -> craftBlockDataGetStateMethod.invokeExact((Object) Material.STONE.createBlockData()));
+
+        List<Method> candidates = new ArrayList<>();
+        for (Method method : outlineShapeMethod.getDeclaringClass().getMethods()) {
+            if (method.equals(outlineShapeMethod) || Modifier.isStatic(method.getModifiers())
+                    || method.getReturnType() != outlineShapeMethod.getReturnType()
+                    || !Arrays.equals(method.getParameterTypes(), outlineShapeMethod.getParameterTypes()))
+                continue;
+            // Spigotの名前(b)を先に試す
+            if (method.getName().equals("b"))
+                candidates.add(0, method);
+            else
+                candidates.add(method);
+        }
+
+        for (Method method : candidates) {
+            MethodHandle handle = MethodHandles.insertArguments(generic(lookup.unreflect(method)), 1, emptyArguments);
+            Collection<BoundingBox> fenceBoxes = toBoundingBoxes(invoke(() -> handle.invokeExact(fence)));
+            Collection<BoundingBox> stoneBoxes = toBoundingBoxes(invoke(() -> handle.invokeExact(stone)));
+            boolean tallFence = fenceBoxes.stream().anyMatch(box -> box.getMaxY() > 1.25);
+            boolean fullStone = stoneBoxes.size() == 1 && stoneBoxes.iterator().next().getVolume() == 1;
+            if (tallFence && fullStone)
+                return handle;
+        }
+        throw new ReflectiveOperationException("BlockData#getCollisionShape is not found.");
+    }
+
+    /**
+     * 初期化したMethodHandleを一度ずつ呼んでみる
+     * 呼び出し側と型が合っていなければ、ブロックごとに失敗する前に起動時に失敗させる
+     */
+    private static void verify() throws ReflectiveOperationException {
+        List<BoundingBox> stone = getOutlineBoxes(Material.STONE.createBlockData());
+        if (stone.size() != 1 || stone.get(0).getVolume() != 1)
+            throw new ReflectiveOperationException("Unexpected outline of stone: " + stone);
+        List<BoundingBox> stoneCollision = getCollisionBoxes(Material.STONE.createBlockData());
+        if (stoneCollision.size() != 1 || stoneCollision.get(0).getVolume() != 1)
+            throw new ReflectiveOperationException("Unexpected collision shape of stone: " + stoneCollision);
+
+        List<World> worlds = Bukkit.getWorlds();
+        if (!worlds.isEmpty())
+            invoke(() -> craftWorldGetHandleMethod.invokeExact((Object) worlds.get(0)));
     }
 
     /**
@@ -128,22 +227,41 @@ public class BoundingBoxUtil {
             throw new ReflectiveOperationException("BlockOutline is not initialized.");
         }
 
-        // ワールドを取得
-        World world = entity.getWorld();
-        // NMS: worldを取得
-        Object nmsWorld = craftWorldGetHandleMethod.invoke(world);
-        // NMS: entityを取得
-        Object nmsEntity = craftEntityGetHandleMethod.invoke(entity);
-
-        // NMS: VoxelShapeCollisionを作成
-        Object nmsVoxelShapeCollision = voxelShapeCollisionOfMethod.invoke(null, nmsEntity);
-        // NMS: BlockPositionを作成
-        Object nmsBlockPosition = blockPositionConstructor.newInstance(0, 0, 0);
-
-        // NMS: stateを取得
-        Object nmsState = craftBlockDataGetStateMethod.invoke(block);
-        // NMS: getOutlineShapeを呼び出し
-        return blockDataGetOutlineShapeMethod.invoke(nmsState, nmsWorld, nmsBlockPosition, nmsVoxelShapeCollision);
+        return invoke(() -> {
+            // NMS: worldを取得
+            Object nmsWorld = craftWorldGetHandleMethod.invokeExact((Object) entity.getWorld());
+            // NMS: entityを取得
+            Object nmsEntity = craftEntityGetHandleMethod.invokeExact((Object) entity);
+            // NMS: VoxelShapeCollisionを作成
+            Object nmsVoxelShapeCollision = voxelShapeCollisionOfMethod.invokeExact(nmsEntity);
+            // NMS: BlockPositionを作成
+            Object nmsBlockPosition = blockPositionConstructor.invokeExact(0, 0, 0);
+            // NMS: stateを取得
+            Object nmsState = craftBlockDataGetStateMethod.invokeExact((Object) block);
+            // NMS: getOutlineShapeを呼び出し
+            return blockDataGetOutlineShapeMethod.invokeExact(nmsState, nmsWorld, nmsBlockPosition, nmsVoxelShapeCollision);
+        });
+    }
+
+    /**
+     * ワールドやエンティティに依存しないアウトラインを取得
+     * 空気だけの空のワールドに置いた時の形を返すので、周りのブロックによって形が変わるブロックは単体の形になる。
+     * ワールドに触らないのでワーカースレッドから呼んでもよい
+     *
+     * @param block ブロック
+     * @return NMS: VoxelShape
+     */
+    public static Object getOutline(BlockData block) throws ReflectiveOperationException {
+        if (!initialized) {
+            throw new ReflectiveOperationException("BlockOutline is not initialized.");
+        }
+
+        return invoke(() -> {
+            // NMS: stateを取得
+            Object nmsState = craftBlockDataGetStateMethod.invokeExact((Object) block);
+            // NMS: getOutlineShapeを呼び出し
+            return blockDataGetEmptyOutlineShapeMethod.invokeExact(nmsState);
+        });
     }
 
     /**
@@ -157,12 +275,102 @@ public class BoundingBoxUtil {
             throw new ReflectiveOperationException("BlockOutline is not initialized.");
         }
 
-        // NMS: バウンディングボックスのリストを取得
-        Object nmsCraftVoxelShape = craftVoxelShapeConstructor.newInstance(nmsOutline);
-        @SuppressWarnings("unchecked")
-        Collection<BoundingBox> nmsBoundingBoxes = (Collection<BoundingBox>) craftVoxelShapeGetBoundingBoxes.invoke(nmsCraftVoxelShape);
+        return toBoundingBoxes(nmsOutline);
+    }
 
-        return nmsBoundingBoxes;
+    /**
+     * NMSのVoxelShapeをバウンディングボックスに変換
+     */
+    private static Collection<BoundingBox> toBoundingBoxes(Object nmsOutline) throws ReflectiveOperationException {
+        return invoke(() -> {
+            // NMS: バウンディングボックスのリストを取得
+            Object nmsCraftVoxelShape = craftVoxelShapeConstructor.invokeExact(nmsOutline);
+            // invokeExactの結果を直接キャストすると呼び出しの型が(Object)Collectionになって合わないので、一度Objectで受ける
+            Object nmsBoundingBoxes = craftVoxelShapeGetBoundingBoxes.invokeExact(nmsCraftVoxelShape);
+            @SuppressWarnings("unchecked")
+            Collection<BoundingBox> boundingBoxes = (Collection<BoundingBox>) nmsBoundingBoxes;
+            return boundingBoxes;
+        });
+    }
+
+    /**
+     * ブロックの状態のアウトラインのバウンディングボックスを取得する
+     * 状態ごとに一度だけNMSから取ってキャッシュするので、2回目からはNMSに触らない。ワーカースレッドから呼んでもよい
+     *
+     * @param block ブロック
+     * @return バウンディングボックスのリスト(共有しているので変更しないこと)
+     */
+    public static List<BoundingBox> getOutlineBoxes(BlockData block) throws ReflectiveOperationException {
+        List<BoundingBox> boxes = outlineBoxCache.get(block);
+        if (boxes == null) {
+            boxes = List.copyOf(getOutlineBoxes(getOutline(block)));
+            outlineBoxCache.put(block, boxes);
+        }
+        return boxes;
+    }
+
+    /**
+     * ワールドやエンティティに依存しない当たり判定の形を取得
+     * 空気だけの空のワールドに置いた時の形を返す。ワールドに触らないのでワーカースレッドから呼んでもよい
+     *
+     * @param block ブロック
+     * @return NMS: VoxelShape
+     */
+    public static Object getCollision(BlockData block) throws ReflectiveOperationException {
+        if (!initialized) {
+            throw new ReflectiveOperationException("BlockOutline is not initialized.");
+        }
+
+        return invoke(() -> {
+            // NMS: stateを取得
+            Object nmsState = craftBlockDataGetStateMethod.invokeExact((Object) block);
+            // NMS: getCollisionShapeを呼び出し
+            return blockDataGetEmptyCollisionShapeMethod.invokeExact(nmsState);
+        });
+    }
+
+    /**
+     * ブロックの状態の当たり判定のバウンディングボックスを取得する
+     * 状態ごとに一度だけNMSから取ってキャッシュするので、2回目からはNMSに触らない。ワーカースレッドから呼んでもよい
+     *
+     * @param block ブロック
+     * @return バウンディングボックスのリスト(共有しているので変更しないこと)
+     */
+    public static List<BoundingBox> getCollisionBoxes(BlockData block) throws ReflectiveOperationException {
+        List<BoundingBox> boxes = collisionBoxCache.get(block);
+        if (boxes == null) {
+            boxes = List.copyOf(getOutlineBoxes(getCollision(block)));
+            collisionBoxCache.put(block, boxes);
+        }
+        return boxes;
+    }
+
+    /**
+     * 引数と戻り値の型をObjectにそろえる
+     */
+    private static MethodHandle generic(MethodHandle handle) {
+        return handle.asType(MethodType.genericMethodType(handle.type().parameterCount()));
+    }
+
+    /**
+     * MethodHandleの呼び出し
+     */
+    @FunctionalInterface
+    private interface HandleCall<T> {
+        T call() throws Throwable;
+    }
+
+    /**
+     * MethodHandleを呼び出し、チェック例外をReflectiveOperationExceptionにそろえる
+     */
+    private static <T> T invoke(HandleCall<T> call) throws ReflectiveOperationException {
+        try {
+            return call.call();
+        } catch (RuntimeException | Error | ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectiveOperationException(e);
+        }
     }
 
     /**
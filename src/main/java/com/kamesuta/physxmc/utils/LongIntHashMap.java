@@ -0,0 +1,147 @@
+package com.kamesuta.physxmc.utils;
+
+import java.util.Arrays;
+
+/**
+ * longをキー、intを値とするオープンアドレス法のハッシュマップ
+ * 検索時にボクシングなどのアロケーションが発生しない。キー0は空きスロットを表すため使えない
+ */
+public class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /**
+     * キーが見つからなかった時に返す値
+     */
+    public static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap() {
+        this(64);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 値を取得する
+     *
+     * @param key キー(0以外)
+     * @return 値、なければ{@link #MISSING}
+     */
+    public int get(long key) {
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key)
+                return values[index];
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * 値を設定する
+     *
+     * @param key   キー(0以外)
+     * @param value 値
+     */
+    public void put(long key, int value) {
+        if (key == 0)
+            throw new IllegalArgumentException("key must not be 0");
+
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > keys.length * LOAD_FACTOR)
+            rehash(keys.length << 1);
+    }
+
+    /**
+     * 値を削除する
+     *
+     * @param key キー
+     * @return 削除した値、なければ{@link #MISSING}
+     */
+    public int remove(long key) {
+        int index = mix(key) & mask;
+        long k;
+        while ((k = keys[index]) != 0) {
+            if (k == key) {
+                int value = values[index];
+                shiftBack(index);
+                size--;
+                return value;
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+    }
+
+    /**
+     * 削除した位置より後ろに連なるエントリを詰め直して、探索が途切れないようにする
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long k = keys[index];
+            if (k == 0)
+                break;
+
+            int home = mix(k) & mask;
+            // homeがgapより後ろ(循環を考慮)にあるエントリは動かせない
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[index];
+                gap = index;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0)
+                put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,109 @@
+package com.kamesuta.physxmc.utils;
+
+import sun.misc.Unsafe;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * PhysXのネイティブメモリをアドレスとオフセットで直接読み書きするクラス
+ * ラッパーオブジェクトを作らずに構造体の配列を読んだり、まとめてコピーしたりするために使う。
+ * アドレスが正しいかは呼び出し側が保証すること
+ */
+public class NativeMemory {
+
+    private static final Unsafe unsafe = PhysxLoader.unsafe;
+
+    private static final long BYTE_ARRAY_OFFSET = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+    /**
+     * Buffer.addressのオフセット
+     */
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    static {
+        try {
+            BUFFER_ADDRESS_OFFSET = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public static long getAddress(long address) {
+        return unsafe.getLong(address);
+    }
+
+    /**
+     * ダイレクトバッファ(メモリマップしたファイルなど)の先頭のアドレスを取得する
+     * バッファが回収されるとアドレスは使えなくなるので、使い終わるまでバッファへの参照を持っておくこと
+     *
+     * @param buffer ダイレクトバッファ
+     * @return 先頭(位置0)のアドレス
+     */
+    public static long addressOf(ByteBuffer buffer) {
+        if (!buffer.isDirect())
+            throw new IllegalArgumentException("not a direct buffer");
+        return unsafe.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+    }
+
+    public static int getInt(long address) {
+        return unsafe.getInt(address);
+    }
+
+    /**
+     * 符号なしの16ビット整数を読む
+     */
+    public static int getU16(long address) {
+        return unsafe.getShort(address) & 0xffff;
+    }
+
+    /**
+     * 符号なしの8ビット整数を読む
+     */
+    public static int getU8(long address) {
+        return unsafe.getByte(address) & 0xff;
+    }
+
+    public static float getFloat(long address) {
+        return unsafe.getFloat(address);
+    }
+
+    /**
+     * ネイティブメモリからバイト配列にまとめてコピーする
+     *
+     * @param address コピー元のアドレス
+     * @param dst     コピー先
+     * @param offset  コピー先の位置
+     * @param length  バイト数
+     */
+    public static void copy(long address, byte[] dst, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > dst.length)
+            throw new IndexOutOfBoundsException();
+        unsafe.copyMemory(null, address, dst, BYTE_ARRAY_OFFSET + offset, length);
+    }
+
+    /**
+     * バイト配列からネイティブメモリにまとめてコピーする
+     *
+     * @param src     コピー元
+     * @param offset  コピー元の位置
+     * @param address コピー先のアドレス
+     * @param length  バイト数
+     */
+    public static void copy(byte[] src, int offset, long address, int length) {
+        if (offset < 0 || length < 0 || offset + length > src.length)
+            throw new IndexOutOfBoundsException();
+        unsafe.copyMemory(src, BYTE_ARRAY_OFFSET + offset, null, address, length);
+    }
+
+    /**
+     * ネイティブメモリを確保する。使い終わったら{@link #free}すること
+     */
+    public static long allocate(long bytes) {
+        return unsafe.allocateMemory(bytes);
+    }
+
+    public static void free(long address) {
+        unsafe.freeMemory(address);
+    }
+}
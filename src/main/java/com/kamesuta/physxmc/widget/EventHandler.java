@@ -71,25 +71,26 @@ public class EventHandler implements Listener {
                 PhysxMc.grabTool.release(event.getPlayer());
             } else {
                 if (event.getItem() != null && event.getItem().getType() == Material.STICK) {
-                    DisplayedPhysxBox box = displayedBoxHolder.raycast(event.getPlayer().getEyeLocation(), 4);
-                    if (box != null) {
-                        box.throwBox(event.getPlayer().getEyeLocation());
-                    }
+                    org.bukkit.entity.Player player = event.getPlayer();
+                    displayedBoxHolder.raycast(player.getEyeLocation(), 4, box -> {
+                        if (box != null)
+                            box.throwBox(player.getEyeLocation());
+                    });
                     event.setCancelled(true);
                     return;
                 }
 
                 if (event.getItem() != null && event.getItem().getType() == Material.FLINT_AND_STEEL) {
-                    DisplayedPhysxBox box = displayedBoxHolder.raycast(event.getPlayer().getEyeLocation(), 4);
-                    if (box != null) {
-                        displayedBoxHolder.destroySpecific(box);
-                    }
+                    displayedBoxHolder.raycast(event.getPlayer().getEyeLocation(), 4, box -> {
+                        if (box != null)
+                            displayedBoxHolder.destroySpecific(box);
+                    });
                     event.setCancelled(true);
                     return;
                 }
 
-                if (PhysxMc.grabTool.tryGrab(event.getPlayer()))
-                    event.setCancelled(true);
+                // 掴めたかどうかはraycastの結果が届くまで分からないので、イベントはそのまま通す
+                PhysxMc.grabTool.tryGrab(event.getPlayer());
             }
         }
     }
@@ -19,23 +19,33 @@ public class GrabTool {
     private final Map<Player, DisplayedPhysxBox> grabbedPlayerMap = new HashMap<>();
     private final Map<Player, Quaternionf> originalRotationMap = new HashMap<>();
 
+    /**
+     * 掴んだ時の箱の{@link DisplayedPhysxBox#getGeneration()}。プールに戻されて別のコインになった箱を動かさないようにする
+     */
+    private final Map<Player, Integer> grabbedGenerationMap = new HashMap<>();
+
     public GrabTool() {
 
     }
 
     /**
      * プレイヤーの視線の先のブロックを掴む
+     * 専用スレッドモードではraycastの結果が届いた後のtickで掴む
      *
      * @param player 　プレイヤー
-     * @return 掴んだかどうか
      */
-    public boolean tryGrab(Player player) {
-        DisplayedPhysxBox box = displayedBoxHolder.raycast(player.getEyeLocation(), 10);
-        if (box == null || grabbedPlayerMap.containsValue(box)) {
-            return false;
+    public void tryGrab(Player player) {
+        displayedBoxHolder.raycast(player.getEyeLocation(), 10, box -> grab(player, box));
+    }
+
+    private void grab(Player player, DisplayedPhysxBox box) {
+        // 結果が届くまでの間にログアウトしたり、別の箱を掴んだりしているかもしれない
+        if (box == null || !player.isOnline() || isGrabbing(player) || grabbedPlayerMap.containsValue(box) || !displayedBoxHolder.hasBox(box)) {
+            return;
         }
 
         grabbedPlayerMap.put(player, box);
+        grabbedGenerationMap.put(player, box.getGeneration());
 
         // プレイヤー始点の回転
         Location eyeLocation = player.getEyeLocation().clone();
@@ -50,7 +60,6 @@ public class GrabTool {
 
         originalRotationMap.put(player, boxDiffQuat);
         box.makeKinematic(true);
-        return true;
     }
 
     /**
@@ -62,10 +71,12 @@ public class GrabTool {
         if (!isGrabbing(player))
             return;
 
-        if (grabbedPlayerMap.get(player) != null)
-            grabbedPlayerMap.get(player).makeKinematic(false);
+        DisplayedPhysxBox box = grabbedPlayerMap.get(player);
+        if (box != null && isSameBox(player, box))
+            box.makeKinematic(false);
         grabbedPlayerMap.remove(player);
         originalRotationMap.remove(player);
+        grabbedGenerationMap.remove(player);
     }
 
     /**
@@ -87,9 +98,11 @@ public class GrabTool {
      */
     private void updateGrabbingObjPos() {
         for (Map.Entry<Player, DisplayedPhysxBox> entry : grabbedPlayerMap.entrySet()) {
-            if (!displayedBoxHolder.hasBox(entry.getValue()) || !originalRotationMap.containsKey(entry.getKey())) { //既に他の要因でboxが取り除かれている場合
+            //既に他の要因でboxが取り除かれているか、プールに戻されて別のコインになっている場合
+            if (!displayedBoxHolder.hasBox(entry.getValue()) || !originalRotationMap.containsKey(entry.getKey()) || !isSameBox(entry.getKey(), entry.getValue())) {
                 grabbedPlayerMap.remove(entry.getKey());
                 originalRotationMap.remove(entry.getKey());
+                grabbedGenerationMap.remove(entry.getKey());
                 return;
             }
 
@@ -112,6 +125,14 @@ public class GrabTool {
         }
     }
 
+    /**
+     * 掴んだ時から箱がプールに戻されていないか
+     */
+    private boolean isSameBox(Player player, DisplayedPhysxBox box) {
+        Integer generation = grabbedGenerationMap.get(player);
+        return generation != null && generation == box.getGeneration();
+    }
+
     /**
      * 掴んでいる状態を全リセット
      * 掴んでいるブロックは残るので注意
@@ -119,5 +140,6 @@ public class GrabTool {
     public void forceClear() {
         grabbedPlayerMap.clear();
         originalRotationMap.clear();
+        grabbedGenerationMap.clear();
     }
 }
@@ -1,6 +1,7 @@
 package com.kamesuta.physxmc.widget;
 
 import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.core.ActorType;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxBox;
 import lombok.Getter;
 import org.bukkit.Location;
@@ -75,6 +76,7 @@ public class MedalRamp {
         // pusherと同じパターンでキネマティック設定
         if (rampBox != null) {
             rampBox.makeKinematic(true);
+            PhysxMc.physxWorld.retag(rampBox, ActorType.RAMP, rampBox);
         }
     }
     
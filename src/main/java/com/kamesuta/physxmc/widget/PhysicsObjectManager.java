@@ -1,6 +1,7 @@
 package com.kamesuta.physxmc.widget;
 
 import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.core.PoseSnapshot;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxBox;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxSphere;
 import org.bukkit.Bukkit;
@@ -55,15 +56,14 @@ public class PhysicsObjectManager {
         
         // 物理状態
         if (box.getActor() != null && box.getActor().isReleasable()) {
-            physx.common.PxVec3 physicsPos = box.getPos().getP();
-            physx.common.PxQuat physicsRot = box.getPos().getQ();
-            data.setPhysicsX(physicsPos.getX());
-            data.setPhysicsY(physicsPos.getY());
-            data.setPhysicsZ(physicsPos.getZ());
-            data.setPhysicsQx(physicsRot.getX());
-            data.setPhysicsQy(physicsRot.getY());
-            data.setPhysicsQz(physicsRot.getZ());
-            data.setPhysicsQw(physicsRot.getW());
+            // tickごとのスナップショットから読む(JNIを呼ばない)
+            data.setPhysicsX(box.pose(PoseSnapshot.PX));
+            data.setPhysicsY(box.pose(PoseSnapshot.PY));
+            data.setPhysicsZ(box.pose(PoseSnapshot.PZ));
+            data.setPhysicsQx(box.pose(PoseSnapshot.QX));
+            data.setPhysicsQy(box.pose(PoseSnapshot.QY));
+            data.setPhysicsQz(box.pose(PoseSnapshot.QZ));
+            data.setPhysicsQw(box.pose(PoseSnapshot.QW));
         } else {
             // アクターが無効な場合は表示位置を物理位置として使用
             data.setPhysicsX(location.getX());
@@ -75,22 +75,16 @@ public class PhysicsObjectManager {
             data.setPhysicsQw(1);
         }
         
-        // 速度情報の取得（PhysXアクターから実際の速度を取得）
+        // 速度情報の取得（tickごとのスナップショットから取得）
         if (box.getActor() != null && box.getActor().isReleasable()) {
             try {
-                physx.common.PxVec3 linearVel = box.getActor().getLinearVelocity();
-                physx.common.PxVec3 angularVel = box.getActor().getAngularVelocity();
-                
-                data.setVelocityX(linearVel.getX());
-                data.setVelocityY(linearVel.getY());
-                data.setVelocityZ(linearVel.getZ());
-                data.setAngularVelocityX(angularVel.getX());
-                data.setAngularVelocityY(angularVel.getY());
-                data.setAngularVelocityZ(angularVel.getZ());
-                
-                // PhysXオブジェクトのメモリ解放
-                linearVel.destroy();
-                angularVel.destroy();
+                // 演算スレッドと競合しないよう、アクターではなくスナップショットから読む
+                data.setVelocityX(box.pose(PoseSnapshot.VX));
+                data.setVelocityY(box.pose(PoseSnapshot.VY));
+                data.setVelocityZ(box.pose(PoseSnapshot.VZ));
+                data.setAngularVelocityX(box.pose(PoseSnapshot.AX));
+                data.setAngularVelocityY(box.pose(PoseSnapshot.AY));
+                data.setAngularVelocityZ(box.pose(PoseSnapshot.AZ));
             } catch (Exception e) {
                 logger.warning("ボックスの速度取得に失敗: " + e.getMessage() + " - 速度を0で設定");
                 data.setVelocityX(0);
@@ -114,7 +108,7 @@ public class PhysicsObjectManager {
         if (!box.displayMap.isEmpty()) {
             DisplayedPhysxBox.DisplayData firstDisplay = box.displayMap.get(0);
             if (firstDisplay.getDisplays().length > 0) {
-                org.bukkit.entity.BlockDisplay blockDisplay = firstDisplay.getDisplays()[0];
+                com.kamesuta.physxmc.wrapper.DisplayHandle blockDisplay = firstDisplay.getDisplays()[0];
                 org.bukkit.util.Transformation transformation = blockDisplay.getTransformation();
                 data.setScaleX(transformation.getScale().x);
                 data.setScaleY(transformation.getScale().y);
@@ -158,32 +152,25 @@ public class PhysicsObjectManager {
         data.setPitch(location.getPitch());
         
         // 物理状態
-        physx.common.PxVec3 physicsPos = sphere.getPos().getP();
-        physx.common.PxQuat physicsRot = sphere.getPos().getQ();
-        data.setPhysicsX(physicsPos.getX());
-        data.setPhysicsY(physicsPos.getY());
-        data.setPhysicsZ(physicsPos.getZ());
-        data.setPhysicsQx(physicsRot.getX());
-        data.setPhysicsQy(physicsRot.getY());
-        data.setPhysicsQz(physicsRot.getZ());
-        data.setPhysicsQw(physicsRot.getW());
+        // tickごとのスナップショットから読む(JNIを呼ばない)
+        data.setPhysicsX(sphere.pose(PoseSnapshot.PX));
+        data.setPhysicsY(sphere.pose(PoseSnapshot.PY));
+        data.setPhysicsZ(sphere.pose(PoseSnapshot.PZ));
+        data.setPhysicsQx(sphere.pose(PoseSnapshot.QX));
+        data.setPhysicsQy(sphere.pose(PoseSnapshot.QY));
+        data.setPhysicsQz(sphere.pose(PoseSnapshot.QZ));
+        data.setPhysicsQw(sphere.pose(PoseSnapshot.QW));
         
-        // 速度情報の取得（PhysXアクターから実際の速度を取得）
+        // 速度情報の取得（tickごとのスナップショットから取得）
         if (sphere.getActor() != null) {
             try {
-                physx.common.PxVec3 linearVel = sphere.getActor().getLinearVelocity();
-                physx.common.PxVec3 angularVel = sphere.getActor().getAngularVelocity();
-                
-                data.setVelocityX(linearVel.getX());
-                data.setVelocityY(linearVel.getY());
-                data.setVelocityZ(linearVel.getZ());
-                data.setAngularVelocityX(angularVel.getX());
-                data.setAngularVelocityY(angularVel.getY());
-                data.setAngularVelocityZ(angularVel.getZ());
-                
-                // PhysXオブジェクトのメモリ解放
-                linearVel.destroy();
-                angularVel.destroy();
+                // 演算スレッドと競合しないよう、アクターではなくスナップショットから読む
+                data.setVelocityX(sphere.pose(PoseSnapshot.VX));
+                data.setVelocityY(sphere.pose(PoseSnapshot.VY));
+                data.setVelocityZ(sphere.pose(PoseSnapshot.VZ));
+                data.setAngularVelocityX(sphere.pose(PoseSnapshot.AX));
+                data.setAngularVelocityY(sphere.pose(PoseSnapshot.AY));
+                data.setAngularVelocityZ(sphere.pose(PoseSnapshot.AZ));
             } catch (Exception e) {
                 logger.warning("スフィアの速度取得に失敗: " + e.getMessage() + " - 速度を0で設定");
                 data.setVelocityX(0);
@@ -210,7 +197,7 @@ public class PhysicsObjectManager {
         if (!sphere.displayMap.isEmpty()) {
             DisplayedPhysxSphere.DisplayData firstDisplay = sphere.displayMap.get(0);
             if (firstDisplay.getDisplays().length > 0) {
-                org.bukkit.entity.BlockDisplay blockDisplay = firstDisplay.getDisplays()[0];
+                com.kamesuta.physxmc.wrapper.DisplayHandle blockDisplay = firstDisplay.getDisplays()[0];
                 data.setMaterialName(blockDisplay.getBlock().getMaterial().name());
             }
         }
@@ -684,27 +671,10 @@ public class PhysicsObjectManager {
                                         
                                         // 速度状態の復元
                                         if (box.getActor() != null) {
-                                            var actor = box.getActor();
-                                            
-                                            // 線形速度を設定
-                                            var linearVel = new physx.common.PxVec3(
-                                                (float) data.getVelocityX(),
-                                                (float) data.getVelocityY(),
-                                                (float) data.getVelocityZ()
+                                            box.setVelocity(
+                                                new Vector(data.getVelocityX(), data.getVelocityY(), data.getVelocityZ()),
+                                                new Vector(data.getAngularVelocityX(), data.getAngularVelocityY(), data.getAngularVelocityZ())
                                             );
-                                            actor.setLinearVelocity(linearVel);
-                                            
-                                            // 角速度を設定
-                                            var angularVel = new physx.common.PxVec3(
-                                                (float) data.getAngularVelocityX(),
-                                                (float) data.getAngularVelocityY(),
-                                                (float) data.getAngularVelocityZ()
-                                            );
-                                            actor.setAngularVelocity(angularVel);
-                                            
-                                            // PhysXオブジェクトを解放
-                                            linearVel.destroy();
-                                            angularVel.destroy();
                                             
                                             String objectType = data.isPusher() ? "プッシャー" : (data.isCoin() ? "コイン" : "ブロック");
                                             logger.info("ボックス復元完了（物理演算有効）: " + objectType + " " + data.getMaterialName() + " at " + data.getPhysicsX() + "," + data.getPhysicsY() + "," + data.getPhysicsZ());
@@ -776,27 +746,10 @@ public class PhysicsObjectManager {
                 
                 // 速度状態の復元
                 if (sphere.getActor() != null) {
-                    var actor = sphere.getActor();
-                    
-                    // 線形速度を設定
-                    var linearVel = new physx.common.PxVec3(
-                        (float) data.getVelocityX(),
-                        (float) data.getVelocityY(),
-                        (float) data.getVelocityZ()
-                    );
-                    actor.setLinearVelocity(linearVel);
-                    
-                    // 角速度を設定
-                    var angularVel = new physx.common.PxVec3(
-                        (float) data.getAngularVelocityX(),
-                        (float) data.getAngularVelocityY(),
-                        (float) data.getAngularVelocityZ()
+                    sphere.setVelocity(
+                        new Vector(data.getVelocityX(), data.getVelocityY(), data.getVelocityZ()),
+                        new Vector(data.getAngularVelocityX(), data.getAngularVelocityY(), data.getAngularVelocityZ())
                     );
-                    actor.setAngularVelocity(angularVel);
-                    
-                    // PhysXオブジェクトを解放
-                    linearVel.destroy();
-                    angularVel.destroy();
                 }
                 
                 logger.info("スフィア復元成功: " + data.getMaterialName() + " 半径" + data.getRadius() + " at " + data.getPhysicsX() + "," + data.getPhysicsY() + "," + data.getPhysicsZ());
@@ -1,7 +1,10 @@
 package com.kamesuta.physxmc.widget;
 
 import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.core.ActorRegistry;
+import com.kamesuta.physxmc.core.ActorType;
 import com.kamesuta.physxmc.core.BoxData;
+import com.kamesuta.physxmc.core.ContactEventType;
 import com.kamesuta.physxmc.core.PhysxBox;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxBox;
 import org.apache.logging.log4j.util.BiConsumer;
@@ -10,10 +13,10 @@ import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import physx.common.PxIDENTITYEnum;
 import physx.common.PxQuat;
-import physx.common.PxTransform;
 import physx.common.PxVec3;
 import physx.geometry.PxBoxGeometry;
 import physx.physics.PxActor;
+import physx.physics.PxRigidBodyFlagEnum;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,7 +39,7 @@ public class PlayerTriggerHolder {
     public List<BiConsumer<Player, DisplayedPhysxBox>> playerTriggerReceivers = new ArrayList<>();
 
     public PlayerTriggerHolder() {
-        PhysxMc.physxWorld.getSimCallback().triggerReceivers.add(this::onPlayerEnterBox);
+        PhysxMc.physxWorld.addContactListener(ContactEventType.TRIGGER_ENTER.bit(), ActorType.PLAYER_TRIGGER.bit(), this::onPlayerEnterBox);
     }
 
     public void update() {
@@ -53,11 +56,9 @@ public class PlayerTriggerHolder {
             if (playerCollisionList.get(player) == null) {
                 playerCollisionList.put(player, createPlayerTriggerBox(loc, player));
             }
-            PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
-            PxVec3 vec3 = new PxVec3((float) loc.x(), (float) loc.y() + 0.9f, (float) loc.z());//steve is 1.8m tall
-            tmpPose.setP(vec3);
-            vec3.destroy();
-            playerCollisionList.get(player).setPos(tmpPose);
+            float x = (float) loc.x(), y = (float) loc.y() + 0.9f, z = (float) loc.z();//steve is 1.8m tall
+            PhysxBox box = playerCollisionList.get(player);
+            PhysxMc.physxWorld.runOrDefer(() -> box.setPos(x, y, z, 0f, 0f, 0f, 1f));
         });
     }
 
@@ -85,7 +86,14 @@ public class PlayerTriggerHolder {
         PxQuat rot = new PxQuat(PxIDENTITYEnum.PxIdentity);
         PxBoxGeometry geometry = new PxBoxGeometry(0.3f, 0.9f, 0.3f);//Steve is 1.8m tall and has 0.6m width
         PhysxBox box = PhysxMc.physxWorld.addBox(new BoxData(pos, rot, Map.of(geometry, new PxVec3()), true));
-        box.getActor().setName(player.getName());
+        PhysxMc.physxWorld.retag(box, ActorType.PLAYER_TRIGGER, player);
+        String name = player.getName();
+        PhysxMc.physxWorld.runOrDefer(() -> {
+            box.getActor().setName(name);
+            // トリガーのペアは衝突レイヤーのマスクで省けないので、キネマティックにして静的な地形や
+            // キネマティックなプッシャー・ランプ・他のプレイヤーとのペアをPhysXに作らせない。動くコインや球体との重なりだけが残る
+            box.getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, true);
+        });
         return box;
     }
 
@@ -107,47 +115,28 @@ public class PlayerTriggerHolder {
      * @return
      */
     public Player getPlayer(PxActor actor) {
-        for (Map.Entry<Player, PhysxBox> entry : playerCollisionList.entrySet()) {
-            if (entry.getValue() == null)
-                continue;
-            if (entry.getValue().getActor().equals(actor))
-                return entry.getKey();
-        }
-        return null;
+        ActorRegistry registry = PhysxMc.physxWorld.getRegistry();
+        int handle = registry.getHandle(actor);
+        if (registry.getType(handle) != ActorType.PLAYER_TRIGGER)
+            return null;
+        return (Player) registry.getOwner(handle);
     }
 
     /**
      * プレイヤーの当たり判定と他オブジェクトが接触したイベントを受信し、扱いやすい型に変換してイベントを発行する
      *
-     * @param actor1 オブジェクト
-     * @param actor2 オブジェクト
-     * @param event  イベントの種類
+     * @param event         イベントの種類
+     * @param triggerHandle プレイヤーの当たり判定のハンドル
+     * @param otherHandle   接触したオブジェクトのハンドル
+     * @param impulse       力積(重なりイベントでは常に0)
      */
-    public void onPlayerEnterBox(PxActor actor1, PxActor actor2, String event) {
-        if (!event.equals("TRIGGER_ENTER"))
+    public void onPlayerEnterBox(ContactEventType event, int triggerHandle, int otherHandle, float impulse) {
+        ActorRegistry registry = PhysxMc.physxWorld.getRegistry();
+        if (!(registry.getOwner(triggerHandle) instanceof Player player))
+            return;
+        if (!(registry.getOwner(otherHandle) instanceof DisplayedPhysxBox box))
             return;
 
-        Player player;
-        DisplayedPhysxBox box;
-
-        player = getPlayer(actor1);
-        if (player != null) {
-            box = PhysxMc.displayedBoxHolder.getBox(actor2);
-            if (box != null) {
-                Player finalPlayer = player;
-                DisplayedPhysxBox finalBox = box;
-                playerTriggerReceivers.forEach(playerDisplayedPhysxBoxBiConsumer -> playerDisplayedPhysxBoxBiConsumer.accept(finalPlayer, finalBox));
-            }
-        }
-
-        player = getPlayer(actor2);
-        if (player != null) {
-            box = PhysxMc.displayedBoxHolder.getBox(actor1);
-            if (box != null) {
-                Player finalPlayer = player;
-                DisplayedPhysxBox finalBox = box;
-                playerTriggerReceivers.forEach(playerDisplayedPhysxBoxBiConsumer -> playerDisplayedPhysxBoxBiConsumer.accept(finalPlayer, finalBox));
-            }
-        }
+        playerTriggerReceivers.forEach(playerDisplayedPhysxBoxBiConsumer -> playerDisplayedPhysxBoxBiConsumer.accept(player, box));
     }
 }
@@ -8,6 +8,7 @@ import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
+import com.kamesuta.physxmc.core.PoseSnapshot;
 import com.kamesuta.physxmc.wrapper.DisplayedPhysxBox;
 
 /**
@@ -41,7 +42,7 @@ public class RampData {
         if (!ramp.displayMap.isEmpty()) {
             DisplayedPhysxBox.DisplayData firstDisplay = ramp.displayMap.get(0);
             if (firstDisplay.getDisplays().length > 0) {
-                org.bukkit.entity.BlockDisplay blockDisplay = firstDisplay.getDisplays()[0];
+                com.kamesuta.physxmc.wrapper.DisplayHandle blockDisplay = firstDisplay.getDisplays()[0];
                 org.bukkit.util.Transformation transformation = blockDisplay.getTransformation();
                 width = transformation.getScale().x;
                 thickness = transformation.getScale().y;
@@ -50,31 +51,20 @@ public class RampData {
             }
         }
         
-        // 物理演算の実際の角度を取得（PhysXアクターから）
+        // 物理演算の実際の角度を取得（演算スレッドと競合しないよう、tickごとのスナップショットから）
         float actualYaw = location.getYaw();
         float actualPitch = location.getPitch();
         
         if (ramp.getActor() != null && ramp.getActor().isReleasable()) {
-            try {
-                // PhysXからの回転情報を取得
-                physx.common.PxTransform transform = ramp.getPos();
-                physx.common.PxVec3 pos = transform.getP();
-                physx.common.PxQuat quat = transform.getQ();
-                
-                // クォータニオンから角度を計算
-                actualYaw = (float) Math.toDegrees(Math.atan2(2 * (quat.getW() * quat.getY() + quat.getX() * quat.getZ()), 
-                    1 - 2 * (quat.getY() * quat.getY() + quat.getZ() * quat.getZ())));
-                actualPitch = (float) Math.toDegrees(Math.asin(2 * (quat.getW() * quat.getX() - quat.getY() * quat.getZ())));
-                
-                // PhysXオブジェクトのクリーンアップ
-                pos.destroy();
-                quat.destroy();
-                transform.destroy();
-            } catch (Exception e) {
-                // フォールバック: 表示位置の角度を使用
-                actualYaw = location.getYaw();
-                actualPitch = location.getPitch();
-            }
+            float qx = ramp.pose(PoseSnapshot.QX);
+            float qy = ramp.pose(PoseSnapshot.QY);
+            float qz = ramp.pose(PoseSnapshot.QZ);
+            float qw = ramp.pose(PoseSnapshot.QW);
+            
+            // クォータニオンから角度を計算
+            actualYaw = (float) Math.toDegrees(Math.atan2(2 * (qw * qy + qx * qz), 
+                1 - 2 * (qy * qy + qz * qz)));
+            actualPitch = (float) Math.toDegrees(Math.asin(2 * (qw * qx - qy * qz)));
         }
         
         return new RampData(
@@ -0,0 +1,194 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.utils.BoundingBoxUtil;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.util.BoundingBox;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ブロックの状態(BlockData)ごとの当たり判定の形のテンプレート
+ * 地形を作る時にブロックごとにリフレクションで形を取ると遅いので、状態ごとに一度だけ取ってキャッシュする
+ * 形はブロックの最小の角を原点とした箱(半分の大きさと中心)の並び
+ */
+public class BlockCollisionTemplate {
+
+    /**
+     * 当たり判定のないブロック
+     */
+    public static final BlockCollisionTemplate EMPTY = new BlockCollisionTemplate(false, new float[0]);
+
+    /**
+     * 1ブロック丸ごとの当たり判定を持つブロック
+     */
+    public static final BlockCollisionTemplate FULL = new BlockCollisionTemplate(true, new float[]{0.5f, 0.5f, 0.5f, 0.5f, 0.5f, 0.5f});
+
+    /**
+     * 1つの箱あたりのfloatの数(半分の大きさxyz、中心xyz)
+     */
+    public static final int STRIDE = 6;
+
+    /**
+     * 状態ごとのテンプレート。ワーカースレッドからも読み書きする
+     */
+    private static final Map<BlockData, BlockCollisionTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 種類ごとの{@link #forType}の結果。状態を見ないと分からない種類は{@link #STATE_DEPENDENT}を入れる
+     */
+    private static final Map<Material, BlockCollisionTemplate> typeTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * 状態を見ないと形が分からない種類の印
+     */
+    private static final BlockCollisionTemplate STATE_DEPENDENT = new BlockCollisionTemplate(false, new float[0]);
+
+    /**
+     * 1ブロック丸ごとの箱か
+     */
+    @Getter
+    private final boolean full;
+
+    /**
+     * 箱の並び。箱ごとに半分の大きさxyz、中心xyz
+     */
+    private final float[] boxes;
+
+    private final int hash;
+
+    private BlockCollisionTemplate(boolean full, float[] boxes) {
+        this.full = full;
+        this.boxes = boxes;
+        this.hash = Arrays.hashCode(boxes);
+    }
+
+    /**
+     * 箱の数
+     */
+    public int getBoxCount() {
+        return boxes.length / STRIDE;
+    }
+
+    /**
+     * 箱の値を取得する
+     *
+     * @param box   箱の番号
+     * @param index 箱の中の値の番号(0~2: 半分の大きさxyz、3~5: 中心xyz)
+     */
+    public float get(int box, int index) {
+        return boxes[box * STRIDE + index];
+    }
+
+    /**
+     * 当たり判定がないか
+     */
+    public boolean isEmpty() {
+        return boxes.length == 0;
+    }
+
+    /**
+     * 種類だけで形が決まるブロックのテンプレートを取得する
+     *
+     * @param type ブロックの種類
+     * @return テンプレート、状態を見ないと分からなければnull
+     */
+    public static BlockCollisionTemplate forType(Material type) {
+        BlockCollisionTemplate template = typeTemplates.get(type);
+        if (template == null) {
+            template = resolveType(type);
+            typeTemplates.put(type, template);
+        }
+        return template == STATE_DEPENDENT ? null : template;
+    }
+
+    /**
+     * 種類だけで形が決まるか調べる
+     * 光を通さないブロックでも、ソウルサンドや泥のように当たり判定が1ブロックより低いものがあるので、既定の状態の形を一度だけ調べて丸ごとの箱か確かめる
+     */
+    private static BlockCollisionTemplate resolveType(Material type) {
+        if (type.isAir() || !type.isCollidable())
+            return EMPTY;
+        if (type.isOccluding() && of(type.createBlockData()) == FULL)
+            return FULL;
+        return STATE_DEPENDENT;
+    }
+
+    /**
+     * ブロックの状態のテンプレートを取得する。ワーカースレッドから呼んでもよい
+     *
+     * @param blockData ブロックの状態
+     * @return テンプレート
+     */
+    public static BlockCollisionTemplate of(BlockData blockData) {
+        BlockCollisionTemplate template = templates.get(blockData);
+        if (template == null) {
+            template = resolve(blockData);
+            templates.put(blockData, template);
+        }
+        return template;
+    }
+
+    /**
+     * ブロックの形を調べてテンプレートを作る
+     */
+    private static BlockCollisionTemplate resolve(BlockData blockData) {
+        Collection<BoundingBox> boundingBoxes;
+        try {
+            // 選択枠(アウトライン)ではなく、ゲームで実際にぶつかる形を使う
+            boundingBoxes = BoundingBoxUtil.getCollisionBoxes(blockData);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 形が取れなければ素材の当たり判定の有無で判断する
+            Bukkit.getLogger().warning("ブロックの当たり判定の形を取得できませんでした: " + blockData.getAsString() + " " + e.getMessage());
+            return blockData.getMaterial().isCollidable() ? FULL : EMPTY;
+        }
+
+        if (boundingBoxes.isEmpty())
+            return EMPTY;
+        if (boundingBoxes.size() == 1 && isFullBlock(boundingBoxes.iterator().next()))
+            return FULL;
+
+        float[] boxes = new float[boundingBoxes.size() * STRIDE];
+        int i = 0;
+        for (BoundingBox box : boundingBoxes) {
+            boxes[i++] = (float) box.getWidthX() * 0.5f;
+            boxes[i++] = (float) box.getHeight() * 0.5f;
+            boxes[i++] = (float) box.getWidthZ() * 0.5f;
+            boxes[i++] = (float) box.getCenterX();
+            boxes[i++] = (float) box.getCenterY();
+            boxes[i++] = (float) box.getCenterZ();
+        }
+        return new BlockCollisionTemplate(false, boxes);
+    }
+
+    private static boolean isFullBlock(BoundingBox box) {
+        return box.getMinX() <= 0 && box.getMinY() <= 0 && box.getMinZ() <= 0
+                && box.getMaxX() >= 1 && box.getMaxY() >= 1 && box.getMaxZ() >= 1;
+    }
+
+    /**
+     * キャッシュしているテンプレートの数
+     */
+    public static int size() {
+        return templates.size();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof BlockCollisionTemplate other))
+            return false;
+        return full == other.full && Arrays.equals(boxes, other.boxes);
+    }
+}
@@ -0,0 +1,56 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxSetting;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.util.Transformation;
+import org.joml.Matrix4f;
+
+/**
+ * 物理オブジェクトの見た目を表示するBlockDisplay
+ * 実体のエンティティ({@link EntityDisplayHandle})と、パケットだけで表示する仮想のエンティティ({@link VirtualDisplayHandle})がある。
+ * メソッドはBlockDisplayのものと同じ意味で、メインスレッドからのみ使うこと
+ */
+public interface DisplayHandle {
+
+    /**
+     * 設定に応じた方式で表示を作る
+     *
+     * @param location       場所
+     * @param blockData      表示するブロック
+     * @param transformation 変換
+     * @return 作った表示
+     */
+    static DisplayHandle spawn(Location location, BlockData blockData, Transformation transformation) {
+        if (PhysxSetting.isPacketDisplays())
+            return new VirtualDisplayHandle(location, blockData, transformation);
+        return EntityDisplayHandle.spawn(location, blockData, transformation);
+    }
+
+    World getWorld();
+
+    Location getLocation();
+
+    void teleport(Location location);
+
+    BlockData getBlock();
+
+    Transformation getTransformation();
+
+    void setTransformation(Transformation transformation);
+
+    void setTransformationMatrix(Matrix4f matrix);
+
+    void setInterpolationDelay(int ticks);
+
+    void setInterpolationDuration(int ticks);
+
+    void setVisibleByDefault(boolean visible);
+
+    boolean isDead();
+
+    boolean isValid();
+
+    void remove();
+}
@@ -0,0 +1,76 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxSetting;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 物体の表示を更新する間隔を、一番近いプレイヤーとの距離で決めるクラス
+ * 近い物体は毎tick、遠くなるほど2・4・8tickごとに更新し、どのプレイヤーからも見えない物体は更新しない。
+ * 補完の時間を間隔に合わせれば、遠くの物体も動きはなめらかに見える
+ * <p>
+ * 毎tick、物体を更新する前に{@link #update()}でプレイヤーの位置を取り直すこと。メインスレッドからのみ使うこと
+ */
+public class DisplayLod {
+
+    /**
+     * 一番長い更新間隔(tick)
+     */
+    public static final int MAX_INTERVAL = 8;
+
+    /**
+     * ワールドごとのプレイヤーの位置
+     */
+    private final Map<World, List<Vector>> playerPositions = new HashMap<>();
+
+    /**
+     * プレイヤーの位置を取り直す
+     */
+    public void update() {
+        playerPositions.clear();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            playerPositions.computeIfAbsent(player.getWorld(), w -> new ArrayList<>()).add(player.getLocation().toVector());
+        }
+    }
+
+    /**
+     * 指定した位置にある物体の表示を更新する間隔を取得する
+     *
+     * @param world ワールド
+     * @param x     x座標
+     * @param y     y座標
+     * @param z     z座標
+     * @return 間隔(1, 2, 4, 8tick)、どのプレイヤーからも見えなければ0
+     */
+    public int getInterval(World world, double x, double y, double z) {
+        List<Vector> positions = playerPositions.get(world);
+        if (positions == null)
+            return 0;
+
+        double closest = Double.POSITIVE_INFINITY;
+        for (Vector position : positions) {
+            double dx = position.getX() - x;
+            double dy = position.getY() - y;
+            double dz = position.getZ() - z;
+            closest = Math.min(closest, dx * dx + dy * dy + dz * dz);
+        }
+
+        double viewDistance = PhysxSetting.getDisplayViewDistance();
+        if (closest > viewDistance * viewDistance)
+            return 0;
+        double near = PhysxSetting.getDisplayLodDistance();
+        for (int interval = 1; interval < MAX_INTERVAL; interval <<= 1) {
+            if (closest <= near * near)
+                return interval;
+            near *= 2;
+        }
+        return MAX_INTERVAL;
+    }
+}
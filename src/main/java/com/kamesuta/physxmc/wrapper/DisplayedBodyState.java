@@ -0,0 +1,405 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.PhysxSetting;
+import com.kamesuta.physxmc.core.NativeScratch;
+import com.kamesuta.physxmc.core.PoseBuffer;
+import com.kamesuta.physxmc.core.PoseSnapshot;
+import com.kamesuta.physxmc.utils.ConversionUtility;
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.util.Transformation;
+import org.bukkit.util.Vector;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import physx.common.PxVec3;
+import physx.physics.PxRigidBodyFlagEnum;
+import physx.physics.PxRigidDynamic;
+
+import java.util.List;
+
+/**
+ * Minecraft世界で表示する物体(箱・球体)の、表示の同期・距離による間引き・地形待ちの状態
+ * {@link DisplayedPhysxBox}と{@link DisplayedPhysxSphere}はこのクラスに処理を任せる。メインスレッドからのみ使うこと
+ */
+class DisplayedBodyState {
+
+    /**
+     * BlockDisplayの位置から物体がこれより離れたら、BlockDisplayを物体の位置に置き直す(ブロック)
+     */
+    private static final double REBASE_DISTANCE = 16;
+
+    /**
+     * 物体の表示の1つ分。BlockDisplay(古い方式では2つ)と物体の中心からのずれ
+     */
+    interface DisplayPart {
+        DisplayHandle[] getDisplays();
+
+        Vector getOffset();
+
+        /**
+         * スワップのフェーズ(古い方式のみ)
+         */
+        int getSwapPhase();
+
+        void setSwapPhase(int swapPhase);
+    }
+
+    private final PoseBuffer poseBuffer;
+
+    private final List<? extends DisplayPart> parts;
+
+    /**
+     * 物体のいるワールド
+     */
+    @Getter
+    private World world;
+
+    /**
+     * makeKinematicで重力の影響を受けないようにしているか
+     */
+    private boolean kinematic = false;
+
+    /**
+     * 足元の地形ができるまで止めているか
+     */
+    @Getter
+    private boolean heldForTerrain = false;
+
+    /**
+     * 地形を読み込んでおくチャンクの参照
+     */
+    @Getter
+    private final TerrainResidency.Ticket residencyTicket = new TerrainResidency.Ticket();
+
+    /**
+     * 止める直前の速度と角速度(演算する側のスレッドからのみ触る)
+     */
+    private final float[] heldVelocity = new float[6];
+
+    /**
+     * update()が呼ばれた回数(生成直後の物体を止めないようにするため)
+     */
+    private int updateCount = 0;
+
+    /**
+     * 最後に表示を同期した時の姿勢[px, py, pz, qx, qy, qz, qw]
+     */
+    private final float[] syncedPose = new float[7];
+
+    /**
+     * 最後に表示を同期した時に眠っていたか
+     */
+    private boolean syncedSleeping = false;
+
+    /**
+     * 次のupdate()で変化がなくても表示を同期するか
+     */
+    private boolean forceSync = true;
+
+    /**
+     * 次に表示を更新するまでのtick数
+     */
+    private int lodCountdown = 0;
+
+    /**
+     * 今の表示の更新間隔(補完の時間)
+     */
+    private int lodInterval = 1;
+
+    /**
+     * @param poseBuffer 物体の姿勢
+     * @param parts      物体の表示
+     */
+    DisplayedBodyState(PoseBuffer poseBuffer, List<? extends DisplayPart> parts) {
+        this.poseBuffer = poseBuffer;
+        this.parts = parts;
+        this.world = parts.get(0).getDisplays()[0].getWorld();
+    }
+
+    private PxRigidDynamic getActor() {
+        return poseBuffer.getActor();
+    }
+
+    /**
+     * 物体の姿勢や速度をこのtickのスナップショットから読む
+     *
+     * @param field 項目({@link PoseSnapshot#PX}など)
+     * @return 値
+     */
+    float pose(int field) {
+        return PhysxMc.physxWorld.readPose(poseBuffer, field);
+    }
+
+    /**
+     * 物体がスリープ中か、このtickのスナップショットから読む
+     */
+    boolean isSleeping() {
+        return PhysxMc.physxWorld.isSleeping(poseBuffer);
+    }
+
+    /**
+     * 表示を更新する。毎tick呼ぶこと
+     */
+    void update() {
+        if (updateCount < 2)
+            updateCount++;
+        // 近くにプレイヤーがいない物体は間隔を空けて更新する
+        if (--lodCountdown > 0)
+            return;
+        int interval = PhysxMc.displayLod.getInterval(world, pose(PoseSnapshot.PX), pose(PoseSnapshot.PY), pose(PoseSnapshot.PZ));
+        if (interval == 0) {
+            // どのプレイヤーからも見えない間は送らず、見えるようになったら同期し直す
+            lodCountdown = DisplayLod.MAX_INTERVAL;
+            forceSync = true;
+            return;
+        }
+        lodCountdown = interval;
+        lodInterval = interval;
+        if (needsSync())
+            sync();
+    }
+
+    /**
+     * 最後に同期した時から表示を更新する必要があるか調べ、必要なら今の姿勢を同期した姿勢として覚える
+     * 眠っている物体は眠った時に一度だけ同期して以降は送らず、起きた時に同期し直す。
+     * 起きている物体も、位置と回転の変化が{@link PhysxSetting#getDisplaySyncEpsilon()}より小さければ送らない
+     */
+    private boolean needsSync() {
+        boolean sleeping = isSleeping();
+        boolean sync = forceSync || sleeping != syncedSleeping || isSwapping();
+        if (!sync && !sleeping) {
+            float epsilon = PhysxSetting.getDisplaySyncEpsilon();
+            for (int i = 0; i < syncedPose.length; i++) {
+                if (Math.abs(pose(PoseSnapshot.PX + i) - syncedPose[i]) > epsilon) {
+                    sync = true;
+                    break;
+                }
+            }
+        }
+        if (!sync)
+            return false;
+
+        for (int i = 0; i < syncedPose.length; i++) {
+            syncedPose[i] = pose(PoseSnapshot.PX + i);
+        }
+        syncedSleeping = sleeping;
+        forceSync = false;
+        return true;
+    }
+
+    /**
+     * どれかの表示がスワップの途中か
+     */
+    private boolean isSwapping() {
+        for (DisplayPart part : parts) {
+            if (part.getSwapPhase() != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 物体とBlockDisplayを同期する
+     * BlockDisplayが1つなら離れすぎた時に置き直し、2つ(古い方式)なら入れ替えてテレポートを隠す
+     */
+    private void sync() {
+        float px = pose(PoseSnapshot.PX);
+        float py = pose(PoseSnapshot.PY);
+        float pz = pose(PoseSnapshot.PZ);
+        Quaternionf quat = new Quaternionf(pose(PoseSnapshot.QX), pose(PoseSnapshot.QY), pose(PoseSnapshot.QZ), pose(PoseSnapshot.QW));
+        for (DisplayPart part : parts) {
+            DisplayHandle[] displays = part.getDisplays();
+            Vector offset = part.getOffset();
+
+            if (displays.length == 1) {
+                rebaseAndSync(displays[0], offset, px, py, pz, quat);
+                continue;
+            }
+
+            int swapPhase = part.getSwapPhase();
+
+            Location pos = new Location(displays[0].getWorld(), px, py, pz);
+
+            // スワップのフェーズ管理 (2ティックかけてスワップが完了する)
+            if (swapPhase == 2) {
+                swap(pos, displays);
+                swapPhase = 0;
+            }
+            if (swapPhase == 1) {
+                preSwap(displays);
+                swapPhase = 2;
+            }
+            // 位置が16マス以上離れていたら次のティックからスワップを開始する
+            if (swapPhase == 0 && displays[0].getLocation().toVector().distance(new Vector(px, py, pz)) > REBASE_DISTANCE) {
+                swapPhase = 1;
+            }
+            part.setSwapPhase(swapPhase);
+
+            for (DisplayHandle blockDisplay : displays) {
+                setPoseTransformation(blockDisplay, blockDisplay.getLocation(), offset, px, py, pz, quat);
+                // なめらかに補完する
+                blockDisplay.setInterpolationDelay(0);
+                blockDisplay.setInterpolationDuration(lodInterval);
+            }
+        }
+    }
+
+    /**
+     * 1つのBlockDisplayを物体の姿勢に合わせる。物体が離れすぎていたらBlockDisplayを物体の位置にテレポートする
+     * 置き直したtickは前の変換から補完すると位置が飛んで見えるので、補完せずにその場に置く。
+     * テレポートと変換は同じtickにクライアントに届く(パケットだけの表示では同じバンドルで送る)
+     */
+    private void rebaseAndSync(DisplayHandle blockDisplay, Vector offset, float px, float py, float pz, Quaternionf quat) {
+        Location base = blockDisplay.getLocation();
+        double dx = px - base.getX(), dy = py - base.getY(), dz = pz - base.getZ();
+        boolean rebase = dx * dx + dy * dy + dz * dz > REBASE_DISTANCE * REBASE_DISTANCE;
+        if (rebase) {
+            base = new Location(base.getWorld(), px, py, pz);
+            blockDisplay.teleport(base);
+        }
+
+        setPoseTransformation(blockDisplay, base, offset, px, py, pz, quat);
+        blockDisplay.setInterpolationDelay(0);
+        blockDisplay.setInterpolationDuration(rebase ? 0 : lodInterval);
+    }
+
+    /**
+     * BlockDisplayの変換を、指定した位置から見た物体の姿勢にする
+     */
+    private static void setPoseTransformation(DisplayHandle blockDisplay, Location base, Vector offset, float px, float py, float pz, Quaternionf quat) {
+        Transformation transformation = blockDisplay.getTransformation();
+        transformation.getLeftRotation().set(quat);
+        transformation.getTranslation().set(px - base.getX(), py - base.getY(), pz - base.getZ());
+        Matrix4f matrix = ConversionUtility.getTransformationMatrix(transformation);
+        matrix.translate(-.5f + (float) offset.getX(), -.5f + (float) offset.getY(), -.5f + (float) offset.getZ());
+        blockDisplay.setTransformationMatrix(matrix);
+    }
+
+    /**
+     * スワップの1ティック前に呼ぶ
+     */
+    private static void preSwap(DisplayHandle[] display) {
+        display[0].setVisibleByDefault(true);
+    }
+
+    /**
+     * TPの移動が見えないようにスワップする
+     *
+     * @param pos 新しい位置
+     */
+    private static void swap(Location pos, DisplayHandle[] display) {
+        display[1].setVisibleByDefault(false);
+        display[1].teleport(pos);
+
+        DisplayHandle temp = display[1];
+        display[1] = display[0];
+        display[0] = temp;
+    }
+
+    /**
+     * 物体が重力の影響を受けないようにするか変更する。演算中であれば次のfetchResultsまで遅延される
+     */
+    void makeKinematic(boolean flag) {
+        kinematic = flag;
+        // 地形待ちで止めている間は、止めるのをやめる時に反映する
+        if (heldForTerrain)
+            return;
+        PhysxMc.physxWorld.runOrDefer(() -> getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, flag));
+    }
+
+    /**
+     * 足元の地形ができていない間、物体をその場に止めておく。止めるのをやめると元の速度で動き出す
+     * 地形がワーカースレッドで組み立てられている間に物体が地面をすり抜けないようにするため
+     *
+     * @param held 止めるかどうか
+     */
+    void setHeldForTerrain(boolean held) {
+        // 生成直後は与えた力がまだ速度に反映されていないので止めない
+        if (held && updateCount < 2)
+            return;
+        if (held == heldForTerrain)
+            return;
+        heldForTerrain = held;
+        if (kinematic)
+            return;
+
+        if (held) {
+            PhysxMc.physxWorld.runOrDefer(() -> {
+                PxVec3 linearVel = getActor().getLinearVelocity();
+                PxVec3 angularVel = getActor().getAngularVelocity();
+                heldVelocity[0] = linearVel.getX();
+                heldVelocity[1] = linearVel.getY();
+                heldVelocity[2] = linearVel.getZ();
+                heldVelocity[3] = angularVel.getX();
+                heldVelocity[4] = angularVel.getY();
+                heldVelocity[5] = angularVel.getZ();
+                getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, true);
+            });
+        } else {
+            PhysxMc.physxWorld.runOrDefer(() -> {
+                getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, false);
+                try (NativeScratch scratch = NativeScratch.push()) {
+                    getActor().setLinearVelocity(scratch.vec3(heldVelocity[0], heldVelocity[1], heldVelocity[2]));
+                    getActor().setAngularVelocity(scratch.vec3(heldVelocity[3], heldVelocity[4], heldVelocity[5]));
+                }
+            });
+        }
+    }
+
+    /**
+     * 周囲の地形を読み込んでおくよう登録し、地形ができていなければ物体を止める。毎tick呼ぶこと
+     * 眠っている物体は自分のいるチャンクの地形だけを残しておく
+     */
+    void updateTerrain() {
+        boolean sleeping = isSleeping();
+        PhysxMc.physxWorld.updateResidency(residencyTicket, world, pose(PoseSnapshot.PX), pose(PoseSnapshot.PZ), sleeping && !heldForTerrain);
+        // 地形待ちで止めている間も周囲のチャンクは読み込み続ける
+        if (!sleeping || heldForTerrain)
+            setHeldForTerrain(!PhysxMc.physxWorld.isTerrainReady(residencyTicket));
+    }
+
+    /**
+     * プールに入れる前に、状態を作った直後に戻して表示を隠す
+     */
+    void reset() {
+        kinematic = false;
+        heldForTerrain = false;
+        updateCount = 0;
+        forceSync = true;
+        syncedSleeping = false;
+        lodCountdown = 0;
+        for (DisplayPart part : parts) {
+            part.setSwapPhase(0);
+            for (DisplayHandle blockDisplay : part.getDisplays()) {
+                blockDisplay.setVisibleByDefault(false);
+            }
+        }
+    }
+
+    /**
+     * 表示を新しい位置と回転に置き直して見えるようにする
+     *
+     * @param location 新しい位置
+     * @param quat     新しい回転
+     */
+    void showAt(Location location, Quaternionf quat) {
+        world = location.getWorld();
+        for (DisplayPart part : parts) {
+            Vector offset = part.getOffset();
+            for (DisplayHandle blockDisplay : part.getDisplays()) {
+                blockDisplay.teleport(location);
+                Transformation transformation = blockDisplay.getTransformation();
+                transformation.getLeftRotation().set(quat);
+                transformation.getTranslation().set(0f, 0f, 0f);
+                Matrix4f matrix = ConversionUtility.getTransformationMatrix(transformation);
+                matrix.translate(-.5f + (float) offset.getX(), -.5f + (float) offset.getY(), -.5f + (float) offset.getZ());
+                blockDisplay.setTransformationMatrix(matrix);
+                // 前の位置から補完されないようにする
+                blockDisplay.setInterpolationDuration(0);
+                blockDisplay.setVisibleByDefault(true);
+            }
+        }
+    }
+}
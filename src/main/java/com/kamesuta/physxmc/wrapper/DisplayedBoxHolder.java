@@ -1,29 +1,29 @@
 package com.kamesuta.physxmc.wrapper;
 
 import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.core.ActorType;
 import com.kamesuta.physxmc.core.BoxData;
+import com.kamesuta.physxmc.core.PoseSnapshot;
 import com.kamesuta.physxmc.utils.BoundingBoxUtil;
 import lombok.Getter;
 import org.bukkit.Location;
 import org.bukkit.block.data.BlockData;
-import org.bukkit.entity.BlockDisplay;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
-import org.jetbrains.annotations.Nullable;
 import org.joml.Quaternionf;
 import org.joml.Vector3d;
+import org.joml.Vector3f;
 import physx.common.PxQuat;
 import physx.common.PxVec3;
 import physx.geometry.PxBoxGeometry;
 import physx.physics.PxActor;
 import physx.physics.PxForceModeEnum;
-import physx.physics.PxRigidActor;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * OverWorld内の全てのDisplayedPhysxBoxを保持するクラス
@@ -32,6 +32,12 @@ public class DisplayedBoxHolder {
 
     private final List<DisplayedPhysxBox> blockDisplayList = new ArrayList<>();
 
+    /**
+     * 回収したコインを使い回すためのプール
+     */
+    @Getter
+    private final DisplayedBoxPool pool = new DisplayedBoxPool();
+
     /**
      * プレイヤーがブロックを投げるとき、連結するブロックのオフセットのマップ
      */
@@ -141,14 +147,34 @@ public class DisplayedBoxHolder {
             
             org.bukkit.Bukkit.getLogger().info("デバッグ: クォータニオン - x=" + quat.x + ", y=" + quat.y + ", z=" + quat.z + ", w=" + quat.w);
             
-            Map<BlockDisplay[], Vector> displayMap = new HashMap<>();
+            // コインは回収済みのものがあれば使い回す
+            boolean isCoin = density == com.kamesuta.physxmc.PhysxSetting.getCoinDensity() && !isPusher;
+            DisplayedBoxPool.Key poolKey = isCoin && offsets.size() == 1
+                    ? new DisplayedBoxPool.Key(location.getWorld().getUID(), itemStack.getType(), scale, density)
+                    : null;
+            if (poolKey != null) {
+                DisplayedPhysxBox pooled = acquirePooled(poolKey);
+                if (pooled != null) {
+                    pooled.showAt(location, quat);
+                    PhysxMc.physxWorld.unparkBox(pooled, ActorType.COIN,
+                            new PxVec3((float) location.x(), (float) location.y(), (float) location.z()),
+                            new PxQuat(quat.x, quat.y, quat.z, quat.w));
+                    blockDisplayList.add(pooled);
+                    return pooled;
+                }
+            }
+
+            Map<DisplayHandle[], Vector> displayMap = new HashMap<>();
             Map<PxBoxGeometry, PxVec3> boxGeometries = new HashMap<>();
 
             for (Vector offset : offsets) {
-                // なめらかな補完のために2つBlockDisplayを作る
-                BlockDisplay[] display = new BlockDisplay[]{createDisplay(itemStack, location, scale, quat), createDisplay(itemStack, location, scale, quat)};
+                // 古い方式では、テレポートを隠すために2つBlockDisplayを作って入れ替える
+                DisplayHandle[] display = new DisplayHandle[com.kamesuta.physxmc.PhysxSetting.isSwapDisplays() ? 2 : 1];
+                for (int i = 0; i < display.length; i++) {
+                    display[i] = createDisplay(itemStack, location, scale, quat);
+                }
                 displayMap.put(display, new Vector(offset.getX(), offset.getY(), offset.getZ()));
-                Map<PxBoxGeometry, PxVec3> boxGeometry = getBoxGeometries(itemStack, display[0], scale, new Vector(offset.getX(), offset.getY(), offset.getZ()).multiply(scale));
+                Map<PxBoxGeometry, PxVec3> boxGeometry = getBoxGeometries(itemStack, scale, new Vector(offset.getX(), offset.getY(), offset.getZ()).multiply(scale));
                 boxGeometries.putAll(boxGeometry);
             }
 
@@ -169,6 +195,8 @@ public class DisplayedBoxHolder {
             
             BoxData data = new BoxData(new PxVec3((float) x, (float) y, (float) z), new PxQuat(quat.x, quat.y, quat.z, quat.w), boxGeometries, false, finalDensity);
             DisplayedPhysxBox box = PhysxMc.physxWorld.addBox(data, displayMap, density == com.kamesuta.physxmc.PhysxSetting.getCoinDensity(), isPusher);
+            if (box != null)
+                box.setPoolKey(poolKey);
             
             if (box != null) {
                 // アクターが正常に作成されているか検証
@@ -176,7 +204,7 @@ public class DisplayedBoxHolder {
                     org.bukkit.Bukkit.getLogger().severe("ボックス作成失敗: PhysXアクターが作成されませんでした");
                     // 失敗したDisplayをクリーンアップ
                     for (DisplayedPhysxBox.DisplayData data2 : box.displayMap) {
-                        for (org.bukkit.entity.BlockDisplay display : data2.getDisplays()) {
+                        for (DisplayHandle display : data2.getDisplays()) {
                             display.remove();
                         }
                     }
@@ -198,11 +226,11 @@ public class DisplayedBoxHolder {
     /**
      * ブロックの判定取得
      */
-    private static Map<PxBoxGeometry, PxVec3> getBoxGeometries(ItemStack itemStack, Entity display, Vector scale, Vector offset){
+    private static Map<PxBoxGeometry, PxVec3> getBoxGeometries(ItemStack itemStack, Vector scale, Vector offset){
         BlockData blockData = itemStack.getType().createBlockData();
         Collection<BoundingBox> boundingBoxes;
         try {
-            boundingBoxes = BoundingBoxUtil.getOutlineBoxes(BoundingBoxUtil.getOutline(display, blockData));
+            boundingBoxes = BoundingBoxUtil.getOutlineBoxes(blockData);
         } catch (ReflectiveOperationException e) {
             throw new RuntimeException(e);
         }
@@ -222,20 +250,15 @@ public class DisplayedBoxHolder {
      * @param location  場所
      * @param scale     大きさ
      * @param boxQuat   回転
-     * @return　作ったBlockDisplay
+     * @return　作った表示
      */
-    private static BlockDisplay createDisplay(ItemStack itemStack, Location location, Vector scale, Quaternionf boxQuat) {
-        BlockDisplay blockDisplay = location.getWorld().spawn(location, BlockDisplay.class);
-        blockDisplay.setBlock(itemStack.getType().createBlockData());
-        Transformation transformation = blockDisplay.getTransformation();
-        transformation.getTranslation().add(-0.5f, -0.5f, -0.5f);
-        transformation.getScale().x = (float) scale.getX();
-        transformation.getScale().y = (float) scale.getY();
-        transformation.getScale().z = (float) scale.getZ();
-        transformation.getLeftRotation().set(boxQuat);
-        blockDisplay.setTransformation(transformation);
-        blockDisplay.setGravity(false);
-        return blockDisplay;
+    private static DisplayHandle createDisplay(ItemStack itemStack, Location location, Vector scale, Quaternionf boxQuat) {
+        Transformation transformation = new Transformation(
+                new Vector3f(-0.5f, -0.5f, -0.5f),
+                new Quaternionf(boxQuat),
+                new Vector3f((float) scale.getX(), (float) scale.getY(), (float) scale.getZ()),
+                new Quaternionf());
+        return DisplayHandle.spawn(location, itemStack.getType().createBlockData(), transformation);
     }
 
     /**
@@ -246,11 +269,8 @@ public class DisplayedBoxHolder {
         destroyUnusableBox();
         for (DisplayedPhysxBox displayedPhysxBox : blockDisplayList) {
             displayedPhysxBox.update();
-
-            if (!displayedPhysxBox.isSleeping())
-                PhysxMc.physxWorld.registerChunksToLoadNextTick(displayedPhysxBox.getSurroundingChunks());
+            displayedPhysxBox.updateTerrain();
         }
-        PhysxMc.physxWorld.setReadyToUpdateChunks();
     }
 
     /**
@@ -261,13 +281,12 @@ public class DisplayedBoxHolder {
             if (box == null)
                 return false;
 
-            if (box.getLocation().y() < -128 || box.isDisplayDead()) {
-                for (DisplayedPhysxBox.DisplayData data : box.displayMap){
-                    for (BlockDisplay blockDisplay : data.getDisplays()) {
-                        blockDisplay.remove();
-                    }
-                }
-                PhysxMc.physxWorld.removeBox(box);
+            if (box.isDisplayDead()) {
+                destroy(box);
+                return true;
+            }
+            if (box.getLocation().y() < -128) {
+                retire(box);
                 return true;
             }
 
@@ -280,15 +299,12 @@ public class DisplayedBoxHolder {
      */
     public void destroyAll() {
         int destroyedCount = blockDisplayList.size();
-        blockDisplayList.forEach(box -> {
-            for (DisplayedPhysxBox.DisplayData data : box.displayMap){
-                for (BlockDisplay blockDisplay : data.getDisplays()) {
-                    blockDisplay.remove();
-                }
-            }
-            PhysxMc.physxWorld.removeBox(box);
-        });
+        blockDisplayList.forEach(this::destroy);
         blockDisplayList.clear();
+        pool.clear(box -> {
+            removeDisplays(box);
+            PhysxMc.physxWorld.releaseParkedBox(box);
+        });
         if (destroyedCount > 0) {
             java.util.logging.Logger.getLogger("PhysxMc").info("DisplayedBoxHolder: " + destroyedCount + "個のボックスを削除しました");
         }
@@ -298,12 +314,48 @@ public class DisplayedBoxHolder {
         if (box == null || !blockDisplayList.remove(box))
             return;
 
+        retire(box);
+    }
+
+    /**
+     * プールから使える箱を取り出す。取っておく間に表示が消されたりチャンクごと読み込まれなくなったりした箱は破棄する
+     */
+    private DisplayedPhysxBox acquirePooled(DisplayedBoxPool.Key key) {
+        DisplayedPhysxBox box;
+        while ((box = pool.acquire(key)) != null) {
+            if (!box.isDisplayDead() && box.isDisplayValid())
+                return box;
+            removeDisplays(box);
+            PhysxMc.physxWorld.releaseParkedBox(box);
+        }
+        return null;
+    }
+
+    /**
+     * 使い終わった箱を、使い回せればプールに入れ、そうでなければ削除する
+     */
+    private void retire(DisplayedPhysxBox box) {
+        if (box.getPoolKey() != null && !box.isDisplayDead() && pool.release(box.getPoolKey(), box)) {
+            PhysxMc.physxWorld.parkBox(box);
+            return;
+        }
+        destroy(box);
+    }
+
+    /**
+     * 箱とその表示を削除する
+     */
+    private void destroy(DisplayedPhysxBox box) {
+        removeDisplays(box);
+        PhysxMc.physxWorld.removeBox(box);
+    }
+
+    private static void removeDisplays(DisplayedPhysxBox box) {
         for (DisplayedPhysxBox.DisplayData data : box.displayMap){
-            for (BlockDisplay blockDisplay : data.getDisplays()) {
+            for (DisplayHandle blockDisplay : data.getDisplays()) {
                 blockDisplay.remove();
             }
         }
-        PhysxMc.physxWorld.removeBox(box);
     }
 
     public boolean hasBox(DisplayedPhysxBox box) {
@@ -318,8 +370,7 @@ public class DisplayedBoxHolder {
         double explosionStrengthSquared = strength * 2.0 * strength * 2.0;
 
         for (DisplayedPhysxBox box : blockDisplayList) {
-            PxVec3 pos = box.getPos().getP();
-            tmp.set(pos.getX(), pos.getY(), pos.getZ());
+            tmp.set(box.pose(PoseSnapshot.PX), box.pose(PoseSnapshot.PY), box.pose(PoseSnapshot.PZ));
             double distanceSquared = location.toVector().toVector3d().distanceSquared(tmp);
             if (distanceSquared <= explosionStrengthSquared) {
                 double distance = Math.sqrt(distanceSquared);
@@ -328,29 +379,25 @@ public class DisplayedBoxHolder {
                 direction.normalize();
                 double realStrength = (1.0 - (Math.min(Math.max(distance / (strength * 2.0), 0f), 1f))) * 15.0;
 
-                PxVec3 pxVec = new PxVec3(
+                box.addForce(
                         (float) (direction.x * realStrength),
                         (float) (direction.y * realStrength),
-                        (float) (direction.z * realStrength)
-                );
-                box.addForce(pxVec, PxForceModeEnum.eVELOCITY_CHANGE);
+                        (float) (direction.z * realStrength),
+                        PxForceModeEnum.eVELOCITY_CHANGE);
             }
         }
     }
 
     /**
      * 世界内でRayCastしてBoxを探す
+     * 専用スレッドモードでは結果は後のtickに届くので、その間に箱が消えていないかはコールバックで確かめること
      *
      * @param location 始点
      * @param distance 距離
-     * @return 見つかったBox
+     * @param callback 見つかったBox(なければnull)を受け取るコールバック
      */
-    @Nullable
-    public DisplayedPhysxBox raycast(Location location, float distance) {
-        PxRigidActor actor = PhysxMc.physxWorld.raycast(location, distance);
-        if (actor == null)
-            return null;
-        return blockDisplayList.stream().filter(displayedPhysxBox -> displayedPhysxBox.getActor().equals(actor)).findFirst().orElse(null);
+    public void raycast(Location location, float distance, Consumer<DisplayedPhysxBox> callback) {
+        PhysxMc.physxWorld.raycast(location, distance, actor -> callback.accept(actor != null ? getBox(actor) : null));
     }
 
     /**
@@ -360,7 +407,7 @@ public class DisplayedBoxHolder {
      * @return ワールドにあるDisplaydPhysxBox
      */
     public DisplayedPhysxBox getBox(PxActor actor) {
-        return blockDisplayList.stream().filter(displayedPhysxBox -> displayedPhysxBox.getActor().equals(actor)).findFirst().orElse(null);
+        return PhysxMc.physxWorld.getRegistry().getOwner(actor, DisplayedPhysxBox.class);
     }
 
     /**
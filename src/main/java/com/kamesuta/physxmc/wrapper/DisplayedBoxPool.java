@@ -0,0 +1,110 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxSetting;
+import lombok.Data;
+import org.bukkit.Material;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 使い終わったコインを捨てずに取っておき、次のコインに使い回すためのプール
+ * 払い出しと回収が繰り返されても、剛体の作成・解放やBlockDisplayの生成・削除が起きないようにする
+ * <p>
+ * 取っておく箱はシーンから外し、速度などをリセットして表示を隠しておくこと({@link IntegratedPhysxWorld#parkBox})
+ * メインスレッドからのみ使うこと
+ */
+public class DisplayedBoxPool {
+
+    /**
+     * 使い回せる箱の条件
+     */
+    @Data
+    public static class Key {
+        /**
+         * 表示しているワールド
+         */
+        private final UUID world;
+        /**
+         * 表示しているブロック
+         */
+        private final Material material;
+        /**
+         * 大きさ
+         */
+        private final double scaleX, scaleY, scaleZ;
+        /**
+         * 密度
+         */
+        private final float density;
+
+        public Key(UUID world, Material material, Vector scale, float density) {
+            this.world = world;
+            this.material = material;
+            this.scaleX = scale.getX();
+            this.scaleY = scale.getY();
+            this.scaleZ = scale.getZ();
+            this.density = density;
+        }
+    }
+
+    private final Map<Key, ArrayDeque<DisplayedPhysxBox>> pooled = new HashMap<>();
+
+    /**
+     * 取っておいている箱の数
+     */
+    private int size = 0;
+
+    /**
+     * 取っておいた箱を取り出す
+     *
+     * @param key 条件
+     * @return 箱、なければnull
+     */
+    public DisplayedPhysxBox acquire(Key key) {
+        ArrayDeque<DisplayedPhysxBox> boxes = pooled.get(key);
+        if (boxes == null || boxes.isEmpty())
+            return null;
+        size--;
+        return boxes.pop();
+    }
+
+    /**
+     * 箱を取っておく
+     *
+     * @param key 条件
+     * @param box シーンから外した箱
+     * @return 取っておけたか。上限を超えていればfalse(呼び出し側で破棄すること)
+     */
+    public boolean release(Key key, DisplayedPhysxBox box) {
+        if (size >= PhysxSetting.getCoinPoolSize())
+            return false;
+        pooled.computeIfAbsent(key, k -> new ArrayDeque<>()).push(box);
+        size++;
+        return true;
+    }
+
+    /**
+     * 取っておいている箱を全て取り出す
+     *
+     * @param discard 取り出した箱を破棄するコールバック
+     */
+    public void clear(Consumer<DisplayedPhysxBox> discard) {
+        for (ArrayDeque<DisplayedPhysxBox> boxes : pooled.values()) {
+            boxes.forEach(discard);
+        }
+        pooled.clear();
+        size = 0;
+    }
+
+    /**
+     * 取っておいている箱の数
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -4,21 +4,21 @@ import com.kamesuta.physxmc.PhysxMc;
 import com.kamesuta.physxmc.PhysxSetting;
 import com.kamesuta.physxmc.core.BoxData;
 import com.kamesuta.physxmc.core.PhysxBox;
+import com.kamesuta.physxmc.core.NativeScratch;
+import com.kamesuta.physxmc.core.PoseSnapshot;
 import com.kamesuta.physxmc.utils.ConversionUtility;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.bukkit.Chunk;
+import lombok.Setter;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.entity.BlockDisplay;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
 import org.joml.Matrix4f;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
-import physx.common.PxIDENTITYEnum;
-import physx.common.PxQuat;
 import physx.common.PxTransform;
 import physx.common.PxVec3;
 import physx.extensions.PxRigidBodyExt;
@@ -40,7 +40,10 @@ public class DisplayedPhysxBox extends PhysxBox {
      */
     public List<DisplayData> displayMap = new ArrayList<>();
     
-    private World world;
+    /**
+     * 表示の同期・距離による間引き・地形待ちの状態
+     */
+    private final DisplayedBodyState state;
     
     /**
      * このオブジェクトがコインかどうか
@@ -52,20 +55,33 @@ public class DisplayedPhysxBox extends PhysxBox {
      */
     private boolean isPusher = false;
 
-    public DisplayedPhysxBox(PxPhysics physics, BoxData data, Map<BlockDisplay[], Vector> display) {
+    /**
+     * 使い回す時の条件。プールに入れない箱はnull
+     */
+    @Getter
+    @Setter
+    private DisplayedBoxPool.Key poolKey;
+
+    /**
+     * プールに入れた回数。プールから出した箱は同じオブジェクトのまま別のコインになるので、
+     * 箱への参照を持ち続ける側は覚えた値と比べて、同じコインのままか確かめること
+     */
+    @Getter
+    private int generation = 0;
+
+    public DisplayedPhysxBox(PxPhysics physics, BoxData data, Map<DisplayHandle[], Vector> display) {
         this(physics, data, display, false, false);
     }
 
-    public DisplayedPhysxBox(PxPhysics physics, BoxData data, Map<BlockDisplay[], Vector> display, boolean isCoin) {
+    public DisplayedPhysxBox(PxPhysics physics, BoxData data, Map<DisplayHandle[], Vector> display, boolean isCoin) {
         this(physics, data, display, isCoin, false);
     }
 
-    public DisplayedPhysxBox(PxPhysics physics, BoxData data, Map<BlockDisplay[], Vector> display, boolean isCoin, boolean isPusher) {
+    public DisplayedPhysxBox(PxPhysics physics, BoxData data, Map<DisplayHandle[], Vector> display, boolean isCoin, boolean isPusher) {
         super(physics, isCoin ? coinMaterial : defaultMaterial, data);
 
         display.forEach((blockDisplays, vector) -> this.displayMap.add(new DisplayData(blockDisplays, vector, 0)));
-        BlockDisplay[] firstDisplay = displayMap.get(0).displays;
-        world = firstDisplay[0].getWorld();
+        state = new DisplayedBodyState(getPoseBuffer(), displayMap);
         this.isCoin = isCoin;
         this.isPusher = isPusher;
     }
@@ -85,75 +101,67 @@ public class DisplayedPhysxBox extends PhysxBox {
     }
 
     public void update() {
-        trySwap();
+        state.update();
     }
 
     /**
-     * 物理の箱とBlockDisplayを同期する
+     * 箱の座標空間をセットする。演算中であれば次のfetchResultsまで遅延される
+     *
+     * @param transform 箱の座標空間
      */
-    private void trySwap() {
-        for (DisplayData displayData : displayMap) {
-            BlockDisplay[] displays = displayData.getDisplays();
-            Vector offset = displayData.getOffset();
-            int swapPhase = displayData.getSwapPhase();
-            
-            PxQuat q = getPos().getQ();
-            PxVec3 p = getPos().getP();
-            Location pos = new Location(displays[0].getWorld(), p.getX(), p.getY(), p.getZ());
-
-            // スワップのフェーズ管理 (2ティックかけてスワップが完了する)
-            if (swapPhase == 2) {
-                swap(pos, displays);
-                swapPhase = 0;
-            }
-            if (swapPhase == 1) {
-                preSwap(pos, displays);
-                swapPhase = 2;
-            }
-            // 位置が16マス以上離れていたら次のティックからスワップを開始する
-            if (swapPhase == 0 && displays[0].getLocation().toVector().distance(new Vector(p.getX(), p.getY(), p.getZ())) > 16) {
-                swapPhase = 1;
-            }
+    @Override
+    public void setPos(PxTransform transform) {
+        PhysxMc.physxWorld.runOrDefer(() -> super.setPos(transform));
+    }
 
-            for (BlockDisplay blockDisplay : displays) {
-                Location prev = blockDisplay.getLocation();
+    /**
+     * 箱に力を加える。演算中であれば次のfetchResultsまで遅延される
+     *
+     * @param vec3 箱に加える力
+     */
+    @Override
+    public void addForce(PxVec3 vec3, PxForceModeEnum mode) {
+        PhysxMc.physxWorld.runOrDefer(() -> super.addForce(vec3, mode));
+    }
 
-                Quaternionf boxQuat = new Quaternionf(q.getX(), q.getY(), q.getZ(), q.getW());
-                Transformation transformation = blockDisplay.getTransformation();
-                transformation.getLeftRotation().set(boxQuat);
-                transformation.getTranslation().set(p.getX() - prev.getX(), p.getY() - prev.getY(), p.getZ() - prev.getZ());
-                Matrix4f matrix = ConversionUtility.getTransformationMatrix(transformation);
-                matrix.translate(-.5f + (float) offset.getX(), -.5f + (float) offset.getY(), -.5f + (float) offset.getZ());
-                blockDisplay.setTransformationMatrix(matrix);
-                // なめらかに補完する
-                blockDisplay.setInterpolationDelay(0);
-                blockDisplay.setInterpolationDuration(1);
-                // blockDisplay.teleport(new Location(blockDisplay.getWorld(), p.getX(), p.getY(), p.getZ()));
-            }
-        }
+    /**
+     * 箱に力を加える。演算中であれば次のfetchResultsまで遅延される
+     */
+    @Override
+    public void addForce(float x, float y, float z, PxForceModeEnum mode) {
+        PhysxMc.physxWorld.runOrDefer(() -> super.addForce(x, y, z, mode));
     }
 
     /**
-     * スワップの1ティック前に呼ぶ
-     *
-     * @param pos 新しい位置
+     * 箱がスリープ中(更新停止中)か取得する。このtickのスナップショットから読む
      */
-    private void preSwap(Location pos, BlockDisplay[] display) {
-        display[0].setVisibleByDefault(true);
+    @Override
+    public boolean isSleeping() {
+        return state.isSleeping();
     }
 
     /**
-     * TPの移動が見えないようにスワップする
+     * 箱の姿勢や速度をこのtickのスナップショットから読む
      *
-     * @param pos 新しい位置
+     * @param field 項目({@link PoseSnapshot#PX}など)
+     * @return 値
      */
-    private void swap(Location pos, BlockDisplay[] display) {
-        display[1].setVisibleByDefault(false);
-        display[1].teleport(pos);
+    public float pose(int field) {
+        return state.pose(field);
+    }
 
-        BlockDisplay temp = display[1];
-        display[1] = display[0];
-        display[0] = temp;
+    /**
+     * 箱の速度と角速度を設定する。演算中であれば次のfetchResultsまで遅延される
+     */
+    public void setVelocity(Vector linear, Vector angular) {
+        float lx = (float) linear.getX(), ly = (float) linear.getY(), lz = (float) linear.getZ();
+        float ax = (float) angular.getX(), ay = (float) angular.getY(), az = (float) angular.getZ();
+        PhysxMc.physxWorld.runOrDefer(() -> {
+            try (NativeScratch scratch = NativeScratch.push()) {
+                getActor().setLinearVelocity(scratch.vec3(lx, ly, lz));
+                getActor().setAngularVelocity(scratch.vec3(ax, ay, az));
+            }
+        });
     }
 
     /**
@@ -165,31 +173,7 @@ public class DisplayedPhysxBox extends PhysxBox {
         // コインの場合はコイン専用の投擲力を使用
         double power = isCoin ? PhysxSetting.getCoinThrowPower() : PhysxSetting.getThrowPower();
         Vector3f rot = location.getDirection().clone().multiply(power).toVector3f();
-        PxVec3 force = new PxVec3(rot.x, rot.y, rot.z);
-        addForce(force, PxForceModeEnum.eVELOCITY_CHANGE);
-    }
-
-    /**
-     * 箱の周囲のチャンクを取得
-     *
-     * @return 箱があるチャンクとその8方にあるチャンク
-     */
-    public Collection<Chunk> getSurroundingChunks() {
-        int[] offset = {-1, 0, 1};
-        
-        PxVec3 p = getPos().getP();
-        Location pos = new Location(world, p.getX(), p.getY(), p.getZ());
-        int baseX = pos.getChunk().getX();
-        int baseZ = pos.getChunk().getZ();
-
-        Collection<Chunk> chunksAround = new HashSet<>();
-        for (int x : offset) {
-            for (int z : offset) {
-                Chunk chunk = world.getChunkAt(baseX + x, baseZ + z);
-                chunksAround.add(chunk);
-            }
-        }
-        return chunksAround;
+        addForce(rot.x, rot.y, rot.z, PxForceModeEnum.eVELOCITY_CHANGE);
     }
 
     /**
@@ -198,8 +182,7 @@ public class DisplayedPhysxBox extends PhysxBox {
      * @return
      */
     public Quaternionf getQuat() {
-        PxQuat q = getPos().getQ();
-        return new Quaternionf(q.getX(), q.getY(), q.getZ(), q.getW());
+        return new Quaternionf(pose(PoseSnapshot.QX), pose(PoseSnapshot.QY), pose(PoseSnapshot.QZ), pose(PoseSnapshot.QW));
     }
 
     /**
@@ -208,21 +191,49 @@ public class DisplayedPhysxBox extends PhysxBox {
      * @return location
      */
     public Location getLocation() {
-        PxVec3 vec3 = getPos().getP();
-        PxQuat q = getPos().getQ();
-        Quaternionf boxQuat = new Quaternionf(q.getX(), q.getY(), q.getZ(), q.getW());
+        Quaternionf boxQuat = new Quaternionf(pose(PoseSnapshot.QX), pose(PoseSnapshot.QY), pose(PoseSnapshot.QZ), pose(PoseSnapshot.QW));
         Vector3f dir = ConversionUtility.convertToEulerAngles(boxQuat);
         Vector dir2 = new Vector(dir.x, dir.y, dir.z);
-        Location loc = new Location(world, vec3.getX(), vec3.getY(), vec3.getZ());
+        Location loc = new Location(state.getWorld(), pose(PoseSnapshot.PX), pose(PoseSnapshot.PY), pose(PoseSnapshot.PZ));
         loc.setDirection(dir2);
         return loc;
     }
 
     /**
-     * boxが重力の影響を受けないようにするか変更する
+     * boxが重力の影響を受けないようにするか変更する。演算中であれば次のfetchResultsまで遅延される
      */
     public void makeKinematic(boolean flag) {
-        getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, flag);
+        state.makeKinematic(flag);
+    }
+
+    /**
+     * 足元の地形ができていない間、箱をその場に止めておく。止めるのをやめると元の速度で動き出す
+     *
+     * @param held 止めるかどうか
+     */
+    public void setHeldForTerrain(boolean held) {
+        state.setHeldForTerrain(held);
+    }
+
+    /**
+     * 周囲の地形を読み込んでおくよう登録し、地形ができていなければ箱を止める。毎tick呼ぶこと
+     */
+    public void updateTerrain() {
+        state.updateTerrain();
+    }
+
+    /**
+     * 足元の地形ができるまで止めているか
+     */
+    public boolean isHeldForTerrain() {
+        return state.isHeldForTerrain();
+    }
+
+    /**
+     * 地形を読み込んでおくチャンクの参照
+     */
+    public TerrainResidency.Ticket getResidencyTicket() {
+        return state.getResidencyTicket();
     }
 
     /**
@@ -240,16 +251,34 @@ public class DisplayedPhysxBox extends PhysxBox {
     }
 
     public void moveKinematic(Vector pos, Quaternionf rot) {
-        PxVec3 p = new PxVec3((float) pos.getX(), (float) pos.getY(), (float) pos.getZ());
-
-        PxQuat q = new PxQuat(rot.x, rot.y, rot.z, rot.w);
-        PxTransform transform = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        transform.setP(p);
-        transform.setQ(q);
-        getActor().setKinematicTarget(transform);
-        p.destroy();
-        q.destroy();
-        transform.destroy();
+        float x = (float) pos.getX();
+        float y = (float) pos.getY();
+        float z = (float) pos.getZ();
+        Quaternionf q = new Quaternionf(rot);
+        PhysxMc.physxWorld.runOrDefer(() -> {
+            try (NativeScratch scratch = NativeScratch.push()) {
+                getActor().setKinematicTarget(scratch.transform(x, y, z, q.x, q.y, q.z, q.w));
+            }
+        });
+    }
+
+    /**
+     * プールに入れる前に、箱の状態を作った直後に戻して表示を隠す
+     * 物理側のリセットは{@link IntegratedPhysxWorld#parkBox}が行う
+     */
+    public void resetForReuse() {
+        generation++;
+        state.reset();
+    }
+
+    /**
+     * プールから取り出した箱の表示を新しい位置と回転に置き直して見えるようにする
+     *
+     * @param location 新しい位置
+     * @param quat     新しい回転
+     */
+    public void showAt(Location location, Quaternionf quat) {
+        state.showAt(location, quat);
     }
 
     /**
@@ -257,8 +286,21 @@ public class DisplayedPhysxBox extends PhysxBox {
      * @return
      */
     public boolean isDisplayDead(){
-        BlockDisplay[] display = displayMap.get(0).displays;
-        return display[0].isDead() || display[1].isDead();
+        DisplayHandle[] display = displayMap.get(0).displays;
+        return Arrays.stream(display).anyMatch(DisplayHandle::isDead);
+    }
+
+    /**
+     * 表示部分のDisplayが読み込まれていて使えるかどうか
+     */
+    public boolean isDisplayValid() {
+        for (DisplayData displayData : displayMap) {
+            for (DisplayHandle blockDisplay : displayData.getDisplays()) {
+                if (!blockDisplay.isValid())
+                    return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -273,7 +315,7 @@ public class DisplayedPhysxBox extends PhysxBox {
         
         // 表示部分のスケールを更新
         for (DisplayData displayData : displayMap) {
-            for (BlockDisplay blockDisplay : displayData.getDisplays()) {
+            for (DisplayHandle blockDisplay : displayData.getDisplays()) {
                 Transformation transformation = blockDisplay.getTransformation();
                 transformation.getScale().x = (float) newScale.getX();
                 transformation.getScale().y = (float) newScale.getY();
@@ -291,8 +333,8 @@ public class DisplayedPhysxBox extends PhysxBox {
 
     @AllArgsConstructor
     @Data
-    public class DisplayData{
-        private final BlockDisplay[] displays;
+    public class DisplayData implements DisplayedBodyState.DisplayPart {
+        private final DisplayHandle[] displays;
         private final Vector offset;
         
         /**
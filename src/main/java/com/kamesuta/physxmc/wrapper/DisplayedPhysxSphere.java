@@ -4,21 +4,20 @@ import com.kamesuta.physxmc.PhysxMc;
 import com.kamesuta.physxmc.PhysxSetting;
 import com.kamesuta.physxmc.core.SphereData;
 import com.kamesuta.physxmc.core.PhysxSphere;
+import com.kamesuta.physxmc.core.NativeScratch;
+import com.kamesuta.physxmc.core.PoseSnapshot;
 import com.kamesuta.physxmc.utils.ConversionUtility;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.entity.BlockDisplay;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
 import org.joml.Matrix4f;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
-import physx.common.PxIDENTITYEnum;
-import physx.common.PxQuat;
 import physx.common.PxTransform;
 import physx.common.PxVec3;
 import physx.extensions.PxRigidBodyExt;
@@ -39,19 +38,21 @@ public class DisplayedPhysxSphere extends PhysxSphere {
      */
     public List<DisplayData> displayMap = new ArrayList<>();
     
-    private World world;
+    /**
+     * 表示の同期・距離による間引き・地形待ちの状態
+     */
+    private final DisplayedBodyState state;
     
     /**
      * 球体の半径
      */
     private double radius;
 
-    public DisplayedPhysxSphere(PxPhysics physics, SphereData data, Map<BlockDisplay[], Vector> display, double radius) {
+    public DisplayedPhysxSphere(PxPhysics physics, SphereData data, Map<DisplayHandle[], Vector> display, double radius) {
         super(physics, defaultMaterial, data);
 
         display.forEach((blockDisplays, vector) -> this.displayMap.add(new DisplayData(blockDisplays, vector, 0)));
-        BlockDisplay[] firstDisplay = displayMap.get(0).displays;
-        world = firstDisplay[0].getWorld();
+        state = new DisplayedBodyState(getPoseBuffer(), displayMap);
         this.radius = radius;
     }
 
@@ -63,74 +64,67 @@ public class DisplayedPhysxSphere extends PhysxSphere {
     }
 
     public void update() {
-        trySwap();
+        state.update();
     }
 
     /**
-     * 物理の球体とBlockDisplayを同期する
+     * 球体の座標空間をセットする。演算中であれば次のfetchResultsまで遅延される
+     *
+     * @param transform 球体の座標空間
      */
-    private void trySwap() {
-        for (DisplayData displayData : displayMap) {
-            BlockDisplay[] displays = displayData.getDisplays();
-            Vector offset = displayData.getOffset();
-            int swapPhase = displayData.getSwapPhase();
-            
-            PxQuat q = getPos().getQ();
-            PxVec3 p = getPos().getP();
-            Location pos = new Location(displays[0].getWorld(), p.getX(), p.getY(), p.getZ());
-
-            // スワップのフェーズ管理 (2ティックかけてスワップが完了する)
-            if (swapPhase == 2) {
-                swap(pos, displays);
-                swapPhase = 0;
-            }
-            if (swapPhase == 1) {
-                preSwap(pos, displays);
-                swapPhase = 2;
-            }
-            // 位置が16マス以上離れていたら次のティックからスワップを開始する
-            if (swapPhase == 0 && displays[0].getLocation().toVector().distance(new Vector(p.getX(), p.getY(), p.getZ())) > 16) {
-                swapPhase = 1;
-            }
+    @Override
+    public void setPos(PxTransform transform) {
+        PhysxMc.physxWorld.runOrDefer(() -> super.setPos(transform));
+    }
 
-            for (BlockDisplay blockDisplay : displays) {
-                Location prev = blockDisplay.getLocation();
+    /**
+     * 球体に力を加える。演算中であれば次のfetchResultsまで遅延される
+     *
+     * @param vec3 球体に加える力
+     */
+    @Override
+    public void addForce(PxVec3 vec3, PxForceModeEnum mode) {
+        PhysxMc.physxWorld.runOrDefer(() -> super.addForce(vec3, mode));
+    }
 
-                Quaternionf boxQuat = new Quaternionf(q.getX(), q.getY(), q.getZ(), q.getW());
-                Transformation transformation = blockDisplay.getTransformation();
-                transformation.getLeftRotation().set(boxQuat);
-                transformation.getTranslation().set(p.getX() - prev.getX(), p.getY() - prev.getY(), p.getZ() - prev.getZ());
-                Matrix4f matrix = ConversionUtility.getTransformationMatrix(transformation);
-                matrix.translate(-.5f + (float) offset.getX(), -.5f + (float) offset.getY(), -.5f + (float) offset.getZ());
-                blockDisplay.setTransformationMatrix(matrix);
-                // なめらかに補完する
-                blockDisplay.setInterpolationDelay(0);
-                blockDisplay.setInterpolationDuration(1);
-            }
-        }
+    /**
+     * 球体に力を加える。演算中であれば次のfetchResultsまで遅延される
+     */
+    @Override
+    public void addForce(float x, float y, float z, PxForceModeEnum mode) {
+        PhysxMc.physxWorld.runOrDefer(() -> super.addForce(x, y, z, mode));
     }
 
     /**
-     * スワップの1ティック前に呼ぶ
-     *
-     * @param pos 新しい位置
+     * 球体がスリープ中(更新停止中)か取得する。このtickのスナップショットから読む
      */
-    private void preSwap(Location pos, BlockDisplay[] display) {
-        display[0].setVisibleByDefault(true);
+    @Override
+    public boolean isSleeping() {
+        return state.isSleeping();
     }
 
     /**
-     * TPの移動が見えないようにスワップする
+     * 球体の姿勢や速度をこのtickのスナップショットから読む
      *
-     * @param pos 新しい位置
+     * @param field 項目({@link PoseSnapshot#PX}など)
+     * @return 値
      */
-    private void swap(Location pos, BlockDisplay[] display) {
-        display[1].setVisibleByDefault(false);
-        display[1].teleport(pos);
+    public float pose(int field) {
+        return state.pose(field);
+    }
 
-        BlockDisplay temp = display[1];
-        display[1] = display[0];
-        display[0] = temp;
+    /**
+     * 球体の速度と角速度を設定する。演算中であれば次のfetchResultsまで遅延される
+     */
+    public void setVelocity(Vector linear, Vector angular) {
+        float lx = (float) linear.getX(), ly = (float) linear.getY(), lz = (float) linear.getZ();
+        float ax = (float) angular.getX(), ay = (float) angular.getY(), az = (float) angular.getZ();
+        PhysxMc.physxWorld.runOrDefer(() -> {
+            try (NativeScratch scratch = NativeScratch.push()) {
+                getActor().setLinearVelocity(scratch.vec3(lx, ly, lz));
+                getActor().setAngularVelocity(scratch.vec3(ax, ay, az));
+            }
+        });
     }
 
     /**
@@ -141,31 +135,7 @@ public class DisplayedPhysxSphere extends PhysxSphere {
     public void throwSphere(Location location) {
         double power = PhysxSetting.getThrowPower();
         Vector3f rot = location.getDirection().clone().multiply(power).toVector3f();
-        PxVec3 force = new PxVec3(rot.x, rot.y, rot.z);
-        addForce(force, PxForceModeEnum.eVELOCITY_CHANGE);
-    }
-
-    /**
-     * 球体の周囲のチャンクを取得
-     *
-     * @return 球体があるチャンクとその8方にあるチャンク
-     */
-    public Collection<Chunk> getSurroundingChunks() {
-        int[] offset = {-1, 0, 1};
-        
-        PxVec3 p = getPos().getP();
-        Location pos = new Location(world, p.getX(), p.getY(), p.getZ());
-        int baseX = pos.getChunk().getX();
-        int baseZ = pos.getChunk().getZ();
-
-        Collection<Chunk> chunksAround = new HashSet<>();
-        for (int x : offset) {
-            for (int z : offset) {
-                Chunk chunk = world.getChunkAt(baseX + x, baseZ + z);
-                chunksAround.add(chunk);
-            }
-        }
-        return chunksAround;
+        addForce(rot.x, rot.y, rot.z, PxForceModeEnum.eVELOCITY_CHANGE);
     }
 
     /**
@@ -174,8 +144,7 @@ public class DisplayedPhysxSphere extends PhysxSphere {
      * @return
      */
     public Quaternionf getQuat() {
-        PxQuat q = getPos().getQ();
-        return new Quaternionf(q.getX(), q.getY(), q.getZ(), q.getW());
+        return new Quaternionf(pose(PoseSnapshot.QX), pose(PoseSnapshot.QY), pose(PoseSnapshot.QZ), pose(PoseSnapshot.QW));
     }
 
     /**
@@ -184,41 +153,66 @@ public class DisplayedPhysxSphere extends PhysxSphere {
      * @return location
      */
     public Location getLocation() {
-        PxVec3 vec3 = getPos().getP();
-        PxQuat q = getPos().getQ();
-        Quaternionf boxQuat = new Quaternionf(q.getX(), q.getY(), q.getZ(), q.getW());
+        Quaternionf boxQuat = new Quaternionf(pose(PoseSnapshot.QX), pose(PoseSnapshot.QY), pose(PoseSnapshot.QZ), pose(PoseSnapshot.QW));
         Vector3f dir = ConversionUtility.convertToEulerAngles(boxQuat);
         Vector dir2 = new Vector(dir.x, dir.y, dir.z);
-        Location loc = new Location(world, vec3.getX(), vec3.getY(), vec3.getZ());
+        Location loc = new Location(state.getWorld(), pose(PoseSnapshot.PX), pose(PoseSnapshot.PY), pose(PoseSnapshot.PZ));
         loc.setDirection(dir2);
         return loc;
     }
 
     /**
-     * 球体をキネマティックに設定する
+     * 球体をキネマティックに設定する。演算中であれば次のfetchResultsまで遅延される
      */
     public void makeKinematic(boolean flag) {
-        PxRigidBodyFlags flags = getActor().getRigidBodyFlags();
-        getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, flag);
+        state.makeKinematic(flag);
+    }
+
+    /**
+     * 足元の地形ができていない間、球体をその場に止めておく。止めるのをやめると元の速度で動き出す
+     *
+     * @param held 止めるかどうか
+     */
+    public void setHeldForTerrain(boolean held) {
+        state.setHeldForTerrain(held);
+    }
+
+    /**
+     * 周囲の地形を読み込んでおくよう登録し、地形ができていなければ球体を止める。毎tick呼ぶこと
+     */
+    public void updateTerrain() {
+        state.updateTerrain();
+    }
+
+    /**
+     * 足元の地形ができるまで止めているか
+     */
+    public boolean isHeldForTerrain() {
+        return state.isHeldForTerrain();
+    }
+
+    /**
+     * 地形を読み込んでおくチャンクの参照
+     */
+    public TerrainResidency.Ticket getResidencyTicket() {
+        return state.getResidencyTicket();
     }
 
     /**
      * 球体をキネマティックモードで移動させる
      */
     public void moveKinematic(Location location) {
-        PxTransform transform = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        transform.setP(new PxVec3((float) location.getX(), (float) location.getY(), (float) location.getZ()));
-        setPos(transform);
+        float x = (float) location.getX(), y = (float) location.getY(), z = (float) location.getZ();
+        PhysxMc.physxWorld.runOrDefer(() -> super.setPos(x, y, z, 0f, 0f, 0f, 1f));
     }
 
     /**
      * 球体をキネマティックモードで移動させる
      */
     public void moveKinematic(Vector pos, Quaternionf rot) {
-        PxTransform transform = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        transform.setP(new PxVec3((float) pos.getX(), (float) pos.getY(), (float) pos.getZ()));
-        transform.setQ(new PxQuat(rot.x, rot.y, rot.z, rot.w));
-        setPos(transform);
+        float x = (float) pos.getX(), y = (float) pos.getY(), z = (float) pos.getZ();
+        float qx = rot.x, qy = rot.y, qz = rot.z, qw = rot.w;
+        PhysxMc.physxWorld.runOrDefer(() -> super.setPos(x, y, z, qx, qy, qz, qw));
     }
 
     /**
@@ -240,7 +234,7 @@ public class DisplayedPhysxSphere extends PhysxSphere {
         
         // 表示部分のスケールを更新
         for (DisplayData displayData : displayMap) {
-            for (BlockDisplay blockDisplay : displayData.getDisplays()) {
+            for (DisplayHandle blockDisplay : displayData.getDisplays()) {
                 Transformation transformation = blockDisplay.getTransformation();
                 transformation.getScale().x = (float) newScale.getX();
                 transformation.getScale().y = (float) newScale.getY();
@@ -255,8 +249,8 @@ public class DisplayedPhysxSphere extends PhysxSphere {
 
     @AllArgsConstructor
     @Data
-    public class DisplayData{
-        private final BlockDisplay[] displays;
+    public class DisplayData implements DisplayedBodyState.DisplayPart {
+        private final DisplayHandle[] displays;
         private final Vector offset;
         
         /**
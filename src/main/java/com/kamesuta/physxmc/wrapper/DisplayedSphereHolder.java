@@ -1,22 +1,23 @@
 package com.kamesuta.physxmc.wrapper;
 
 import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.PhysxSetting;
 import com.kamesuta.physxmc.core.SphereData;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.entity.BlockDisplay;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
-import org.jetbrains.annotations.Nullable;
 import org.joml.Quaternionf;
+import org.joml.Vector3f;
 import physx.common.PxQuat;
 import physx.common.PxVec3;
 import physx.geometry.PxSphereGeometry;
 import physx.physics.PxActor;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * OverWorld内の全てのDisplayedPhysxSphereを保持するクラス
@@ -38,14 +39,15 @@ public class DisplayedSphereHolder {
         Quaternionf quat = new Quaternionf()
                 .rotateY((float) -Math.toRadians(location.getYaw()))
                 .rotateX((float) Math.toRadians(location.getPitch()));
-        Map<BlockDisplay[], Vector> displayMap = new HashMap<>();
+        Map<DisplayHandle[], Vector> displayMap = new HashMap<>();
         Map<PxSphereGeometry, PxVec3> sphereGeometries = new HashMap<>();
 
         // 球体の表示用BlockDisplayを作成
-        BlockDisplay[] display = new BlockDisplay[]{
-            createDisplay(material, location, radius, quat), 
-            createDisplay(material, location, radius, quat)
-        };
+        // 古い方式では、テレポートを隠すために2つBlockDisplayを作って入れ替える
+        DisplayHandle[] display = new DisplayHandle[PhysxSetting.isSwapDisplays() ? 2 : 1];
+        for (int i = 0; i < display.length; i++) {
+            display[i] = createDisplay(material, location, radius, quat);
+        }
         displayMap.put(display, new Vector(0, 0, 0));
         
         // 球体のジオメトリを作成
@@ -71,22 +73,17 @@ public class DisplayedSphereHolder {
      * @param location  場所
      * @param radius    半径
      * @param boxQuat   回転
-     * @return　作ったBlockDisplay
+     * @return　作った表示
      */
-    private static BlockDisplay createDisplay(Material material, Location location, double radius, Quaternionf boxQuat) {
-        BlockDisplay blockDisplay = location.getWorld().spawn(location, BlockDisplay.class);
-        blockDisplay.setBlock(material.createBlockData());
-        Transformation transformation = blockDisplay.getTransformation();
-        transformation.getTranslation().add(-0.5f, -0.5f, -0.5f);
+    private static DisplayHandle createDisplay(Material material, Location location, double radius, Quaternionf boxQuat) {
         // 球体は半径の2倍がスケール
         float scale = (float) (radius * 2);
-        transformation.getScale().x = scale;
-        transformation.getScale().y = scale;
-        transformation.getScale().z = scale;
-        transformation.getLeftRotation().set(boxQuat);
-        blockDisplay.setTransformation(transformation);
-        blockDisplay.setGravity(false);
-        return blockDisplay;
+        Transformation transformation = new Transformation(
+                new Vector3f(-0.5f, -0.5f, -0.5f),
+                new Quaternionf(boxQuat),
+                new Vector3f(scale, scale, scale),
+                new Quaternionf());
+        return DisplayHandle.spawn(location, material.createBlockData(), transformation);
     }
 
     /**
@@ -96,11 +93,8 @@ public class DisplayedSphereHolder {
         destroyUnusableSphere();
         for (DisplayedPhysxSphere displayedPhysxSphere : sphereDisplayList) {
             displayedPhysxSphere.update();
-
-            if (!displayedPhysxSphere.isSleeping())
-                PhysxMc.physxWorld.registerChunksToLoadNextTick(displayedPhysxSphere.getSurroundingChunks());
+            displayedPhysxSphere.updateTerrain();
         }
-        PhysxMc.physxWorld.setReadyToUpdateChunks();
     }
 
     /**
@@ -113,7 +107,7 @@ public class DisplayedSphereHolder {
 
             if (sphere.getLocation().y() < -128 || sphere.isDisplayDead()) {
                 for (DisplayedPhysxSphere.DisplayData data : sphere.displayMap){
-                    for (BlockDisplay blockDisplay : data.getDisplays()) {
+                    for (DisplayHandle blockDisplay : data.getDisplays()) {
                         blockDisplay.remove();
                     }
                 }
@@ -132,7 +126,7 @@ public class DisplayedSphereHolder {
         int destroyedCount = sphereDisplayList.size();
         sphereDisplayList.forEach(sphere -> {
             for (DisplayedPhysxSphere.DisplayData data : sphere.displayMap){
-                for (BlockDisplay blockDisplay : data.getDisplays()) {
+                for (DisplayHandle blockDisplay : data.getDisplays()) {
                     blockDisplay.remove();
                 }
             }
@@ -149,7 +143,7 @@ public class DisplayedSphereHolder {
             return;
 
         for (DisplayedPhysxSphere.DisplayData data : sphere.displayMap){
-            for (BlockDisplay blockDisplay : data.getDisplays()) {
+            for (DisplayHandle blockDisplay : data.getDisplays()) {
                 blockDisplay.remove();
             }
         }
@@ -174,33 +168,28 @@ public class DisplayedSphereHolder {
                 Vector direction = sphereLocation.toVector().subtract(location.toVector()).normalize();
                 double power = strength * 10 / (distance + 1);
                 
-                PxVec3 force = new PxVec3(
+                sphere.addForce(
                     (float) (direction.getX() * power), 
                     (float) (direction.getY() * power + 5), 
-                    (float) (direction.getZ() * power)
-                );
-                sphere.addForce(force, physx.physics.PxForceModeEnum.eVELOCITY_CHANGE);
+                    (float) (direction.getZ() * power),
+                    physx.physics.PxForceModeEnum.eVELOCITY_CHANGE);
             }
         }
     }
 
     /**
      * レイキャストで球体を取得
+     * 専用スレッドモードでは結果は後のtickに届く
      */
-    @Nullable
-    public DisplayedPhysxSphere raycast(Location location, float distance) {
-        return PhysxMc.physxWorld.raycastSphere(location, distance);
+    public void raycast(Location location, float distance, Consumer<DisplayedPhysxSphere> callback) {
+        PhysxMc.physxWorld.raycastSphere(location, distance, callback);
     }
 
     /**
      * PxActorから球体を取得
      */
     public DisplayedPhysxSphere getSphere(PxActor actor) {
-        for (DisplayedPhysxSphere sphere : sphereDisplayList) {
-            if (sphere.getActor().equals(actor))
-                return sphere;
-        }
-        return null;
+        return PhysxMc.physxWorld.getRegistry().getOwner(actor, DisplayedPhysxSphere.class);
     }
 
     /**
@@ -0,0 +1,106 @@
+package com.kamesuta.physxmc.wrapper;
+
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.BlockDisplay;
+import org.bukkit.util.Transformation;
+import org.joml.Matrix4f;
+
+/**
+ * 実体のBlockDisplayエンティティで表示する{@link DisplayHandle}
+ */
+public class EntityDisplayHandle implements DisplayHandle {
+
+    /**
+     * 表示しているエンティティ
+     */
+    @Getter
+    private final BlockDisplay entity;
+
+    public EntityDisplayHandle(BlockDisplay entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * BlockDisplayを生成する
+     *
+     * @param location       場所
+     * @param blockData      表示するブロック
+     * @param transformation 変換
+     * @return 作った表示
+     */
+    public static EntityDisplayHandle spawn(Location location, BlockData blockData, Transformation transformation) {
+        BlockDisplay blockDisplay = location.getWorld().spawn(location, BlockDisplay.class);
+        blockDisplay.setBlock(blockData);
+        blockDisplay.setTransformation(transformation);
+        blockDisplay.setGravity(false);
+        return new EntityDisplayHandle(blockDisplay);
+    }
+
+    @Override
+    public World getWorld() {
+        return entity.getWorld();
+    }
+
+    @Override
+    public Location getLocation() {
+        return entity.getLocation();
+    }
+
+    @Override
+    public void teleport(Location location) {
+        entity.teleport(location);
+    }
+
+    @Override
+    public BlockData getBlock() {
+        return entity.getBlock();
+    }
+
+    @Override
+    public Transformation getTransformation() {
+        return entity.getTransformation();
+    }
+
+    @Override
+    public void setTransformation(Transformation transformation) {
+        entity.setTransformation(transformation);
+    }
+
+    @Override
+    public void setTransformationMatrix(Matrix4f matrix) {
+        entity.setTransformationMatrix(matrix);
+    }
+
+    @Override
+    public void setInterpolationDelay(int ticks) {
+        entity.setInterpolationDelay(ticks);
+    }
+
+    @Override
+    public void setInterpolationDuration(int ticks) {
+        entity.setInterpolationDuration(ticks);
+    }
+
+    @Override
+    public void setVisibleByDefault(boolean visible) {
+        entity.setVisibleByDefault(visible);
+    }
+
+    @Override
+    public boolean isDead() {
+        return entity.isDead();
+    }
+
+    @Override
+    public boolean isValid() {
+        return entity.isValid();
+    }
+
+    @Override
+    public void remove() {
+        entity.remove();
+    }
+}
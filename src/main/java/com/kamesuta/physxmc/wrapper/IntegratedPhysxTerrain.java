@@ -1,88 +1,134 @@
 package com.kamesuta.physxmc.wrapper;
 
-import com.kamesuta.physxmc.core.PhysxTerrain;
-import org.bukkit.Chunk;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
-import physx.common.PxIDENTITYEnum;
-import physx.common.PxTransform;
-import physx.common.PxVec3;
-import physx.geometry.PxBoxGeometry;
-import physx.physics.*;
-
-public class IntegratedPhysxTerrain extends PhysxTerrain {
-    
+import lombok.Getter;
+
+import java.util.function.Consumer;
+
+/**
+ * チャンク1つ分の地形。セクション(16x16x16ブロック)ごとに別々のアクターを持つ
+ * ブロックが変わった時は、変わったセクションのアクターだけを入れ替える
+ */
+public class IntegratedPhysxTerrain {
+
+    @Getter
+    private final int chunkX;
+    @Getter
+    private final int chunkZ;
+
+    /**
+     * セクションごとの地形(下から順)。当たり判定のあるブロックが表面に出ていないセクションはnull
+     */
+    private final TerrainSection[] sections;
+
+    /**
+     * セクションごとの地形を作った時のボクセルの内容のハッシュ({@link SectionVoxels#getContentHash()})
+     */
+    private final long[] sectionHashes;
+
+    public IntegratedPhysxTerrain(int chunkX, int chunkZ, int sectionCount) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.sections = new TerrainSection[sectionCount];
+        this.sectionHashes = new long[sectionCount];
+    }
+
+    /**
+     * セクションの数(空のセクションも含む)
+     */
+    public int getSectionCount() {
+        return sections.length;
+    }
+
     /**
-     * チャンクの形に応じた地形を作る
+     * セクションの地形を取得する
      *
-     * @param physics
-     * @param defaultMaterial 　地形のマテリアル
-     * @param chunk           チャンク
-     * @return 地形のオブジェクト
+     * @param index セクションの番号
+     * @return 地形、空ならnull
      */
-    public IntegratedPhysxTerrain(PxPhysics physics, PxMaterial defaultMaterial, Chunk chunk) {
-        super(null, null);
-        // create default simulation shape flags
-        PxShapeFlags defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value));
-        // create a few temporary objects used during setup
-        PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
-        PxVec3 tmpVec = new PxVec3(chunk.getX() * 16, 0f, chunk.getZ() * 16);
-        tmpPose.setP(tmpVec);
-        tmpVec.destroy();
-        PxFilterData tmpFilterData = new PxFilterData(1, 1, 0, 0);
-        PxRigidStatic terrain = physics.createRigidStatic(tmpPose);
-        terrain.setName(name);
-        PxBoxGeometry terrainGeometry = new PxBoxGeometry(0.5f, 0.5f, 0.5f);   // PxBoxGeometry uses half-sizes
-
-
-        final int minY = chunk.getWorld().getMinHeight();
-        final int maxY = chunk.getWorld().getMaxHeight();
-        for (int x = 0; x <= 15; ++x) {
-            for (int y = minY; y <= maxY; ++y) {
-                for (int z = 0; z <= 15; ++z) {
-                    Block block = chunk.getBlock(x, y, z);
-                    if (!areNeighboursEmpty(chunk.getWorld(), block) || block.getBoundingBox().getVolume() == 0)
-                        continue;
-
-                    PxShape shape = physics.createShape(terrainGeometry, defaultMaterial, true, defaultShapeFlags);
-                    shape.setSimulationFilterData(tmpFilterData);
-                    PxVec3 tmpVec2 = new PxVec3(x + 0.5f, y + 0.5f, z + 0.5f);
-                    tmpPose.setP(tmpVec2);
-                    tmpVec2.destroy();
-                    shape.setLocalPose(tmpPose);
-                    terrain.attachShape(shape);
-                    terrainShapes.add(shape);
-                }
-            }
-        }
+    public TerrainSection getSection(int index) {
+        return sections[index];
+    }
 
-        defaultShapeFlags.destroy();
-        tmpFilterData.destroy();
-        tmpPose.destroy();
-        terrainGeometry.destroy();
+    /**
+     * セクションの地形を入れ替える。シーンへの追加・削除は呼び出し側が行う
+     *
+     * @param index   セクションの番号
+     * @param section 新しい地形(空ならnull)
+     * @param contentHash 新しい地形を作った時のボクセルの内容のハッシュ
+     * @return 古い地形、なければnull
+     */
+    public TerrainSection setSection(int index, TerrainSection section, long contentHash) {
+        TerrainSection old = sections[index];
+        sections[index] = section;
+        sectionHashes[index] = contentHash;
+        return old;
+    }
 
-        actor = terrain;
+    /**
+     * セクションごとのボクセルの内容のハッシュのコピーを取得する
+     */
+    public long[] copySectionHashes() {
+        return sectionHashes.clone();
     }
 
     /**
-     * ブロックの隣に空洞があるか判定する
+     * 空でない全てのセクションに対して処理を行う
+     */
+    public void forEachSection(Consumer<TerrainSection> consumer) {
+        for (TerrainSection section : sections) {
+            if (section != null)
+                consumer.accept(section);
+        }
+    }
+
+    /**
+     * ブロックが丸ごとの当たり判定を持つか(地形を作った時点の情報で答える。表面に出ているブロックがないセクションは情報を持たないのでfalse)
+     * ブロックが変わった時に、地形の形が変わらない変更なら作り直さないために使う
      *
-     * @param level 世界
-     * @param pos   座標
-     * @return ブロックの隣に空洞があるかどうか
+     * @param x チャンク内のx(0~15)
+     * @param y チャンクの一番下からのy
+     * @param z チャンク内のz(0~15)
+     */
+    public boolean isSolid(int x, int y, int z) {
+        int index = y >> 4;
+        if (index < 0 || index >= sections.length || sections[index] == null)
+            return false;
+        return sections[index].getOccupancy().get(x, y & 15, z);
+    }
+
+    /**
+     * 空でないセクションの数
+     */
+    public int getActiveSectionCount() {
+        int count = 0;
+        for (TerrainSection section : sections) {
+            if (section != null)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * 地形の形状の数
+     */
+    public int getShapeCount() {
+        int count = 0;
+        for (TerrainSection section : sections) {
+            if (section != null)
+                count += section.getShapeCount();
+        }
+        return count;
+    }
+
+    /**
+     * ブロックごとに箱を作っていた場合の形状の数(比較用)
      */
-    private static boolean areNeighboursEmpty(World level, Block pos) {
-        // 地面の上面は必ず物理オブジェクトとして生成する（コインなどの着地を改善）
-        if (pos.getY() < level.getMaxHeight() - 1 && pos.getRelative(BlockFace.UP).isEmpty()) {
-            return true;
+    public int getPerBlockShapeCount() {
+        int count = 0;
+        for (TerrainSection section : sections) {
+            if (section != null)
+                count += section.getPerBlockShapeCount();
         }
-        
-        return pos.getY() >= level.getMaxHeight() || pos.getY() <= level.getMinHeight()
-                || (pos.getY() > level.getMinHeight() && pos.getRelative(BlockFace.DOWN).isEmpty())
-                || pos.getRelative(BlockFace.NORTH).isEmpty()
-                || pos.getRelative(BlockFace.EAST).isEmpty()
-                || pos.getRelative(BlockFace.SOUTH).isEmpty()
-                || pos.getRelative(BlockFace.WEST).isEmpty();
+        return count;
     }
 }
@@ -1,19 +1,28 @@
 package com.kamesuta.physxmc.wrapper;
 
+import com.kamesuta.physxmc.PhysxMc;
+import com.kamesuta.physxmc.PhysxSetting;
+import com.kamesuta.physxmc.core.ActorRegistry;
+import com.kamesuta.physxmc.core.ActorType;
 import com.kamesuta.physxmc.core.BoxData;
+import com.kamesuta.physxmc.core.NativeScratch;
 import com.kamesuta.physxmc.core.SphereData;
 import com.kamesuta.physxmc.core.PhysxTerrain;
 import com.kamesuta.physxmc.core.PhysxWorld;
+import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
-import org.bukkit.entity.BlockDisplay;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.util.Vector;
 import physx.common.PxQuat;
 import physx.common.PxVec3;
 import physx.geometry.PxBoxGeometry;
 import physx.physics.*;
 
+import java.io.File;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static com.kamesuta.physxmc.core.Physx.defaultMaterial;
 import static com.kamesuta.physxmc.core.Physx.physics;
@@ -29,45 +38,151 @@ public class IntegratedPhysxWorld extends PhysxWorld {
     private final Map<Chunk, IntegratedPhysxTerrain> chunkTerrainMap = new HashMap<>();
 
     /**
-     * 次のtickで保持しておかなくてはいけない現在アクティブな物理オブジェクトが存在するチャンク
+     * 次の秒でリロードしておかなくてはいけない、構成ブロックに変更が加わったチャンクとそのセクション(ビットiがセクションi)
      */
-    private final Set<Chunk> chunksToLoadNextTick = new HashSet<>();
+    private final Map<Chunk, Long> sectionsToReloadNextSecond = new HashMap<>();
+
+    private int tickCount = 0;
 
     /**
-     * 次の秒でリロードしておかなくてはいけない、構成ブロックに変更が加わったチャンク
+     * 物体ごとの参照カウントで地形を読み込んでおくチャンクを管理する
      */
-    private final Set<Chunk> chunksToReloadNextSecond = new HashSet<>();
+    private final TerrainResidency residency = new TerrainResidency(this::loadChunkAsTerrain, chunk -> unloadChunkAsTerrain(chunk, false));
 
-    private boolean readyToUpdateChunks = false;
-    private int tickCount = 0;
+    /**
+     * 地形をワーカースレッドで組み立てる
+     */
+    private TerrainBuilder terrainBuilder;
 
     /**
-     * チャンクごとに物理エンジンの地形を作る
+     * シーンから外した地形を取っておくキャッシュ
+     */
+    private final TerrainCache terrainCache = new TerrainCache(terrain -> runOrDefer(() -> terrain.forEachSection(TerrainSection::release)));
+
+    /**
+     * チャンクごとに物理エンジンの地形を作る。地形はワーカースレッドで組み立てられ、出来上がった後のtickでシーンに追加される
+     * キャッシュに取っておいた地形があればすぐにシーンに戻し、ボクセルの内容が変わったセクションだけを作り直す
      *
      * @param chunk
      */
     public void loadChunkAsTerrain(Chunk chunk) {
-        if (chunkTerrainMap.containsKey(chunk))
+        if (chunkTerrainMap.containsKey(chunk) || getTerrainBuilder().isPending(chunk))
+            return;
+
+        IntegratedPhysxTerrain cached = terrainCache.take(chunk);
+        if (cached != null) {
+            chunkTerrainMap.put(chunk, cached);
+            cached.forEachSection(section -> runOrDefer(() -> scene.addActor(section.getActor())));
+            getTerrainBuilder().request(chunk, TerrainBuilder.ALL_SECTIONS, cached.copySectionHashes());
             return;
+        }
 
-        IntegratedPhysxTerrain terrain = new IntegratedPhysxTerrain(physics, defaultMaterial, chunk);
-        scene.addActor(terrain.getActor());
-        chunkTerrainMap.put(chunk, terrain);
+        getTerrainBuilder().request(chunk, TerrainBuilder.ALL_SECTIONS, null);
     }
 
     /**
-     * チャンクごとに存在する地形を破壊する
+     * チャンクごとに存在する地形をシーンから外す。外した地形はキャッシュに取っておく
      *
      * @param chunk　チャンク
      */
     public void unloadChunkAsTerrain(Chunk chunk, boolean wakeOnLostTouch) {
-        if (chunkTerrainMap.get(chunk) == null)
+        if (terrainBuilder != null)
+            terrainBuilder.cancel(chunk);
+
+        IntegratedPhysxTerrain terrain = chunkTerrainMap.remove(chunk);
+        if (terrain == null)
             return;
 
-        scene.removeActor(chunkTerrainMap.get(chunk).getActor(), wakeOnLostTouch);
-        chunkTerrainMap.get(chunk).release();
+        terrain.forEachSection(section -> runOrDefer(() -> scene.removeActor(section.getActor(), wakeOnLostTouch)));
+        terrainCache.put(chunk, terrain);
+    }
+
+    private void removeSection(TerrainSection section, boolean wakeOnLostTouch) {
+        runOrDefer(() -> {
+            scene.removeActor(section.getActor(), wakeOnLostTouch);
+            section.release();
+        });
+    }
+
+    /**
+     * 組み立てが終わった地形をシーンに追加する。リロードの場合は組み立て直したセクションだけを古い地形と入れ替える
+     * 入れ替えたセクションに触れている物体だけが起こされる
+     */
+    private void addBuiltTerrains() {
+        if (terrainBuilder == null)
+            return;
+
+        terrainBuilder.pollCompleted((chunk, sectionMask, sections, hashes) -> {
+            IntegratedPhysxTerrain terrain = chunkTerrainMap.get(chunk);
+            boolean newTerrain = terrain == null;
+            if (newTerrain) {
+                terrain = new IntegratedPhysxTerrain(chunk.getX(), chunk.getZ(), sections.length);
+                chunkTerrainMap.put(chunk, terrain);
+            }
+
+            for (int i = 0; i < sections.length && i < Long.SIZE; i++) {
+                if ((sectionMask & (1L << i)) == 0)
+                    continue;
+
+                TerrainSection section = sections[i];
+                TerrainSection old = terrain.setSection(i, section, hashes[i]);
+                if (old != null)
+                    removeSection(old, true);
+                if (section != null)
+                    runOrDefer(() -> scene.addActor(section.getActor()));
+            }
+
+            if (PhysxSetting.isDebugMode()) {
+                if (newTerrain)
+                    Bukkit.getLogger().info("チャンク(" + chunk.getX() + ", " + chunk.getZ() + ")の地形: セクション数 " + terrain.getActiveSectionCount() + ", 形状数 " + terrain.getPerBlockShapeCount() + " → " + terrain.getShapeCount());
+                else if (sectionMask != 0)
+                    Bukkit.getLogger().info("チャンク(" + chunk.getX() + ", " + chunk.getZ() + ")の地形: " + Long.bitCount(sectionMask) + "セクションを作り直しました");
+            }
+        });
+    }
 
-        chunkTerrainMap.remove(chunk);
+    private TerrainBuilder getTerrainBuilder() {
+        if (terrainBuilder == null) {
+            TerrainMeshCache meshCache = null;
+            if (PhysxSetting.isTerrainTriangleMesh())
+                meshCache = new TerrainMeshCache(new File(PhysxMc.getPlugin(PhysxMc.class).getDataFolder(), "terrain-cache"));
+            terrainBuilder = new TerrainBuilder(physics, defaultMaterial, PhysxSetting.getTerrainBuildThreads(), meshCache);
+        }
+        return terrainBuilder;
+    }
+
+    /**
+     * チャンクの地形を取得する
+     *
+     * @param chunk チャンク
+     * @return 地形、読み込まれていなければnull
+     */
+    public IntegratedPhysxTerrain getTerrain(Chunk chunk) {
+        return chunkTerrainMap.get(chunk);
+    }
+
+    /**
+     * シーンから外した地形を取っておくキャッシュを取得する
+     */
+    public TerrainCache getTerrainCache() {
+        return terrainCache;
+    }
+
+    /**
+     * 読み込まれている地形全体の形状数の統計を取得する
+     *
+     * @return [チャンク数, 形状数, ブロックごとに箱を作った場合の形状数, セクション数]
+     */
+    public int[] getTerrainShapeStats() {
+        int shapes = 0;
+        int perBlockShapes = 0;
+        int sections = 0;
+        for (IntegratedPhysxTerrain terrain : chunkTerrainMap.values()) {
+            shapes += terrain.getShapeCount();
+            perBlockShapes += terrain.getPerBlockShapeCount();
+            sections += terrain.getActiveSectionCount();
+        }
+        return new int[]{chunkTerrainMap.size(), shapes, perBlockShapes, sections};
     }
 
     /**
@@ -77,17 +192,26 @@ public class IntegratedPhysxWorld extends PhysxWorld {
         return chunkTerrainMap.get(chunk) != null;
     }
 
+
     /**
      * シーンオブジェクトを破壊する
      */
     @Override
     public void destroyScene() {
         if (scene != null) {
-            chunkTerrainMap.forEach((chunk, physxTerrain) -> {
-                scene.removeActor(physxTerrain.getActor());
-                physxTerrain.release();
-            });
+            stopSimulationThread();
+            fetchResults();
+            if (terrainBuilder != null) {
+                terrainBuilder.shutdown();
+                terrainBuilder = null;
+            }
+            chunkTerrainMap.forEach((chunk, physxTerrain) -> physxTerrain.forEachSection(section -> {
+                scene.removeActor(section.getActor());
+                section.release();
+            }));
             chunkTerrainMap.clear();
+            terrainCache.clear();
+            residency.clear();
 
             scene.release();
         }
@@ -99,7 +223,7 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      * @param display       表示用のBlockDisplay
      * @return 追加した箱オブジェクト
      */
-    public DisplayedPhysxBox addBox(BoxData data, Map<BlockDisplay[], Vector> display) {
+    public DisplayedPhysxBox addBox(BoxData data, Map<DisplayHandle[], Vector> display) {
         return addBox(data, display, false);
     }
 
@@ -110,7 +234,7 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      * @param isCoin        コインかどうか
      * @return 追加した箱オブジェクト
      */
-    public DisplayedPhysxBox addBox(BoxData data, Map<BlockDisplay[], Vector> display, boolean isCoin) {
+    public DisplayedPhysxBox addBox(BoxData data, Map<DisplayHandle[], Vector> display, boolean isCoin) {
         return addBox(data, display, isCoin, false);
     }
 
@@ -122,7 +246,7 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      * @param isPusher      プッシャーの一部かどうか
      * @return 追加した箱オブジェクト
      */
-    public DisplayedPhysxBox addBox(BoxData data, Map<BlockDisplay[], Vector> display, boolean isCoin, boolean isPusher) {
+    public DisplayedPhysxBox addBox(BoxData data, Map<DisplayHandle[], Vector> display, boolean isCoin, boolean isPusher) {
         try {
             org.bukkit.Bukkit.getLogger().info("デバッグ: DisplayedPhysxBox作成開始");
             
@@ -149,7 +273,13 @@ public class IntegratedPhysxWorld extends PhysxWorld {
             
             org.bukkit.Bukkit.getLogger().info("デバッグ: シーンにアクター追加中...");
             
-            scene.addActor(box.getActor());
+            ActorType type = isPusher ? ActorType.PUSHER : (isCoin ? ActorType.COIN : ActorType.BOX);
+            box.setHandle(registry.register(box.getActor(), type, box));
+            runOrDefer(() -> {
+                box.setCollisionLayer(type);
+                scene.addActor(box.getActor());
+                trackPose(box.getPoseBuffer());
+            });
             org.bukkit.Bukkit.getLogger().info("DisplayedPhysxBoxをシーンに追加しました");
             
             org.bukkit.Bukkit.getLogger().info("デバッグ: シーン追加完了、正常に終了中...");
@@ -170,9 +300,13 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      * @param radius        半径
      * @return 追加した球体オブジェクト
      */
-    public DisplayedPhysxSphere addSphere(SphereData data, Map<BlockDisplay[], Vector> display, double radius) {
+    public DisplayedPhysxSphere addSphere(SphereData data, Map<DisplayHandle[], Vector> display, double radius) {
         DisplayedPhysxSphere sphere = new DisplayedPhysxSphere(physics, data, display, radius);
-        scene.addActor(sphere.getActor());
+        sphere.setHandle(registry.register(sphere.getActor(), ActorType.SPHERE, sphere));
+        runOrDefer(() -> {
+            scene.addActor(sphere.getActor());
+            trackPose(sphere.getPoseBuffer());
+        });
         return sphere;
     }
 
@@ -182,8 +316,71 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      * @param box 削除する箱オブジェクト
      */
     public void removeBox(DisplayedPhysxBox box) {
-        scene.removeActor(box.getActor());
-        box.release();
+        residency.release(box.getResidencyTicket());
+        registry.unregister(box.getHandle());
+        box.setHandle(ActorRegistry.NO_HANDLE);
+        runOrDefer(() -> {
+            untrackPose(box.getPoseBuffer());
+            scene.removeActor(box.getActor());
+            box.release();
+        });
+    }
+
+    /**
+     * 箱を解放せずにシーンから外し、使い回せるように速度などをリセットする
+     *
+     * @param box 外す箱オブジェクト
+     */
+    public void parkBox(DisplayedPhysxBox box) {
+        residency.release(box.getResidencyTicket());
+        registry.unregister(box.getHandle());
+        box.setHandle(ActorRegistry.NO_HANDLE);
+        box.resetForReuse();
+        runOrDefer(() -> {
+            untrackPose(box.getPoseBuffer());
+            box.getActor().setRigidBodyFlag(PxRigidBodyFlagEnum.eKINEMATIC, false);
+            try (NativeScratch scratch = NativeScratch.push()) {
+                PxVec3 zero = scratch.vec3(0f, 0f, 0f);
+                box.getActor().setLinearVelocity(zero);
+                box.getActor().setAngularVelocity(zero);
+            }
+            scene.removeActor(box.getActor());
+        });
+    }
+
+    /**
+     * {@link #parkBox}で外した箱を、新しい位置と回転でシーンに戻す
+     *
+     * @param box  戻す箱オブジェクト
+     * @param type アクターの種類
+     * @param pos  位置(このメソッドで破棄する)
+     * @param quat 回転(このメソッドで破棄する)
+     */
+    public void unparkBox(DisplayedPhysxBox box, ActorType type, PxVec3 pos, PxQuat quat) {
+        // 専用スレッドモードでも、シーンに戻る前から新しい位置を起きた状態で読めるようにしておく
+        box.getPoseBuffer().seed(pos, quat);
+        box.setHandle(registry.register(box.getActor(), type, box));
+        runOrDefer(() -> {
+            try (NativeScratch scratch = NativeScratch.push()) {
+                box.getActor().setGlobalPose(scratch.transform(pos.getX(), pos.getY(), pos.getZ(), quat.getX(), quat.getY(), quat.getZ(), quat.getW()));
+            }
+            pos.destroy();
+            quat.destroy();
+            box.setCollisionLayer(type);
+            scene.addActor(box.getActor());
+            // 外す前に眠っていた箱は眠ったまま戻るので、起こしてから書き写す
+            box.getActor().wakeUp();
+            trackPose(box.getPoseBuffer());
+        });
+    }
+
+    /**
+     * {@link #parkBox}で外したままの箱を解放する
+     *
+     * @param box 解放する箱オブジェクト
+     */
+    public void releaseParkedBox(DisplayedPhysxBox box) {
+        runOrDefer(box::release);
     }
 
     /**
@@ -192,103 +389,175 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      * @param sphere 削除する球体オブジェクト
      */
     public void removeSphere(DisplayedPhysxSphere sphere) {
-        scene.removeActor(sphere.getActor());
-        sphere.release();
+        residency.release(sphere.getResidencyTicket());
+        registry.unregister(sphere.getHandle());
+        sphere.setHandle(ActorRegistry.NO_HANDLE);
+        runOrDefer(() -> {
+            untrackPose(sphere.getPoseBuffer());
+            scene.removeActor(sphere.getActor());
+            sphere.release();
+        });
     }
 
     /**
-     * 次のtickで地形をロードしておきたいチャンクを登録する（これに登録されていないチャンクは次のtickでアンロードされる）
+     * 物体の位置から地形を読み込んでおくチャンクを更新する。物体がチャンクをまたいだ時や眠った・起きた時だけ参照を付け替える
      *
-     * @param chunks 地形をロードしておきたいチャンク
+     * @param ticket   物体の参照
+     * @param world    ワールド
+     * @param x        物体のx
+     * @param z        物体のz
+     * @param sleeping 眠っているか(眠っていれば自分のいるチャンクだけを読み込んでおく)
      */
-    public void registerChunksToLoadNextTick(Collection<Chunk> chunks) {
-        chunksToLoadNextTick.addAll(chunks);
+    public void updateResidency(TerrainResidency.Ticket ticket, World world, double x, double z, boolean sleeping) {
+        residency.update(ticket, world, x, z, sleeping);
     }
 
     /**
-     * 次のtickでロードするチャンクの登録が終わったことを登録する
+     * 物体が参照しているチャンクの地形が全てシーンに入っているか(読み込み中・組み立て中のチャンクがあればfalse)
+     *
+     * @param ticket 物体の参照
      */
-    public void setReadyToUpdateChunks() {
-        readyToUpdateChunks = true;
+    public boolean isTerrainReady(TerrainResidency.Ticket ticket) {
+        for (int i = 0; i < ticket.size(); i++) {
+            Chunk chunk = ticket.get(i);
+            if (chunk == null || !chunkTerrainMap.containsKey(chunk))
+                return false;
+        }
+        return true;
     }
 
     /**
-     * 次の秒で地形をリロードしておきたい変更の加わったチャンクを登録する
+     * 次の秒で地形をリロードしておきたい変更の加わったチャンクを登録する(全てのセクションを作り直す)
      */
     public void registerChunksToReloadNextSecond(Chunk chunk) {
-        chunksToReloadNextSecond.add(chunk);
+        sectionsToReloadNextSecond.merge(chunk, TerrainBuilder.ALL_SECTIONS, (a, b) -> a | b);
     }
 
-    @Override
-    public void tick() {
-        super.tick();
-        updateActiveChunks();
+    /**
+     * 次の秒で地形をリロードしておきたい変更の加わったブロックを登録する
+     * ブロックのあるセクションに加えて、ブロックが境界に接している隣のセクション(上下・隣のチャンク)も作り直す
+     *
+     * @param world ワールド
+     * @param x     ブロックのx
+     * @param y     ブロックのy
+     * @param z     ブロックのz
+     */
+    public void registerBlockToReloadNextSecond(World world, int x, int y, int z) {
+        int minY = world.getMinHeight();
+        if (y < minY || y >= world.getMaxHeight())
+            return;
+        if (isOccupancyUnchanged(world, x, y, z))
+            return;
 
-        tickCount++;
-        if (tickCount % 20 == 0)
-            reloadModifiedChunks();
+        int section = (y - minY) >> 4;
+        int sectionCount = (world.getMaxHeight() - minY) >> 4;
+        long sectionBit = 1L << section;
+        long mask = sectionBit;
+        if ((y & 15) == 0 && section > 0)
+            mask |= sectionBit >>> 1;
+        if ((y & 15) == 15 && section < sectionCount - 1)
+            mask |= sectionBit << 1;
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        registerSectionsToReloadNextSecond(world, chunkX, chunkZ, mask);
+        if ((x & 15) == 0)
+            registerSectionsToReloadNextSecond(world, chunkX - 1, chunkZ, sectionBit);
+        if ((x & 15) == 15)
+            registerSectionsToReloadNextSecond(world, chunkX + 1, chunkZ, sectionBit);
+        if ((z & 15) == 0)
+            registerSectionsToReloadNextSecond(world, chunkX, chunkZ - 1, sectionBit);
+        if ((z & 15) == 15)
+            registerSectionsToReloadNextSecond(world, chunkX, chunkZ + 1, sectionBit);
     }
 
     /**
-     * アクティブなオブジェクト付近のロードしておくチャンクをアップデートする。毎tick実行することで高速で動くオブジェクトに対応する
+     * 丸ごとの当たり判定を持つブロックが、別の丸ごとの当たり判定を持つブロックに変わっただけか(石が鉱石や土に変わった時など)
+     * その場合は占有ビットセットも周りの面の出方も変わらないので、地形を作り直さなくてよい
      */
-    private void updateActiveChunks() {
-        if (!readyToUpdateChunks)
-            return;
+    private boolean isOccupancyUnchanged(World world, int x, int y, int z) {
+        if (!world.isChunkLoaded(x >> 4, z >> 4))
+            return false;
+        Chunk chunk = world.getChunkAt(x >> 4, z >> 4);
+        // 組み立て中の地形は変わる前のブロックを読んでいるかもしれないので、作り直しを頼んでおく
+        if (getTerrainBuilder().isPending(chunk))
+            return false;
+        IntegratedPhysxTerrain terrain = chunkTerrainMap.get(chunk);
+        if (terrain == null || !terrain.isSolid(x & 15, y - world.getMinHeight(), z & 15))
+            return false;
+        BlockData blockData = world.getBlockAt(x, y, z).getBlockData();
+        BlockCollisionTemplate template = BlockCollisionTemplate.forType(blockData.getMaterial());
+        if (template == null)
+            template = BlockCollisionTemplate.of(blockData);
+        return template.isFull();
+    }
 
-        if (chunksToLoadNextTick.isEmpty())
+    private void registerSectionsToReloadNextSecond(World world, int chunkX, int chunkZ, long sectionMask) {
+        // 読み込まれていないチャンクには地形もないので、同期で読み込まないようにする
+        if (!world.isChunkLoaded(chunkX, chunkZ))
             return;
+        sectionsToReloadNextSecond.merge(world.getChunkAt(chunkX, chunkZ), sectionMask, (a, b) -> a | b);
+    }
 
-        for (Chunk chunk : chunksToLoadNextTick) {
-            loadChunkAsTerrain(chunk);
-        }
-        Collection<Chunk> chunksToUnload = new ArrayList<>();
-        for (Map.Entry<Chunk, IntegratedPhysxTerrain> chunkPhysxTerrainEntry : chunkTerrainMap.entrySet()) {
-            Chunk chunk = chunkPhysxTerrainEntry.getKey();
-            if (!chunksToLoadNextTick.contains(chunk))
-                chunksToUnload.add(chunk);
-        }
-        for (Chunk chunk : chunksToUnload) {
-            unloadChunkAsTerrain(chunk, false);
-        }
-        chunksToLoadNextTick.clear();
-        readyToUpdateChunks = false;
+    /**
+     * 演算結果を受け取った後に地形をアップデートする。地形の追加・削除は演算中でないこのタイミングでのみ行う
+     * ワーカースレッドで組み立てが終わった地形もここでシーンに追加する
+     * 専用スレッドモードでは地形の追加・削除は演算スレッドのキューに送られ、演算の合間に反映される
+     */
+    @Override
+    public void tick() {
+        super.tick();
+        addBuiltTerrains();
+        residency.tick(PhysxSetting.getTerrainUnloadDelayTicks());
+
+        tickCount++;
+        if (tickCount % 20 == 0)
+            reloadModifiedChunks();
     }
 
     /**
-     * 構成ブロックに変更が加わったチャンクを(まとめて)リロードする
+     * 構成ブロックに変更が加わったセクションを(まとめて)リロードする
+     * 新しい地形ができるまでは古い地形を残しておき、出来上がった時に変わったセクションだけを入れ替える
      */
     private void reloadModifiedChunks() {
-        for (Chunk chunk : chunksToReloadNextSecond) {
-            if (!isChunkLoadedAsTerrain(chunk))
+        for (Map.Entry<Chunk, Long> entry : sectionsToReloadNextSecond.entrySet()) {
+            Chunk chunk = entry.getKey();
+            if (!isChunkLoadedAsTerrain(chunk) && !getTerrainBuilder().isPending(chunk))
                 continue;
 
-            unloadChunkAsTerrain(chunk, true);
-            loadChunkAsTerrain(chunk);
+            IntegratedPhysxTerrain terrain = chunkTerrainMap.get(chunk);
+            getTerrainBuilder().request(chunk, entry.getValue(), terrain != null ? terrain.copySectionHashes() : null);
         }
-        chunksToReloadNextSecond.clear();
+        sectionsToReloadNextSecond.clear();
     }
 
     /**
-     * Raycastして動的オブジェクトを検索する
+     * Raycastして動的オブジェクトを検索する。演算中に呼んだ場合は直前のfetchResults時点の状態に対して検索する
+     * 専用スレッドモードでは演算スレッドで検索し、結果は後のtickでメインスレッドから渡す(メインスレッドは待たない)
      *
      * @param location 始点
      * @param distance 距離
-     * @return 見つかった最初の動的オブジェクト
+     * @param callback 見つかった最初の動的オブジェクト(なければnull)を受け取るコールバック
      */
-    public PxRigidActor raycast(Location location, float distance) {
-        PxVec3 origin = new PxVec3((float) location.x(), (float) location.y(), (float) location.z());
+    public void raycast(Location location, float distance, Consumer<PxRigidActor> callback) {
+        float ox = (float) location.x();
+        float oy = (float) location.y();
+        float oz = (float) location.z();
         Vector unitDir = location.getDirection();
-        PxVec3 pxUnitDir = new PxVec3((float) unitDir.getX(), (float) unitDir.getY(), (float) unitDir.getZ());
-        PxRaycastBuffer10 raycastHit = new PxRaycastBuffer10();
-        PxHitFlags hitFlags = new PxHitFlags((short) PxHitFlagEnum.eDEFAULT.value);
-        PxQueryFilterData filterData = new PxQueryFilterData(new PxQueryFlags((short) PxQueryFlagEnum.eDYNAMIC.value));
-        boolean isHit = scene.raycast(origin, pxUnitDir, distance, raycastHit, hitFlags, filterData);
-        origin.destroy();
-        pxUnitDir.destroy();
-        if (!isHit)
-            return null;
-        return raycastHit.getAnyHit(0).getActor();
+        float dx = (float) unitDir.getX();
+        float dy = (float) unitDir.getY();
+        float dz = (float) unitDir.getZ();
+        query(() -> raycast(ox, oy, oz, dx, dy, dz, distance), callback);
+    }
+
+    private PxRigidActor raycast(float ox, float oy, float oz, float dx, float dy, float dz, float distance) {
+        try (NativeScratch scratch = NativeScratch.push()) {
+            PxRaycastBuffer10 raycastHit = scratch.raycastBuffer();
+            boolean isHit = scene.raycast(scratch.vec3(ox, oy, oz), scratch.vec3(dx, dy, dz), distance, raycastHit, scratch.defaultHitFlags(), scratch.dynamicFilterData());
+            if (!isHit)
+                return null;
+            return raycastHit.getAnyHit(0).getActor();
+        }
     }
 
     /**
@@ -296,14 +565,9 @@ public class IntegratedPhysxWorld extends PhysxWorld {
      *
      * @param location 始点
      * @param distance 距離
-     * @return 見つかった最初の球体
+     * @param callback 見つかった最初の球体(なければnull)を受け取るコールバック
      */
-    public DisplayedPhysxSphere raycastSphere(Location location, float distance) {
-        PxRigidActor actor = raycast(location, distance);
-        if (actor == null)
-            return null;
-        
-        // 球体のホルダーから該当する球体を検索
-        return com.kamesuta.physxmc.PhysxMc.displayedSphereHolder.getSphere(actor);
+    public void raycastSphere(Location location, float distance, Consumer<DisplayedPhysxSphere> callback) {
+        raycast(location, distance, actor -> callback.accept(actor != null ? registry.getOwner(actor, DisplayedPhysxSphere.class) : null));
     }
 }
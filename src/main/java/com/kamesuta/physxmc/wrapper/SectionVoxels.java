@@ -0,0 +1,224 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.core.VoxelOccupancy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * セクション(16x16x16ブロック)の地形を作るためのボクセルの情報
+ * セクション内の空いているブロックと1ブロック丸ごとの固体の占有ビットセット、周囲1ブロック分の面ごとの空いているブロックのビット、
+ * 半端な形のブロック(ハーフブロックや階段など)の一覧、その内容のハッシュを持つ
+ * 表面に出ているかどうかはワード単位のビット演算でまとめて求める
+ * <p>
+ * 空いているブロックとは1ブロック丸ごとの当たり判定を持たず、隣のブロックの面が見えるブロック(空気、草、水、半端な形のブロックなど)
+ */
+public class SectionVoxels {
+
+    /**
+     * セクションの一辺のブロック数
+     */
+    public static final int SIZE = VoxelOccupancy.SIZE;
+
+    /**
+     * セクション内の空いているブロック
+     */
+    private final VoxelOccupancy open = new VoxelOccupancy();
+
+    /**
+     * セクションの外側の面の空いているブロック。ビットの並びは{@link VoxelOccupancy#exposed}を参照
+     */
+    private final long[] below = new long[4], above = new long[4];
+    private final long[] north = new long[SIZE], south = new long[SIZE];
+    private final long[] west = new long[VoxelOccupancy.WORDS], east = new long[VoxelOccupancy.WORDS];
+
+    /**
+     * 1ブロック丸ごとの当たり判定があるかどうか
+     */
+    @Getter
+    private final VoxelOccupancy solid = new VoxelOccupancy();
+
+    /**
+     * 1ブロック丸ごとの当たり判定があって表面に出ているかどうか
+     */
+    @Getter
+    private VoxelOccupancy exposed = new VoxelOccupancy();
+
+    /**
+     * 周りに関係なく表面に出ているものとして扱うブロック(ワールドの一番下の層の固体のブロック)
+     * 箱の地形では必ず箱を作り、メッシュの地形では全ての面を作る
+     */
+    @Getter
+    private final VoxelOccupancy forced = new VoxelOccupancy();
+
+    /**
+     * 半端な形のブロック
+     */
+    @Getter
+    private final List<PartialBlock> partialBlocks = new ArrayList<>();
+
+    /**
+     * セクションの一番下のy
+     */
+    @Getter
+    private final int baseY;
+
+    /**
+     * ワールドの一番下のセクションか
+     */
+    @Getter
+    private final boolean bottom;
+
+    /**
+     * 地形の形に関わる内容のハッシュ。同じなら作られる地形も同じ
+     */
+    @Getter
+    private long contentHash;
+
+    @Getter
+    private boolean empty = true;
+
+    private SectionVoxels(int baseY, boolean bottom) {
+        this.baseY = baseY;
+        this.bottom = bottom;
+    }
+
+    /**
+     * スナップショットからセクションのボクセルを読み取る。ワーカースレッドから呼んでもよい
+     *
+     * @param snapshot     チャンクのスナップショット
+     * @param sectionIndex セクションの番号
+     * @return ボクセル
+     */
+    public static SectionVoxels capture(TerrainSnapshot snapshot, int sectionIndex) {
+        final int minY = snapshot.getMinY();
+        final int maxY = snapshot.getMaxY();
+        SectionVoxels voxels = new SectionVoxels(minY + sectionIndex * SIZE, sectionIndex == 0);
+
+        // 空気だけのセクションはブロックを読まずに飛ばす
+        if (snapshot.isSectionEmpty(sectionIndex)) {
+            voxels.open.fill();
+            voxels.contentHash = voxels.solid.hash(sectionIndex);
+            return voxels;
+        }
+
+        // セクション内
+        for (int y = 0; y < SIZE; y++) {
+            int worldY = voxels.baseY + y;
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    BlockCollisionTemplate template = snapshot.getTemplate(x, worldY, z);
+                    if (template.isFull()) {
+                        voxels.solid.set(x, y, z, true);
+                        voxels.empty = false;
+                        continue;
+                    }
+                    voxels.open.set(x, y, z, true);
+                    if (!template.isEmpty()) {
+                        voxels.partialBlocks.add(new PartialBlock(x, y, z, template));
+                        voxels.empty = false;
+                    }
+                }
+            }
+        }
+        if (voxels.empty) {
+            voxels.contentHash = voxels.solid.hash(sectionIndex);
+            return voxels;
+        }
+
+        // 上下のセクションとの境界。ワールドの上下の外側は空いているものとして扱わない
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                long bit = 1L << VoxelOccupancy.bitIndex(x, z);
+                if (voxels.baseY - 1 >= minY && snapshot.isOpen(x, voxels.baseY - 1, z))
+                    voxels.below[z >> 2] |= bit;
+                if (voxels.baseY + SIZE < maxY && snapshot.isOpen(x, voxels.baseY + SIZE, z))
+                    voxels.above[z >> 2] |= bit;
+            }
+        }
+
+        // 四方のチャンクとの境界
+        for (int y = 0; y < SIZE; y++) {
+            int worldY = voxels.baseY + y;
+            for (int i = 0; i < SIZE; i++) {
+                if (snapshot.isOpen(i, worldY, -1))
+                    voxels.north[y] |= 1L << i;
+                if (snapshot.isOpen(i, worldY, SIZE))
+                    voxels.south[y] |= 1L << (48 + i);
+                if (snapshot.isOpen(-1, worldY, i))
+                    voxels.west[VoxelOccupancy.wordIndex(y, i)] |= 1L << VoxelOccupancy.bitIndex(0, i);
+                if (snapshot.isOpen(SIZE, worldY, i))
+                    voxels.east[VoxelOccupancy.wordIndex(y, i)] |= 1L << VoxelOccupancy.bitIndex(SIZE - 1, i);
+            }
+        }
+
+        voxels.exposed = voxels.solid.exposed(voxels.open, voxels.below, voxels.above, voxels.north, voxels.south, voxels.west, voxels.east);
+        // 地面の上面は必ず物理オブジェクトとして生成する（コインなどの着地を改善）
+        if (voxels.bottom) {
+            for (int row = 0; row < 4; row++) {
+                voxels.forced.setWord(row, voxels.solid.getWord(row));
+                voxels.exposed.setWord(row, voxels.exposed.getWord(row) | voxels.forced.getWord(row));
+            }
+        }
+
+        long hash = voxels.open.hash(sectionIndex);
+        hash = hash(hash, voxels.below);
+        hash = hash(hash, voxels.above);
+        hash = hash(hash, voxels.north);
+        hash = hash(hash, voxels.south);
+        hash = hash(hash, voxels.west);
+        hash = hash(hash, voxels.east);
+        for (PartialBlock block : voxels.partialBlocks) {
+            hash = (hash ^ (((long) block.getTemplate().hashCode() << 12) | (block.getY() << 8) | (block.getZ() << 4) | block.getX())) * 0x100000001b3L;
+            hash ^= hash >>> 29;
+        }
+        voxels.contentHash = voxels.solid.hash(hash);
+        return voxels;
+    }
+
+    /**
+     * セクション内のブロックが表面に出ているか(上下四方のどれかが空いているか)
+     */
+    public boolean isExposed(int x, int y, int z) {
+        return exposed.get(x, y, z);
+    }
+
+    /**
+     * 周囲1ブロック分を含めて、その位置が空いているか判定する(セクションの外側に出てよいのは1つの軸だけ)
+     */
+    public boolean isOpen(int x, int y, int z) {
+        if (y < 0)
+            return (below[z >> 2] & (1L << VoxelOccupancy.bitIndex(x, z))) != 0;
+        if (y >= SIZE)
+            return (above[z >> 2] & (1L << VoxelOccupancy.bitIndex(x, z))) != 0;
+        if (z < 0)
+            return (north[y] & (1L << x)) != 0;
+        if (z >= SIZE)
+            return (south[y] & (1L << (48 + x))) != 0;
+        if (x < 0)
+            return (west[VoxelOccupancy.wordIndex(y, z)] & (1L << VoxelOccupancy.bitIndex(0, z))) != 0;
+        if (x >= SIZE)
+            return (east[VoxelOccupancy.wordIndex(y, z)] & (1L << VoxelOccupancy.bitIndex(SIZE - 1, z))) != 0;
+        return open.get(x, y, z);
+    }
+
+    /**
+     * 半端な形のブロック
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PartialBlock {
+        private final int x, y, z;
+        private final BlockCollisionTemplate template;
+    }
+
+    private static long hash(long hash, long[] words) {
+        for (long word : words) {
+            hash = (hash ^ word) * 0x100000001b3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+}
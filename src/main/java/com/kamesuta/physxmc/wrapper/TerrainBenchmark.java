@@ -0,0 +1,129 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.core.ActorType;
+import com.kamesuta.physxmc.core.CollisionLayers;
+import com.kamesuta.physxmc.core.VoxelOccupancy;
+import lombok.Getter;
+import physx.common.PxIDENTITYEnum;
+import physx.common.PxTransform;
+import physx.common.PxVec3;
+import physx.geometry.PxBoxGeometry;
+import physx.physics.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 地形の作り方ごとの作成時間・形状数・メモリを比べるベンチマーク
+ * 表面のブロックごとに箱を作る方法と、貪欲法でまとめた箱を作る方法(今の地形)を比べる。
+ * どちらも最初にセクションのボクセル(占有ビットセット)を読み取るので、その読み取りの時間も別に測る。読み取りは地形の作り方の1つではない
+ * 作った地形はシーンに追加せずに破棄する。ワーカースレッドから呼ぶこと
+ */
+public class TerrainBenchmark {
+
+    @Getter
+    private int sections = 0;
+    @Getter
+    private long perBlockNanos = 0;
+    @Getter
+    private int perBlockShapes = 0;
+    @Getter
+    private long greedyNanos = 0;
+    @Getter
+    private int greedyShapes = 0;
+    /**
+     * ボクセルの読み取りの時間(上の2つの時間にも含まれる)
+     */
+    @Getter
+    private long captureNanos = 0;
+    /**
+     * 読み取った占有ビットセットの大きさ
+     */
+    @Getter
+    private int captureBytes = 0;
+
+    /**
+     * ベンチマークを行う
+     *
+     * @param physics
+     * @param material  地形のマテリアル
+     * @param snapshots チャンクのスナップショット
+     * @return 結果
+     */
+    public static TerrainBenchmark run(PxPhysics physics, PxMaterial material, List<TerrainSnapshot> snapshots) {
+        TerrainBenchmark result = new TerrainBenchmark();
+        for (TerrainSnapshot snapshot : snapshots) {
+            for (int i = 0; i < snapshot.getSectionCount(); i++) {
+                // ボクセル(占有ビットセット)を読み取る。どちらの作り方でも最初に行う
+                long start = System.nanoTime();
+                SectionVoxels voxels = SectionVoxels.capture(snapshot, i);
+                result.captureNanos += System.nanoTime() - start;
+                if (voxels.isEmpty())
+                    continue;
+                result.sections++;
+                result.captureBytes += VoxelOccupancy.WORDS * Long.BYTES;
+
+                // 貪欲法でまとめた箱を作る(ボクセルの読み取りの時間も含める)
+                long voxelNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                TerrainSection section = TerrainSection.build(physics, material, voxels, snapshot.getChunkX(), snapshot.getChunkZ(), i);
+                result.greedyNanos += System.nanoTime() - start + voxelNanos;
+                if (section != null) {
+                    result.greedyShapes += section.getShapeCount();
+                    section.release();
+                }
+
+                // 表面のブロックごとに箱を作る
+                start = System.nanoTime();
+                result.perBlockShapes += buildPerBlock(physics, material, voxels, snapshot.getChunkX(), snapshot.getChunkZ());
+                result.perBlockNanos += System.nanoTime() - start + voxelNanos;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 表面に出ているブロックごとに1つの箱を作って破棄する(以前の地形の作り方)
+     *
+     * @return 作った形状の数
+     */
+    private static int buildPerBlock(PxPhysics physics, PxMaterial material, SectionVoxels voxels, int chunkX, int chunkZ) {
+        PxShapeFlags defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value));
+        PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
+        PxVec3 tmpVec = new PxVec3(chunkX << 4, voxels.getBaseY(), chunkZ << 4);
+        tmpPose.setP(tmpVec);
+        PxFilterData tmpFilterData = CollisionLayers.createFilterData(ActorType.TERRAIN);
+        PxBoxGeometry geometry = new PxBoxGeometry(0.5f, 0.5f, 0.5f);
+        PxRigidStatic actor = physics.createRigidStatic(tmpPose);
+
+        List<PxShape> shapes = new ArrayList<>();
+        VoxelOccupancy solid = voxels.getSolid();
+        for (int y = 0; y < SectionVoxels.SIZE; y++) {
+            for (int z = 0; z < SectionVoxels.SIZE; z++) {
+                for (int x = 0; x < SectionVoxels.SIZE; x++) {
+                    if (!solid.get(x, y, z) || !voxels.isExposed(x, y, z))
+                        continue;
+
+                    PxShape shape = physics.createShape(geometry, material, true, defaultShapeFlags);
+                    shape.setSimulationFilterData(tmpFilterData);
+                    tmpVec.setX(x + 0.5f);
+                    tmpVec.setY(y + 0.5f);
+                    tmpVec.setZ(z + 0.5f);
+                    tmpPose.setP(tmpVec);
+                    shape.setLocalPose(tmpPose);
+                    actor.attachShape(shape);
+                    shapes.add(shape);
+                }
+            }
+        }
+
+        actor.release();
+        shapes.forEach(PxShape::release);
+        geometry.destroy();
+        defaultShapeFlags.destroy();
+        tmpFilterData.destroy();
+        tmpPose.destroy();
+        tmpVec.destroy();
+        return shapes.size();
+    }
+}
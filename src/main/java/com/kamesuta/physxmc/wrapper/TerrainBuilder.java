@@ -0,0 +1,216 @@
+package com.kamesuta.physxmc.wrapper;
+
+import lombok.AllArgsConstructor;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import physx.physics.PxMaterial;
+import physx.physics.PxPhysics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * チャンクの地形をワーカースレッドで組み立てるクラス
+ * メインスレッドではスナップショットを取るだけで、ボクセルの解析と形状の作成はワーカーで行う。
+ * 出来上がった地形は{@link #pollCompleted}でメインスレッドに受け渡し、シーンへの追加は呼び出し側が行う
+ */
+public class TerrainBuilder {
+
+    /**
+     * 全てのセクションを表すマスク
+     */
+    public static final long ALL_SECTIONS = -1L;
+
+    private final PxPhysics physics;
+    private final PxMaterial material;
+    private final ExecutorService executor;
+
+    /**
+     * 三角形メッシュで地形を作る場合のクッキング済みメッシュのキャッシュ、箱で作る場合はnull
+     */
+    private final TerrainMeshCache meshCache;
+
+    /**
+     * 組み立て中のチャンクと、その依頼(メインスレッドからのみ触る)
+     */
+    private final Map<Chunk, Pending> pending = new HashMap<>();
+
+    /**
+     * 組み立てが終わった地形
+     */
+    private final Queue<Result> completed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 同じtick内で取ったスナップショット(四方のチャンクの分を使い回す)
+     */
+    private final Map<Chunk, ChunkSnapshot> snapshotCache = new HashMap<>();
+
+    private int nextBuildId = 0;
+
+    public TerrainBuilder(PxPhysics physics, PxMaterial material, int threads, TerrainMeshCache meshCache) {
+        this.physics = physics;
+        this.material = material;
+        this.meshCache = meshCache;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "PhysxMc-Terrain-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * チャンクの地形の組み立てを依頼する。既に依頼中なら組み立てるセクションをまとめて依頼し直し、古い依頼の結果は捨てる
+     * 今ある地形のハッシュを渡すと、ボクセルの内容が変わっていないセクションは組み立てない
+     *
+     * @param chunk          チャンク
+     * @param sectionMask    組み立てるセクション(ビットiがセクションi)
+     * @param expectedHashes 今ある地形のセクションごとのハッシュ、地形がなければnull
+     */
+    public void request(Chunk chunk, long sectionMask, long[] expectedHashes) {
+        Pending previous = pending.get(chunk);
+        if (previous != null)
+            sectionMask |= previous.sectionMask;
+
+        TerrainSnapshot snapshot = TerrainSnapshot.capture(chunk, snapshotCache);
+        int buildId = nextBuildId++;
+        long mask = sectionMask;
+        pending.put(chunk, new Pending(buildId, mask));
+        executor.execute(() -> {
+            TerrainSection[] sections = new TerrainSection[snapshot.getSectionCount()];
+            long[] hashes = new long[sections.length];
+            long changedMask = 0;
+            try {
+                for (int i = 0; i < sections.length && i < Long.SIZE; i++) {
+                    if ((mask & (1L << i)) == 0)
+                        continue;
+
+                    SectionVoxels voxels = SectionVoxels.capture(snapshot, i);
+                    hashes[i] = voxels.getContentHash();
+                    if (expectedHashes != null && i < expectedHashes.length && expectedHashes[i] == hashes[i])
+                        continue;
+
+                    if (meshCache != null)
+                        sections[i] = TerrainSection.buildMesh(physics, material, voxels, snapshot.getChunkX(), snapshot.getChunkZ(), i, meshCache);
+                    else
+                        sections[i] = TerrainSection.build(physics, material, voxels, snapshot.getChunkX(), snapshot.getChunkZ(), i);
+                    changedMask |= 1L << i;
+                }
+                completed.add(new Result(chunk, buildId, changedMask, sections, hashes));
+            } catch (Throwable e) {
+                Logger.getLogger("PhysxMc").log(Level.SEVERE, "チャンク(" + chunk.getX() + ", " + chunk.getZ() + ")の地形の組み立てに失敗しました", e);
+                release(sections);
+                completed.add(new Result(chunk, buildId, 0, null, null));
+            }
+        });
+    }
+
+    /**
+     * 依頼を取り消す。組み立て中の地形は出来上がり次第破棄される
+     *
+     * @param chunk チャンク
+     */
+    public void cancel(Chunk chunk) {
+        pending.remove(chunk);
+    }
+
+    /**
+     * チャンクの地形を組み立て中か
+     */
+    public boolean isPending(Chunk chunk) {
+        return pending.containsKey(chunk);
+    }
+
+    /**
+     * 組み立てが終わった地形を受け取る。取り消されたり新しい依頼で上書きされたりした結果は破棄する。メインスレッドから呼ぶこと
+     *
+     * @param consumer 組み立てが終わった地形を受け取る
+     */
+    public void pollCompleted(BuildConsumer consumer) {
+        snapshotCache.clear();
+
+        Result result;
+        while ((result = completed.poll()) != null) {
+            Pending request = pending.get(result.chunk);
+            if (request == null || request.buildId != result.buildId) {
+                release(result.sections);
+                continue;
+            }
+
+            pending.remove(result.chunk);
+            if (result.sections != null)
+                consumer.accept(result.chunk, result.sectionMask, result.sections, result.hashes);
+        }
+    }
+
+    /**
+     * ワーカーを止め、まだシーンに入っていない地形を全て破棄する
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.clear();
+        snapshotCache.clear();
+
+        Result result;
+        while ((result = completed.poll()) != null) {
+            release(result.sections);
+        }
+    }
+
+    private static void release(TerrainSection[] sections) {
+        if (sections == null)
+            return;
+        for (TerrainSection section : sections) {
+            if (section != null)
+                section.release();
+        }
+    }
+
+    /**
+     * 組み立てが終わった地形を受け取るコールバック
+     */
+    @FunctionalInterface
+    public interface BuildConsumer {
+        /**
+         * @param chunk       チャンク
+         * @param sectionMask 組み立て直したセクション(内容が変わっていなかったセクションは含まない)
+         * @param sections    セクションごとの地形(組み立てていないセクションと空のセクションはnull)
+         * @param hashes      セクションごとのボクセルの内容のハッシュ
+         */
+        void accept(Chunk chunk, long sectionMask, TerrainSection[] sections, long[] hashes);
+    }
+
+    /**
+     * 組み立て中の依頼
+     */
+    @AllArgsConstructor
+    private static class Pending {
+        private final int buildId;
+        private final long sectionMask;
+    }
+
+    /**
+     * 組み立ての結果
+     */
+    @AllArgsConstructor
+    private static class Result {
+        private final Chunk chunk;
+        private final int buildId;
+        private final long sectionMask;
+        private final TerrainSection[] sections;
+        private final long[] hashes;
+    }
+}
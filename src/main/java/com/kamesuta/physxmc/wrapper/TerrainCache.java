@@ -0,0 +1,154 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxSetting;
+import lombok.Data;
+import lombok.Getter;
+import org.bukkit.Chunk;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * シーンから外したチャンクの地形を、すぐに破棄せずに取っておくLRUキャッシュ
+ * 物体がチャンクの境界を行き来しても、地形を作り直さずにシーンに戻すだけで済むようにする
+ * 取っておいた地形が古くなっていないかは、戻す時に各セクションのボクセルの内容のハッシュで確かめる
+ * メインスレッドからのみ使うこと
+ */
+public class TerrainCache {
+
+    /**
+     * チャンク1つあたりのメモリ使用量の見積もり(バイト)
+     */
+    private static final long BYTES_PER_CHUNK = 256;
+
+    /**
+     * 形状1つあたりのネイティブのメモリ使用量の見積もり(バイト)
+     */
+    private static final long BYTES_PER_SHAPE = 512;
+
+    /**
+     * セクションのアクター1つあたりのネイティブのメモリ使用量の見積もり(バイト)
+     */
+    private static final long BYTES_PER_SECTION = 1024;
+
+    /**
+     * 最後に使った順に並んだ地形
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * 追い出した地形を破棄する処理
+     */
+    private final Consumer<IntegratedPhysxTerrain> releaser;
+
+    /**
+     * 取っておいている地形のメモリ使用量の見積もり(バイト)
+     */
+    @Getter
+    private long usedBytes = 0;
+
+    public TerrainCache(Consumer<IntegratedPhysxTerrain> releaser) {
+        this.releaser = releaser;
+    }
+
+    /**
+     * シーンから外した地形を取っておく。メモリの上限を超えたら古いものから破棄する
+     *
+     * @param chunk   チャンク
+     * @param terrain 地形
+     */
+    public void put(Chunk chunk, IntegratedPhysxTerrain terrain) {
+        Entry entry = new Entry(terrain, estimateBytes(terrain));
+        Entry old = entries.put(Key.of(chunk), entry);
+        if (old != null) {
+            usedBytes -= old.bytes;
+            releaser.accept(old.terrain);
+        }
+        usedBytes += entry.bytes;
+        evict(PhysxSetting.getTerrainCacheBudgetMb() * 1024L * 1024L);
+    }
+
+    /**
+     * 取っておいた地形を取り出す
+     *
+     * @param chunk チャンク
+     * @return 地形、なければnull
+     */
+    public IntegratedPhysxTerrain take(Chunk chunk) {
+        Entry entry = entries.remove(Key.of(chunk));
+        if (entry == null)
+            return null;
+        usedBytes -= entry.bytes;
+        return entry.terrain;
+    }
+
+    /**
+     * 取っておいた地形を捨てる
+     *
+     * @param chunk チャンク
+     */
+    public void invalidate(Chunk chunk) {
+        IntegratedPhysxTerrain terrain = take(chunk);
+        if (terrain != null)
+            releaser.accept(terrain);
+    }
+
+    /**
+     * 取っておいている地形の数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 全ての地形を破棄する
+     */
+    public void clear() {
+        evict(-1);
+    }
+
+    /**
+     * メモリ使用量が上限以下になるまで、最後に使ったのが古い地形から破棄する
+     *
+     * @param budgetBytes 上限(バイト)
+     */
+    private void evict(long budgetBytes) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            usedBytes -= entry.bytes;
+            releaser.accept(entry.terrain);
+        }
+    }
+
+    private static long estimateBytes(IntegratedPhysxTerrain terrain) {
+        return BYTES_PER_CHUNK + terrain.getShapeCount() * BYTES_PER_SHAPE + terrain.getActiveSectionCount() * BYTES_PER_SECTION;
+    }
+
+    /**
+     * キャッシュのキー(ワールドとチャンクの座標)
+     */
+    @Data
+    private static class Key {
+        private final UUID world;
+        private final int chunkX;
+        private final int chunkZ;
+
+        static Key of(Chunk chunk) {
+            return new Key(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+        }
+    }
+
+    /**
+     * 取っておいている地形とそのメモリ使用量の見積もり
+     */
+    @Data
+    private static class Entry {
+        private final IntegratedPhysxTerrain terrain;
+        private final long bytes;
+    }
+}
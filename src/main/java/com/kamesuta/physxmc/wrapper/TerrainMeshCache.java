@@ -0,0 +1,196 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxSetting;
+import com.kamesuta.physxmc.utils.NativeMemory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import physx.extensions.PxDefaultMemoryInputData;
+import physx.extensions.PxDefaultMemoryOutputStream;
+import physx.geometry.PxTriangleMesh;
+import physx.physics.PxPhysics;
+import physx.support.PxU8Ptr;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * クッキング済みの地形の三角形メッシュを、セクションのボクセルの内容のハッシュをキーにしてディスクに保存するキャッシュ
+ * サーバーを再起動したりチャンクを読み込み直したりしても、同じ内容のセクションはクッキングせずに読み込める
+ * フォルダの大きさが{@link PhysxSetting#getTerrainMeshCacheMaxMb()}を超えたら、長く読み込んでいないファイルから消す
+ * ワーカースレッドから呼んでもよい
+ */
+public class TerrainMeshCache {
+
+    /**
+     * ファイルの先頭に書く識別子("PXM2")。メッシュの作り方を変えたら上げて、古いファイルを読まないようにする
+     */
+    private static final int MAGIC = 0x50584d32;
+
+    /**
+     * ヘッダーの大きさ(識別子・ブロックごとの形状数・データの長さ)
+     */
+    private static final int HEADER_BYTES = Integer.BYTES * 3;
+
+    private final File folder;
+
+    /**
+     * 保存しているファイルの合計の大きさ(バイト)
+     */
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public TerrainMeshCache(File folder) {
+        this.folder = folder;
+        if (!folder.exists() && !folder.mkdirs())
+            Logger.getLogger("PhysxMc").warning("地形のメッシュのキャッシュフォルダを作れませんでした: " + folder);
+
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // 前回書きかけのまま止まったファイルは消す
+                if (file.getName().endsWith(".tmp"))
+                    file.delete();
+                else if (file.getName().endsWith(".mesh"))
+                    totalBytes.addAndGet(file.length());
+            }
+        }
+        evict();
+    }
+
+    /**
+     * 保存済みのメッシュを読み込む
+     *
+     * @param physics
+     * @param contentHash セクションのボクセルの内容のハッシュ
+     * @return メッシュ、保存されていないか読み込めなければnull
+     */
+    public Entry load(PxPhysics physics, long contentHash) {
+        File file = fileOf(contentHash);
+        if (!file.isFile())
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC)
+                return null;
+            int perBlockShapeCount = buffer.getInt();
+            int length = buffer.getInt();
+            if (length <= 0 || buffer.remaining() < length)
+                return null;
+
+            // マップしたメモリをコピーせずにそのままPhysXに読ませる
+            long address = NativeMemory.addressOf(buffer) + buffer.position();
+            PxDefaultMemoryInputData input = new PxDefaultMemoryInputData(PxU8Ptr.wrapPointer(address), length);
+            PxTriangleMesh mesh = physics.createTriangleMesh(input);
+            input.destroy();
+            // 読み終わるまでマップを解放させない
+            Reference.reachabilityFence(buffer);
+
+            // 最近使ったファイルとして消されにくくする
+            file.setLastModified(System.currentTimeMillis());
+            return mesh != null ? new Entry(mesh, perBlockShapeCount) : null;
+        } catch (IOException e) {
+            Logger.getLogger("PhysxMc").log(Level.WARNING, "地形のメッシュのキャッシュを読み込めませんでした: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * クッキングしたメッシュを保存する
+     *
+     * @param contentHash        セクションのボクセルの内容のハッシュ
+     * @param perBlockShapeCount ブロックごとに箱を作っていた場合の形状の数
+     * @param cooked             クッキングしたメッシュ
+     */
+    public void store(long contentHash, int perBlockShapeCount, PxDefaultMemoryOutputStream cooked) {
+        int length = cooked.getSize();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(perBlockShapeCount);
+        buffer.putInt(length);
+        // JNIを1バイトずつ呼ばず、ネイティブのバッファから1回でコピーする
+        NativeMemory.copy(cooked.getData().getAddress(), buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        buffer.flip();
+
+        // 書きかけのファイルを読まないように、別名で書いてから置き換える
+        File file = fileOf(contentHash);
+        File temp = new File(folder, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            Logger.getLogger("PhysxMc").log(Level.WARNING, "地形のメッシュのキャッシュを保存できませんでした: " + file, e);
+            temp.delete();
+            return;
+        }
+        long replaced = file.length();
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (totalBytes.addAndGet(buffer.limit() - replaced) > getMaxBytes())
+            evict();
+    }
+
+    private static long getMaxBytes() {
+        return PhysxSetting.getTerrainMeshCacheMaxMb() * 1024L * 1024L;
+    }
+
+    /**
+     * 上限を超えていたら、長く読み込んでいないファイルから上限の8割になるまで消す
+     * 何度も消し直さないよう、少し余裕を持たせて消す
+     */
+    private synchronized void evict() {
+        long maxBytes = getMaxBytes();
+        if (totalBytes.get() <= maxBytes)
+            return;
+
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".mesh"));
+        if (files == null)
+            return;
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+
+        long target = maxBytes / 10 * 8;
+        for (int i : order) {
+            if (totalBytes.get() <= target)
+                break;
+            long size = files[i].length();
+            if (files[i].delete())
+                totalBytes.addAndGet(-size);
+        }
+    }
+
+    private File fileOf(long contentHash) {
+        return new File(folder, String.format("%016x.mesh", contentHash));
+    }
+
+    /**
+     * 読み込んだメッシュ
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final PxTriangleMesh mesh;
+        private final int perBlockShapeCount;
+    }
+}
@@ -0,0 +1,245 @@
+package com.kamesuta.physxmc.wrapper;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 地形を読み込んでおくチャンクを、物体ごとの参照カウントで管理するクラス
+ * 動いている物体は周囲3x3チャンク、眠っている物体は自分のいるチャンクだけを参照し続ける(起きた時にすり抜けないようにするため)
+ * 参照がなくなったチャンクはすぐには外さず、一定tick経ってから外す(境界を行き来する物体で地形の出し入れが続かないようにするため)
+ * 物体がチャンクをまたいだ時や眠った・起きた時だけ参照を付け替えるので、毎tickの更新では何も作らない
+ * 読み込まれていないチャンクはPaperの非同期APIで読み込み、読み込みが終わってから地形を作る(メインスレッドで同期的に読み込まない)
+ * メインスレッドからのみ使うこと
+ */
+public class TerrainResidency {
+
+    /**
+     * 参照を付け替えた時に地形を読み込む処理
+     */
+    private final Consumer<Chunk> loader;
+
+    /**
+     * 参照がなくなってから一定tick経ったチャンクの地形を外す処理
+     */
+    private final Consumer<Chunk> unloader;
+
+    /**
+     * ワールドごとの、参照されているか外すのを待っているチャンク
+     */
+    private final Map<UUID, Map<Long, ChunkEntry>> worlds = new HashMap<>();
+
+    /**
+     * 参照がなくなったチャンク(参照がなくなった順)
+     */
+    private final ArrayDeque<ChunkEntry> released = new ArrayDeque<>();
+
+    private long tick = 0;
+
+    public TerrainResidency(Consumer<Chunk> loader, Consumer<Chunk> unloader) {
+        this.loader = loader;
+        this.unloader = unloader;
+    }
+
+    /**
+     * 物体の位置から参照するチャンクを更新する。参照するチャンクが変わらなければ何もしない
+     *
+     * @param ticket   物体の参照
+     * @param world    ワールド
+     * @param x        物体のx
+     * @param z        物体のz
+     * @param sleeping 眠っているか(眠っていれば自分のいるチャンクだけを参照する)
+     */
+    public void update(Ticket ticket, World world, double x, double z, boolean sleeping) {
+        int chunkX = (int) Math.floor(x) >> 4;
+        int chunkZ = (int) Math.floor(z) >> 4;
+        int radius = sleeping ? 0 : 1;
+        if (ticket.world == world && ticket.chunkX == chunkX && ticket.chunkZ == chunkZ && ticket.radius == radius)
+            return;
+
+        // 先に新しいチャンクを参照してから古いチャンクを離すと、重なっているチャンクの参照が0にならない
+        ChunkEntry[] oldEntries = ticket.entries;
+        int oldCount = ticket.entryCount;
+        ticket.entries = ticket.spare;
+        ticket.spare = oldEntries;
+        ticket.entryCount = 0;
+        ticket.world = world;
+        ticket.chunkX = chunkX;
+        ticket.chunkZ = chunkZ;
+        ticket.radius = radius;
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                ticket.entries[ticket.entryCount++] = acquire(world, chunkX + dx, chunkZ + dz);
+            }
+        }
+        for (int i = 0; i < oldCount; i++) {
+            release(oldEntries[i]);
+            oldEntries[i] = null;
+        }
+    }
+
+    /**
+     * 物体の参照を全て離す。物体を消す時に呼ぶこと
+     *
+     * @param ticket 物体の参照
+     */
+    public void release(Ticket ticket) {
+        for (int i = 0; i < ticket.entryCount; i++) {
+            release(ticket.entries[i]);
+            ticket.entries[i] = null;
+        }
+        ticket.entryCount = 0;
+        ticket.world = null;
+        ticket.radius = -1;
+    }
+
+    /**
+     * 参照がなくなってから一定tick経ったチャンクの地形を外す。毎tick呼ぶこと
+     *
+     * @param unloadDelayTicks 参照がなくなってから外すまでのtick数
+     */
+    public void tick(int unloadDelayTicks) {
+        tick++;
+        ChunkEntry entry;
+        while ((entry = released.peek()) != null) {
+            // 待っている間にまた参照されたか、あとでもう一度離された場合は読み飛ばす
+            if (entry.queued > 1 || entry.refs != 0 || entry.unloaded) {
+                released.poll();
+                entry.queued--;
+                continue;
+            }
+            if (tick - entry.releasedTick < unloadDelayTicks)
+                break;
+
+            released.poll();
+            entry.queued--;
+            entry.unloaded = true;
+            Map<Long, ChunkEntry> chunks = worlds.get(entry.world);
+            if (chunks != null) {
+                chunks.remove(entry.key);
+                if (chunks.isEmpty())
+                    worlds.remove(entry.world);
+            }
+            // 読み込み待ちのまま外す場合は、まだ地形を作っていない
+            if (entry.chunk != null)
+                unloader.accept(entry.chunk);
+        }
+    }
+
+    /**
+     * 参照されているか外すのを待っているチャンクの数
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Long, ChunkEntry> chunks : worlds.values()) {
+            size += chunks.size();
+        }
+        return size;
+    }
+
+    /**
+     * 全ての参照を忘れる(地形は外さない)
+     */
+    public void clear() {
+        worlds.clear();
+        released.clear();
+    }
+
+    private ChunkEntry acquire(World world, int chunkX, int chunkZ) {
+        long key = ((long) chunkX << 32) | (chunkZ & 0xffffffffL);
+        Map<Long, ChunkEntry> chunks = worlds.computeIfAbsent(world.getUID(), uuid -> new HashMap<>());
+        ChunkEntry entry = chunks.get(key);
+        if (entry == null) {
+            entry = new ChunkEntry(world.getUID(), key);
+            chunks.put(key, entry);
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                entry.chunk = world.getChunkAt(chunkX, chunkZ);
+            } else {
+                ChunkEntry loading = entry;
+                world.getChunkAtAsync(chunkX, chunkZ).thenAccept(chunk -> onChunkLoaded(loading, chunk));
+            }
+        }
+        if (entry.refs++ == 0 && entry.chunk != null)
+            loader.accept(entry.chunk);
+        return entry;
+    }
+
+    /**
+     * 非同期で読み込んだチャンクを受け取る(メインスレッドで呼ばれる)
+     */
+    private void onChunkLoaded(ChunkEntry entry, Chunk chunk) {
+        if (chunk == null || entry.unloaded || entry.chunk != null)
+            return;
+
+        entry.chunk = chunk;
+        if (entry.refs > 0)
+            loader.accept(chunk);
+    }
+
+    private void release(ChunkEntry entry) {
+        if (--entry.refs == 0) {
+            entry.releasedTick = tick;
+            entry.queued++;
+            released.add(entry);
+        }
+    }
+
+    /**
+     * 物体1つが参照しているチャンク。物体を作った時に1つだけ作って使い回す
+     */
+    public static class Ticket {
+        private World world;
+        private int chunkX;
+        private int chunkZ;
+        private int radius = -1;
+        private ChunkEntry[] entries = new ChunkEntry[9];
+        private ChunkEntry[] spare = new ChunkEntry[9];
+        private int entryCount = 0;
+
+        /**
+         * 参照しているチャンクの数
+         */
+        public int size() {
+            return entryCount;
+        }
+
+        /**
+         * 参照しているチャンク
+         *
+         * @param index 0~{@link #size()}-1
+         * @return チャンク、まだ読み込み中ならnull
+         */
+        public Chunk get(int index) {
+            return entries[index].chunk;
+        }
+    }
+
+    /**
+     * 参照されているチャンク
+     */
+    private static class ChunkEntry {
+        private final UUID world;
+        private final long key;
+        /**
+         * チャンク、非同期で読み込み中ならnull
+         */
+        private Chunk chunk;
+        private int refs = 0;
+        private long releasedTick;
+        /**
+         * 参照がなくなったチャンクのキューに入っている数
+         */
+        private int queued = 0;
+        private boolean unloaded = false;
+
+        private ChunkEntry(UUID world, long key) {
+            this.world = world;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.core.*;
+import lombok.Getter;
+import physx.PxTopLevelFunctions;
+import physx.common.PxIDENTITYEnum;
+import physx.common.PxTransform;
+import physx.common.PxVec3;
+import physx.cooking.PxTriangleMeshDesc;
+import physx.extensions.PxDefaultMemoryInputData;
+import physx.extensions.PxDefaultMemoryOutputStream;
+import physx.geometry.PxBoxGeometry;
+import physx.geometry.PxTriangleMesh;
+import physx.geometry.PxTriangleMeshGeometry;
+import physx.physics.*;
+import physx.support.Vector_PxU32;
+import physx.support.Vector_PxVec3;
+
+/**
+ * チャンクの1セクション(16x16x16ブロック)分の地形
+ * ブロックが変わった時はそのセクションだけを作り直せばよい
+ */
+public class TerrainSection extends PhysxTerrain {
+
+    private static final int SIZE = SectionVoxels.SIZE;
+
+    /**
+     * ブロックごとに箱を作っていた場合の形状の数(比較用)
+     */
+    @Getter
+    private final int perBlockShapeCount;
+
+    /**
+     * チャンク内のセクションの番号(一番下が0)
+     */
+    @Getter
+    private final int sectionIndex;
+
+    /**
+     * セクション内の当たり判定のあるブロック(地形の形の元になった情報)
+     */
+    @Getter
+    private final VoxelOccupancy occupancy;
+
+    /**
+     * 三角形メッシュで作った場合のメッシュ(箱で作った場合はnull)
+     */
+    private PxTriangleMesh mesh;
+
+    private TerrainSection(int sectionIndex, int perBlockShapeCount, VoxelOccupancy occupancy) {
+        super(null, null);
+        this.sectionIndex = sectionIndex;
+        this.perBlockShapeCount = perBlockShapeCount;
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * セクションのボクセルから地形を作る。ワーカースレッドから呼んでもよい(シーンへの追加はしない)
+     * 表面に出ているブロックを貪欲法でまとめ、なるべく少ない箱で同じ表面の形を作る
+     *
+     * @param physics
+     * @param defaultMaterial 地形のマテリアル
+     * @param voxels          セクションのボクセル
+     * @param chunkX          チャンクのx
+     * @param chunkZ          チャンクのz
+     * @param sectionIndex    セクションの番号
+     * @return 地形、当たり判定のあるブロックが表面に出ていなければnull
+     */
+    public static TerrainSection build(PxPhysics physics, PxMaterial defaultMaterial, SectionVoxels voxels, int chunkX, int chunkZ, int sectionIndex) {
+        if (voxels.isEmpty())
+            return null;
+
+        boolean[] solid = voxels.getSolid().toArray();
+        final int baseY = voxels.getBaseY();
+
+        // 表面に出ているブロックはボクセルを読み取る時にビット演算で求めてある
+        boolean[] exposed = voxels.getExposed().toArray();
+        int exposedCount = voxels.getExposed().cardinality();
+        if (exposedCount == 0 && voxels.getPartialBlocks().isEmpty())
+            return null;
+
+        TerrainSection section = new TerrainSection(sectionIndex, exposedCount + countPartialBoxes(voxels), voxels.getSolid());
+
+        // create default simulation shape flags
+        PxShapeFlags defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value));
+        // create a few temporary objects used during setup
+        PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
+        PxVec3 tmpVec = new PxVec3(chunkX << 4, baseY, chunkZ << 4);
+        tmpPose.setP(tmpVec);
+        PxFilterData tmpFilterData = CollisionLayers.createFilterData(ActorType.TERRAIN);
+        PxRigidStatic terrain = physics.createRigidStatic(tmpPose);
+        terrain.setName(name);
+
+        VoxelGreedyMesher.mesh(SIZE, SIZE, SIZE, solid, exposed, (x0, y0, z0, x1, y1, z1) -> {
+            PxBoxGeometry terrainGeometry = new PxBoxGeometry((x1 - x0) * 0.5f, (y1 - y0) * 0.5f, (z1 - z0) * 0.5f);   // PxBoxGeometry uses half-sizes
+            PxShape shape = physics.createShape(terrainGeometry, defaultMaterial, true, defaultShapeFlags);
+            terrainGeometry.destroy();
+            shape.setSimulationFilterData(tmpFilterData);
+            tmpVec.setX((x0 + x1) * 0.5f);
+            tmpVec.setY((y0 + y1) * 0.5f);
+            tmpVec.setZ((z0 + z1) * 0.5f);
+            tmpPose.setP(tmpVec);
+            shape.setLocalPose(tmpPose);
+            terrain.attachShape(shape);
+            section.terrainShapes.add(shape);
+        });
+        attachPartialBlocks(physics, defaultMaterial, voxels, terrain, section, defaultShapeFlags, tmpFilterData, tmpPose, tmpVec);
+
+        defaultShapeFlags.destroy();
+        tmpFilterData.destroy();
+        tmpPose.destroy();
+        tmpVec.destroy();
+
+        section.actor = terrain;
+        return section;
+    }
+
+    /**
+     * セクションのボクセルから、外に出ている面だけの三角形メッシュの地形を作る。ワーカースレッドから呼んでもよい(シーンへの追加はしない)
+     * キャッシュに同じ内容のセクションのメッシュがあれば、面の取り出しもクッキングもせずに読み込む
+     *
+     * @param physics
+     * @param defaultMaterial 地形のマテリアル
+     * @param voxels          セクションのボクセル
+     * @param chunkX          チャンクのx
+     * @param chunkZ          チャンクのz
+     * @param sectionIndex    セクションの番号
+     * @param meshCache       クッキング済みのメッシュのキャッシュ
+     * @return 地形、外に出ている面がなければnull
+     */
+    public static TerrainSection buildMesh(PxPhysics physics, PxMaterial defaultMaterial, SectionVoxels voxels, int chunkX, int chunkZ, int sectionIndex, TerrainMeshCache meshCache) {
+        if (voxels.isEmpty())
+            return null;
+
+        PxTriangleMesh mesh = null;
+        int perBlockShapeCount = 0;
+        if (!voxels.getSolid().isEmpty()) {
+            TerrainMeshCache.Entry cached = meshCache.load(physics, voxels.getContentHash());
+            if (cached != null) {
+                mesh = cached.getMesh();
+                perBlockShapeCount = cached.getPerBlockShapeCount();
+            } else {
+                perBlockShapeCount = voxels.getExposed().cardinality();
+                mesh = cookMesh(physics, voxels, perBlockShapeCount, meshCache);
+            }
+        }
+        // 半端な形のブロックはメッシュに入れず、テンプレートの箱をそのまま付ける
+        if (mesh == null && voxels.getPartialBlocks().isEmpty())
+            return null;
+        perBlockShapeCount += countPartialBoxes(voxels);
+
+        TerrainSection section = new TerrainSection(sectionIndex, perBlockShapeCount, voxels.getSolid());
+        section.mesh = mesh;
+
+        PxShapeFlags defaultShapeFlags = new PxShapeFlags((byte) (PxShapeFlagEnum.eSCENE_QUERY_SHAPE.value | PxShapeFlagEnum.eSIMULATION_SHAPE.value));
+        PxTransform tmpPose = new PxTransform(PxIDENTITYEnum.PxIdentity);
+        PxVec3 tmpVec = new PxVec3(chunkX << 4, voxels.getBaseY(), chunkZ << 4);
+        tmpPose.setP(tmpVec);
+        PxFilterData tmpFilterData = CollisionLayers.createFilterData(ActorType.TERRAIN);
+        PxRigidStatic terrain = physics.createRigidStatic(tmpPose);
+        terrain.setName(name);
+
+        if (mesh != null) {
+            PxTriangleMeshGeometry geometry = new PxTriangleMeshGeometry(mesh);
+            PxShape shape = physics.createShape(geometry, defaultMaterial, true, defaultShapeFlags);
+            geometry.destroy();
+            shape.setSimulationFilterData(tmpFilterData);
+            terrain.attachShape(shape);
+            section.terrainShapes.add(shape);
+        }
+        attachPartialBlocks(physics, defaultMaterial, voxels, terrain, section, defaultShapeFlags, tmpFilterData, tmpPose, tmpVec);
+
+        defaultShapeFlags.destroy();
+        tmpFilterData.destroy();
+        tmpPose.destroy();
+        tmpVec.destroy();
+
+        section.actor = terrain;
+        return section;
+    }
+
+    /**
+     * 外に出ている面から三角形メッシュを作ってクッキングし、キャッシュに保存する
+     *
+     * @return メッシュ、外に出ている面がなければnull
+     */
+    private static PxTriangleMesh cookMesh(PxPhysics physics, SectionVoxels voxels, int perBlockShapeCount, TerrainMeshCache meshCache) {
+        Vector_PxVec3 points = new Vector_PxVec3();
+        Vector_PxU32 indices = new Vector_PxU32();
+        PxVec3 tmpVec = new PxVec3();
+        float[] corner = new float[3];
+        int[] vertexCount = {0};
+        VoxelFaceMesher.mesh(voxels.getSolid(), voxels.getForced(), voxels::isOpen, (axis, positive, plane, u0, v0, u1, v1) -> {
+            int uAxis = (axis + 1) % 3;
+            int vAxis = (axis + 2) % 3;
+            int base = vertexCount[0];
+            int[][] uv = {{u0, v0}, {u1, v0}, {u1, v1}, {u0, v1}};
+            for (int[] c : uv) {
+                corner[axis] = plane;
+                corner[uAxis] = c[0];
+                corner[vAxis] = c[1];
+                tmpVec.setX(corner[0]);
+                tmpVec.setY(corner[1]);
+                tmpVec.setZ(corner[2]);
+                points.push_back(tmpVec);
+            }
+            vertexCount[0] += 4;
+
+            // 外から見て反時計回りになるようにする
+            if (positive) {
+                indices.push_back(base);
+                indices.push_back(base + 1);
+                indices.push_back(base + 2);
+                indices.push_back(base);
+                indices.push_back(base + 2);
+                indices.push_back(base + 3);
+            } else {
+                indices.push_back(base);
+                indices.push_back(base + 2);
+                indices.push_back(base + 1);
+                indices.push_back(base);
+                indices.push_back(base + 3);
+                indices.push_back(base + 2);
+            }
+        });
+        tmpVec.destroy();
+
+        PxTriangleMesh mesh = null;
+        if (vertexCount[0] > 0) {
+            PxTriangleMeshDesc desc = new PxTriangleMeshDesc();
+            desc.getPoints().setCount(vertexCount[0]);
+            desc.getPoints().setStride(12);
+            desc.getPoints().setData(points.data());
+            desc.getTriangles().setCount(indices.size() / 3);
+            desc.getTriangles().setStride(12);
+            desc.getTriangles().setData(indices.data());
+
+            PxDefaultMemoryOutputStream cooked = new PxDefaultMemoryOutputStream();
+            if (PxTopLevelFunctions.CookTriangleMesh(Physx.cookingParams, desc, cooked)) {
+                meshCache.store(voxels.getContentHash(), perBlockShapeCount, cooked);
+                PxDefaultMemoryInputData input = new PxDefaultMemoryInputData(cooked.getData(), cooked.getSize());
+                mesh = physics.createTriangleMesh(input);
+                input.destroy();
+            }
+            cooked.destroy();
+            desc.destroy();
+        }
+        points.destroy();
+        indices.destroy();
+        return mesh;
+    }
+
+    /**
+     * 半端な形のブロックの当たり判定を、ブロックの状態ごとのテンプレートの箱で付ける
+     */
+    private static void attachPartialBlocks(PxPhysics physics, PxMaterial defaultMaterial, SectionVoxels voxels, PxRigidStatic terrain, TerrainSection section,
+                                            PxShapeFlags shapeFlags, PxFilterData filterData, PxTransform tmpPose, PxVec3 tmpVec) {
+        for (SectionVoxels.PartialBlock block : voxels.getPartialBlocks()) {
+            BlockCollisionTemplate template = block.getTemplate();
+            for (int i = 0; i < template.getBoxCount(); i++) {
+                PxBoxGeometry geometry = new PxBoxGeometry(template.get(i, 0), template.get(i, 1), template.get(i, 2));
+                PxShape shape = physics.createShape(geometry, defaultMaterial, true, shapeFlags);
+                geometry.destroy();
+                shape.setSimulationFilterData(filterData);
+                tmpVec.setX(block.getX() + template.get(i, 3));
+                tmpVec.setY(block.getY() + template.get(i, 4));
+                tmpVec.setZ(block.getZ() + template.get(i, 5));
+                tmpPose.setP(tmpVec);
+                shape.setLocalPose(tmpPose);
+                terrain.attachShape(shape);
+                section.terrainShapes.add(shape);
+            }
+        }
+    }
+
+    /**
+     * 半端な形のブロックの箱の数
+     */
+    private static int countPartialBoxes(SectionVoxels voxels) {
+        int count = 0;
+        for (SectionVoxels.PartialBlock block : voxels.getPartialBlocks()) {
+            count += block.getTemplate().getBoxCount();
+        }
+        return count;
+    }
+
+    /**
+     * 地形とその形状、メッシュを破壊する
+     */
+    @Override
+    public void release() {
+        super.release();
+        if (mesh != null) {
+            mesh.release();
+            mesh = null;
+        }
+    }
+
+    /**
+     * 地形の形状の数
+     */
+    public int getShapeCount() {
+        return terrainShapes.size();
+    }
+}
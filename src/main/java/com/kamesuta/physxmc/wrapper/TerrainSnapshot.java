@@ -0,0 +1,134 @@
+package com.kamesuta.physxmc.wrapper;
+
+import lombok.Getter;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+import java.util.Map;
+
+/**
+ * 地形を作るために、メインスレッドで取っておくチャンクとその四方のチャンクのスナップショット
+ * スナップショットはどのスレッドからでも読めるので、地形の組み立てはワーカースレッドで行える
+ */
+public class TerrainSnapshot {
+
+    @Getter
+    private final int chunkX;
+    @Getter
+    private final int chunkZ;
+    @Getter
+    private final int minY;
+    @Getter
+    private final int maxY;
+
+    private final ChunkSnapshot center;
+
+    /**
+     * 北(-z)・東(+x)・南(+z)・西(-x)のチャンク。読み込まれていなければnull
+     */
+    private final ChunkSnapshot north, east, south, west;
+
+    private TerrainSnapshot(Chunk chunk, ChunkSnapshot center, ChunkSnapshot north, ChunkSnapshot east, ChunkSnapshot south, ChunkSnapshot west) {
+        World world = chunk.getWorld();
+        this.chunkX = chunk.getX();
+        this.chunkZ = chunk.getZ();
+        this.minY = world.getMinHeight();
+        this.maxY = world.getMaxHeight();
+        this.center = center;
+        this.north = north;
+        this.east = east;
+        this.south = south;
+        this.west = west;
+    }
+
+    /**
+     * チャンクのセクション(16x16x16ブロック)の数
+     */
+    public int getSectionCount() {
+        return (maxY - minY) >> 4;
+    }
+
+    /**
+     * チャンクのセクションが空気だけか。パレットから判定するのでブロックを1つずつ読むより速い
+     *
+     * @param sectionIndex セクションの番号
+     */
+    public boolean isSectionEmpty(int sectionIndex) {
+        return center.isSectionEmpty(sectionIndex);
+    }
+
+    /**
+     * チャンクのスナップショットを取る。メインスレッドから呼ぶこと
+     *
+     * @param chunk チャンク
+     * @param cache 同じtick内で取ったスナップショットを使い回すためのキャッシュ
+     * @return スナップショット
+     */
+    public static TerrainSnapshot capture(Chunk chunk, Map<Chunk, ChunkSnapshot> cache) {
+        World world = chunk.getWorld();
+        int x = chunk.getX();
+        int z = chunk.getZ();
+        return new TerrainSnapshot(chunk,
+                snapshotOf(chunk, cache),
+                neighbourOf(world, x, z - 1, cache),
+                neighbourOf(world, x + 1, z, cache),
+                neighbourOf(world, x, z + 1, cache),
+                neighbourOf(world, x - 1, z, cache));
+    }
+
+    private static ChunkSnapshot neighbourOf(World world, int x, int z, Map<Chunk, ChunkSnapshot> cache) {
+        // 読み込まれていないチャンクを同期で読み込まないようにする
+        if (!world.isChunkLoaded(x, z))
+            return null;
+        return snapshotOf(world.getChunkAt(x, z), cache);
+    }
+
+    private static ChunkSnapshot snapshotOf(Chunk chunk, Map<Chunk, ChunkSnapshot> cache) {
+        return cache.computeIfAbsent(chunk, c -> c.getChunkSnapshot(false, false, false));
+    }
+
+    /**
+     * ブロックの当たり判定のテンプレートを取得する
+     * 種類だけで形が決まるブロックは状態を読まずに済ませ、それ以外は状態ごとのキャッシュを1回引く
+     *
+     * @param x チャンク内のx(-1~16、-1と16は隣のチャンク)
+     * @param y ワールドのy
+     * @param z チャンク内のz(-1~16、-1と16は隣のチャンク)
+     * @return テンプレート。隣のチャンクが読み込まれていなければnull
+     */
+    public BlockCollisionTemplate getTemplate(int x, int y, int z) {
+        ChunkSnapshot snapshot;
+        if (z < 0) {
+            snapshot = north;
+            z += 16;
+        } else if (z > 15) {
+            snapshot = south;
+            z -= 16;
+        } else if (x < 0) {
+            snapshot = west;
+            x += 16;
+        } else if (x > 15) {
+            snapshot = east;
+            x -= 16;
+        } else {
+            snapshot = center;
+        }
+        if (snapshot == null)
+            return null;
+
+        BlockCollisionTemplate template = BlockCollisionTemplate.forType(snapshot.getBlockType(x, y, z));
+        if (template != null)
+            return template;
+        return BlockCollisionTemplate.of(snapshot.getBlockData(x, y, z));
+    }
+
+    /**
+     * ブロックが1ブロック丸ごとの当たり判定を持たず、隣のブロックの面が見えるか
+     * (読み込まれていない隣のチャンクは空いているものとして扱い、境界に面を作る)
+     */
+    public boolean isOpen(int x, int y, int z) {
+        BlockCollisionTemplate template = getTemplate(x, y, z);
+        return template == null || !template.isFull();
+    }
+}
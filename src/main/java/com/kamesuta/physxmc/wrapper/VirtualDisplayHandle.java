@@ -0,0 +1,216 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.kamesuta.physxmc.PhysxMc;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Transformation;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * パケットだけで表示する仮想のBlockDisplay
+ * サーバーにはエンティティを作らず、位置や変換などの状態と、表示しているプレイヤーの一覧だけを持つ。
+ * 変更は{@link VirtualDisplayTracker}がtickの最後にまとめて、表示しているプレイヤーにパケットで送る
+ * <p>
+ * 変換行列は右の回転がない(左の回転・拡大・平行移動だけの)ものとして分解する
+ */
+public class VirtualDisplayHandle implements DisplayHandle {
+
+    /**
+     * 送っていない変更(メタデータの項目ごと)
+     */
+    static final int DIRTY_DELAY = 1;
+    static final int DIRTY_DURATION = 1 << 1;
+    static final int DIRTY_TRANSLATION = 1 << 2;
+    static final int DIRTY_SCALE = 1 << 3;
+    static final int DIRTY_LEFT_ROTATION = 1 << 4;
+    static final int DIRTY_RIGHT_ROTATION = 1 << 5;
+    static final int DIRTY_BLOCK = 1 << 6;
+    static final int DIRTY_ALL = (1 << 7) - 1;
+
+    /**
+     * クライアントに見せるエンティティID
+     */
+    @Getter
+    private final int entityId = Bukkit.getUnsafe().nextEntityId();
+
+    @Getter
+    private final UUID uniqueId = UUID.randomUUID();
+
+    /**
+     * 位置。トラッカーは毎tick複製せずに直接読む
+     */
+    Location location;
+    private final BlockData blockData;
+
+    @Getter
+    private final Vector3f translation = new Vector3f();
+    @Getter
+    private final Quaternionf leftRotation = new Quaternionf();
+    @Getter
+    private final Vector3f scale = new Vector3f(1f, 1f, 1f);
+    @Getter
+    private final Quaternionf rightRotation = new Quaternionf();
+
+    @Getter
+    private int interpolationDelay = 0;
+    @Getter
+    private int interpolationDuration = 0;
+
+    @Getter
+    private boolean visibleByDefault = true;
+
+    private boolean removed = false;
+
+    /**
+     * 送っていない変更({@link #DIRTY_DELAY}などの論理和)
+     */
+    int dirty = 0;
+
+    /**
+     * 最後に送ってから位置が変わったか
+     */
+    boolean moved = false;
+
+    /**
+     * このエンティティを見せているプレイヤー
+     */
+    final Set<Player> viewers = new HashSet<>();
+
+    /**
+     * 次の更新で、間隔を待たずに見せるプレイヤーを選び直すか
+     */
+    boolean viewersDirty = true;
+
+    /**
+     * トラッカーの一覧の中での位置(未登録なら-1)
+     */
+    int trackerIndex = -1;
+
+    public VirtualDisplayHandle(Location location, BlockData blockData, Transformation transformation) {
+        this.location = location.clone();
+        this.blockData = blockData;
+        setTransformation(transformation);
+        PhysxMc.virtualDisplayTracker.add(this);
+    }
+
+    @Override
+    public World getWorld() {
+        return location.getWorld();
+    }
+
+    @Override
+    public Location getLocation() {
+        return location.clone();
+    }
+
+    @Override
+    public void teleport(Location location) {
+        this.location = location.clone();
+        moved = true;
+    }
+
+    @Override
+    public BlockData getBlock() {
+        return blockData;
+    }
+
+    @Override
+    public Transformation getTransformation() {
+        return new Transformation(new Vector3f(translation), new Quaternionf(leftRotation), new Vector3f(scale), new Quaternionf(rightRotation));
+    }
+
+    @Override
+    public void setTransformation(Transformation transformation) {
+        setTranslation(transformation.getTranslation());
+        setLeftRotation(transformation.getLeftRotation());
+        setScale(transformation.getScale());
+        if (!rightRotation.equals(transformation.getRightRotation())) {
+            rightRotation.set(transformation.getRightRotation());
+            dirty |= DIRTY_RIGHT_ROTATION;
+        }
+    }
+
+    @Override
+    public void setTransformationMatrix(Matrix4f matrix) {
+        Vector3f tmp = new Vector3f();
+        setTranslation(matrix.getTranslation(tmp));
+        setScale(matrix.getScale(tmp));
+        setLeftRotation(matrix.getNormalizedRotation(new Quaternionf()));
+        if (!rightRotation.equals(new Quaternionf())) {
+            rightRotation.identity();
+            dirty |= DIRTY_RIGHT_ROTATION;
+        }
+    }
+
+    private void setTranslation(Vector3f value) {
+        if (translation.equals(value))
+            return;
+        translation.set(value);
+        dirty |= DIRTY_TRANSLATION;
+    }
+
+    private void setScale(Vector3f value) {
+        if (scale.equals(value))
+            return;
+        scale.set(value);
+        dirty |= DIRTY_SCALE;
+    }
+
+    private void setLeftRotation(Quaternionf value) {
+        if (leftRotation.equals(value))
+            return;
+        leftRotation.set(value);
+        dirty |= DIRTY_LEFT_ROTATION;
+    }
+
+    @Override
+    public void setInterpolationDelay(int ticks) {
+        // 補完の開始はこの値を送った時に起きるので、値が同じでも送る(BlockDisplayと同じ)
+        interpolationDelay = ticks;
+        dirty |= DIRTY_DELAY;
+    }
+
+    @Override
+    public void setInterpolationDuration(int ticks) {
+        if (interpolationDuration == ticks)
+            return;
+        interpolationDuration = ticks;
+        dirty |= DIRTY_DURATION;
+    }
+
+    @Override
+    public void setVisibleByDefault(boolean visible) {
+        if (visibleByDefault == visible)
+            return;
+        visibleByDefault = visible;
+        viewersDirty = true;
+    }
+
+    @Override
+    public boolean isDead() {
+        return removed;
+    }
+
+    @Override
+    public boolean isValid() {
+        return !removed;
+    }
+
+    @Override
+    public void remove() {
+        if (removed)
+            return;
+        removed = true;
+        PhysxMc.virtualDisplayTracker.remove(this);
+    }
+}
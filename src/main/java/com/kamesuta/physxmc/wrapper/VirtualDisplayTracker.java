@@ -0,0 +1,321 @@
+package com.kamesuta.physxmc.wrapper;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.wrappers.WrappedBlockData;
+import com.comphenix.protocol.wrappers.WrappedDataValue;
+import com.comphenix.protocol.wrappers.WrappedDataWatcher;
+import com.kamesuta.physxmc.PhysxSetting;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.*;
+
+import static com.kamesuta.physxmc.wrapper.VirtualDisplayHandle.*;
+
+/**
+ * パケットだけで表示する仮想のBlockDisplay({@link VirtualDisplayHandle})を、近くのプレイヤーに見せるクラス
+ * 範囲に入ったプレイヤーには生成とメタデータを、範囲を出たプレイヤーには削除を、見せているプレイヤーには変わった項目だけを送る。
+ * 1tick分のパケットはプレイヤーごとに1つのバンドルにまとめて送る。
+ * サーバー側のエンティティがないので、エンティティのtick処理やチャンクへの保存は起きない
+ * <p>
+ * プレイヤーの位置はtickごとに一度だけ取り、見せるプレイヤーは{@link PhysxSetting#getDisplayViewerUpdateInterval()}tickごとに表示ごとにずらして選び直す。
+ * 変化のない表示(眠っている物体や間引かれた物体)は、選び直す番でなければ何もしない
+ * <p>
+ * 毎tick、全ての物理オブジェクトの更新が終わった後に{@link #update()}を呼ぶこと。メインスレッドからのみ使うこと
+ */
+public class VirtualDisplayTracker {
+
+    /**
+     * 1.20.1のBlockDisplayのメタデータの番号
+     */
+    private static final int INDEX_INTERPOLATION_DELAY = 8;
+    private static final int INDEX_INTERPOLATION_DURATION = 9;
+    private static final int INDEX_TRANSLATION = 10;
+    private static final int INDEX_SCALE = 11;
+    private static final int INDEX_LEFT_ROTATION = 12;
+    private static final int INDEX_RIGHT_ROTATION = 13;
+    private static final int INDEX_BLOCK_STATE = 22;
+
+    /**
+     * 生成時に送る項目。補完は始めない
+     */
+    private static final int SPAWN_FIELDS = DIRTY_ALL & ~DIRTY_DELAY;
+
+    /**
+     * 1つのバンドルに入れられるパケットの数(クライアントの上限)
+     */
+    private static final int MAX_BUNDLE_SIZE = 4096;
+
+    private final ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
+
+    private final List<VirtualDisplayHandle> displays = new ArrayList<>();
+
+    /**
+     * このtickにプレイヤーごとに送るパケット。tickの最後にまとめて1つのバンドルで送る
+     */
+    private final Map<Player, List<PacketContainer>> outgoing = new HashMap<>();
+
+    /**
+     * このtickにプレイヤーごとに消す表示のエンティティID。1つの削除パケットにまとめる
+     */
+    private final Map<Player, List<Integer>> destroyed = new HashMap<>();
+
+    /**
+     * このtickのプレイヤーの位置
+     */
+    private final Map<Player, ViewerPosition> viewerPositions = new HashMap<>();
+
+    /**
+     * 更新した回数。見せるプレイヤーを選び直す順番に使う
+     */
+    private long tick = 0;
+
+    /**
+     * メタデータの型。初めてパケットを作る時に取得する
+     */
+    private WrappedDataWatcher.Serializer intSerializer;
+    private WrappedDataWatcher.Serializer vectorSerializer;
+    private WrappedDataWatcher.Serializer quaternionSerializer;
+    private WrappedDataWatcher.Serializer blockSerializer;
+
+    /**
+     * 表示を登録する
+     */
+    void add(VirtualDisplayHandle display) {
+        display.trackerIndex = displays.size();
+        displays.add(display);
+    }
+
+    /**
+     * 表示の登録を解除し、見せている全てのプレイヤーから消す
+     */
+    void remove(VirtualDisplayHandle display) {
+        int index = display.trackerIndex;
+        if (index < 0)
+            return;
+
+        VirtualDisplayHandle last = displays.remove(displays.size() - 1);
+        if (last != display) {
+            displays.set(index, last);
+            last.trackerIndex = index;
+        }
+        display.trackerIndex = -1;
+
+        for (Player player : display.viewers) {
+            if (player.isOnline())
+                destroyed.computeIfAbsent(player, p -> new ArrayList<>()).add(display.getEntityId());
+        }
+        display.viewers.clear();
+    }
+
+    /**
+     * 登録されている表示の数
+     */
+    public int size() {
+        return displays.size();
+    }
+
+    /**
+     * 全ての表示について、見せるプレイヤーを更新して変更を送る
+     */
+    public void update() {
+        if (!displays.isEmpty())
+            updateDisplays();
+        flush();
+    }
+
+    private void updateDisplays() {
+        double range = PhysxSetting.getDisplayViewDistance();
+        double rangeSquared = range * range;
+        int interval = Math.max(1, PhysxSetting.getDisplayViewerUpdateInterval());
+        tick++;
+
+        viewerPositions.clear();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            viewerPositions.put(player, new ViewerPosition(player, player.getLocation()));
+        }
+
+        for (VirtualDisplayHandle display : displays) {
+            if (!display.viewers.isEmpty() && (display.dirty != 0 || display.moved)) {
+                PacketContainer teleport = display.moved ? teleportPacket(display) : null;
+                PacketContainer metadata = display.dirty != 0 ? metadataPacket(display, display.dirty) : null;
+                for (Player player : display.viewers) {
+                    if (teleport != null)
+                        send(player, teleport);
+                    if (metadata != null)
+                        send(player, metadata);
+                }
+            }
+            display.dirty = 0;
+            display.moved = false;
+
+            if (display.viewersDirty || (tick + display.getEntityId()) % interval == 0) {
+                display.viewersDirty = false;
+                updateViewers(display, rangeSquared);
+            }
+        }
+    }
+
+    /**
+     * 表示を見せるプレイヤーを選び直す。範囲を出たプレイヤーからは消し、範囲に入ったプレイヤーには生成する
+     */
+    private void updateViewers(VirtualDisplayHandle display, double rangeSquared) {
+        Location location = display.location;
+        World world = location.getWorld();
+        double x = location.getX(), y = location.getY(), z = location.getZ();
+        boolean visible = display.isVisibleByDefault();
+
+        Iterator<Player> iterator = display.viewers.iterator();
+        while (iterator.hasNext()) {
+            Player player = iterator.next();
+            ViewerPosition position = viewerPositions.get(player);
+            if (position == null) {
+                // ログアウトしたプレイヤーのクライアントにはもう何も残っていない
+                iterator.remove();
+            } else if (!visible || !position.isInRange(world, x, y, z, rangeSquared)) {
+                iterator.remove();
+                destroyed.computeIfAbsent(player, p -> new ArrayList<>()).add(display.getEntityId());
+            }
+        }
+
+        if (!visible)
+            return;
+        for (ViewerPosition position : viewerPositions.values()) {
+            if (!position.isInRange(world, x, y, z, rangeSquared) || !display.viewers.add(position.player))
+                continue;
+            send(position.player, spawnPacket(display));
+            send(position.player, metadataPacket(display, SPAWN_FIELDS));
+        }
+    }
+
+    /**
+     * 溜めているパケットをプレイヤーごとに送る。複数あれば1つのバンドルにまとめ、クライアントでまとめて反映させる
+     */
+    public void flush() {
+        destroyed.forEach((player, ids) -> outgoing.computeIfAbsent(player, p -> new ArrayList<>()).add(0, destroyPacket(ids)));
+        destroyed.clear();
+
+        boolean bundle = PacketType.Play.Server.BUNDLE.isSupported();
+        outgoing.forEach((player, packets) -> {
+            if (!player.isOnline())
+                return;
+            if (!bundle || packets.size() == 1) {
+                for (PacketContainer packet : packets) {
+                    protocolManager.sendServerPacket(player, packet);
+                }
+                return;
+            }
+            for (int from = 0; from < packets.size(); from += MAX_BUNDLE_SIZE) {
+                PacketContainer packet = protocolManager.createPacket(PacketType.Play.Server.BUNDLE);
+                packet.getPacketBundles().write(0, new ArrayList<>(packets.subList(from, Math.min(packets.size(), from + MAX_BUNDLE_SIZE))));
+                protocolManager.sendServerPacket(player, packet);
+            }
+        });
+        outgoing.clear();
+    }
+
+    private void send(Player player, PacketContainer packet) {
+        outgoing.computeIfAbsent(player, p -> new ArrayList<>()).add(packet);
+    }
+
+    private PacketContainer spawnPacket(VirtualDisplayHandle display) {
+        Location location = display.location;
+        PacketContainer packet = protocolManager.createPacket(PacketType.Play.Server.SPAWN_ENTITY);
+        packet.getIntegers().write(0, display.getEntityId());
+        packet.getUUIDs().write(0, display.getUniqueId());
+        packet.getEntityTypeModifier().write(0, EntityType.BLOCK_DISPLAY);
+        packet.getDoubles()
+                .write(0, location.getX())
+                .write(1, location.getY())
+                .write(2, location.getZ());
+        return packet;
+    }
+
+    private PacketContainer teleportPacket(VirtualDisplayHandle display) {
+        Location location = display.location;
+        PacketContainer packet = protocolManager.createPacket(PacketType.Play.Server.ENTITY_TELEPORT);
+        packet.getIntegers().write(0, display.getEntityId());
+        packet.getDoubles()
+                .write(0, location.getX())
+                .write(1, location.getY())
+                .write(2, location.getZ());
+        packet.getBooleans().write(0, false);
+        return packet;
+    }
+
+    private PacketContainer destroyPacket(List<Integer> entityIds) {
+        PacketContainer packet = protocolManager.createPacket(PacketType.Play.Server.ENTITY_DESTROY);
+        packet.getIntLists().write(0, entityIds);
+        return packet;
+    }
+
+    /**
+     * 指定した項目だけを含むメタデータのパケットを作る
+     *
+     * @param display 表示
+     * @param fields  送る項目({@link VirtualDisplayHandle#DIRTY_DELAY}などの論理和)
+     * @return パケット
+     */
+    private PacketContainer metadataPacket(VirtualDisplayHandle display, int fields) {
+        if (intSerializer == null) {
+            intSerializer = WrappedDataWatcher.Registry.get(Integer.class);
+            vectorSerializer = WrappedDataWatcher.Registry.get(Vector3f.class);
+            quaternionSerializer = WrappedDataWatcher.Registry.get(Quaternionf.class);
+            blockSerializer = WrappedDataWatcher.Registry.getBlockDataSerializer(false);
+        }
+
+        // パケットは別のスレッドで書き出されるので、値はコピーして渡す
+        List<WrappedDataValue> values = new ArrayList<>(7);
+        if ((fields & DIRTY_DELAY) != 0)
+            values.add(new WrappedDataValue(INDEX_INTERPOLATION_DELAY, intSerializer, display.getInterpolationDelay()));
+        if ((fields & DIRTY_DURATION) != 0)
+            values.add(new WrappedDataValue(INDEX_INTERPOLATION_DURATION, intSerializer, display.getInterpolationDuration()));
+        if ((fields & DIRTY_TRANSLATION) != 0)
+            values.add(new WrappedDataValue(INDEX_TRANSLATION, vectorSerializer, new Vector3f(display.getTranslation())));
+        if ((fields & DIRTY_SCALE) != 0)
+            values.add(new WrappedDataValue(INDEX_SCALE, vectorSerializer, new Vector3f(display.getScale())));
+        if ((fields & DIRTY_LEFT_ROTATION) != 0)
+            values.add(new WrappedDataValue(INDEX_LEFT_ROTATION, quaternionSerializer, new Quaternionf(display.getLeftRotation())));
+        if ((fields & DIRTY_RIGHT_ROTATION) != 0)
+            values.add(new WrappedDataValue(INDEX_RIGHT_ROTATION, quaternionSerializer, new Quaternionf(display.getRightRotation())));
+        if ((fields & DIRTY_BLOCK) != 0)
+            values.add(new WrappedDataValue(INDEX_BLOCK_STATE, blockSerializer, WrappedBlockData.createData(display.getBlock()).getHandle()));
+
+        PacketContainer packet = protocolManager.createPacket(PacketType.Play.Server.ENTITY_METADATA);
+        packet.getIntegers().write(0, display.getEntityId());
+        packet.getDataValueCollectionModifier().write(0, values);
+        return packet;
+    }
+
+    /**
+     * tickの初めに取ったプレイヤーの位置
+     */
+    private static final class ViewerPosition {
+        private final Player player;
+        private final World world;
+        private final double x, y, z;
+
+        private ViewerPosition(Player player, Location location) {
+            this.player = player;
+            this.world = location.getWorld();
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+        }
+
+        private boolean isInRange(World world, double x, double y, double z, double rangeSquared) {
+            if (this.world != world)
+                return false;
+            double dx = this.x - x, dy = this.y - y, dz = this.z - z;
+            return dx * dx + dy * dy + dz * dz <= rangeSquared;
+        }
+    }
+}